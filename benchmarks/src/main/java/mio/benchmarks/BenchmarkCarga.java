@@ -0,0 +1,50 @@
+package mio.benchmarks;
+
+import mio.service.CargadorParadas;
+import mio.service.CargadorParadasRutas;
+import mio.service.CargadorRutas;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Tiempo de cada cargador de CSV sobre los datos del repositorio y sobre copias agrandadas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkCarga {
+
+    @Param({"241", "x10", "x100"})
+    public String dataset;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = DatosBenchmark.prepare(dataset);
+    }
+
+    @Benchmark
+    public Object loadRoutes() throws IOException {
+        return new CargadorRutas().loadRoutes(dir.resolve(DatosBenchmark.LINES));
+    }
+
+    @Benchmark
+    public Object loadStops() throws IOException {
+        return new CargadorParadas().loadStopStore(dir.resolve(DatosBenchmark.STOPS));
+    }
+
+    @Benchmark
+    public Object loadLineStops() throws IOException {
+        return new CargadorParadasRutas().loadLineStops(dir.resolve(DatosBenchmark.LINESTOPS));
+    }
+
+    @Benchmark
+    public Object loadLineStopsParallel() throws IOException {
+        return new CargadorParadasRutas().loadLineStopsParallel(dir.resolve(DatosBenchmark.LINESTOPS));
+    }
+}
@@ -0,0 +1,55 @@
+package mio.benchmarks;
+
+import mio.Util.LectorCsv;
+import mio.Util.UtilidadesCsv;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Partir las filas de linestops: splitCsvLine (String por campo) contra LectorCsv (sobre los bytes)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkCsv {
+
+    @Param({"241", "x10"})
+    public String dataset;
+
+    private List<String> lines;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        bytes = Files.readAllBytes(DatosBenchmark.prepare(dataset).resolve(DatosBenchmark.LINESTOPS));
+        lines = List.of(new String(bytes, StandardCharsets.UTF_8).split("\r?\n"));
+    }
+
+    @Benchmark
+    public void splitCsvLine(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(UtilidadesCsv.splitCsvLine(line));
+        }
+    }
+
+    // lee los mismos campos que usa CargadorParadasRutas
+    @Benchmark
+    public void lectorCsv(Blackhole bh) {
+        LectorCsv csv = new LectorCsv(ByteBuffer.wrap(bytes));
+        csv.nextRow(); // encabezado
+        while (csv.nextRow()) {
+            bh.consume(csv.getInt(1));
+            bh.consume(csv.getInt(2));
+            bh.consume(csv.getInt(3));
+            bh.consume(csv.getInt(4));
+        }
+    }
+}
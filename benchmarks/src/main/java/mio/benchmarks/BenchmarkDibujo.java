@@ -0,0 +1,54 @@
+package mio.benchmarks;
+
+import mio.model.RedCompacta;
+import mio.service.CargadorConcurrente;
+import mio.service.ExportadorImagenGrafo;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Dibujo en memoria (sin codificar): la ruta con más paradas y el grafo completo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BenchmarkDibujo {
+
+    @Param({"241", "x10"})
+    public String dataset;
+
+    private RedCompacta red;
+    private ExportadorImagenGrafo exporter;
+    private int longestSequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path dir = DatosBenchmark.prepare(dataset);
+        red = new CargadorConcurrente().loadAll(
+                dir.resolve(DatosBenchmark.LINES), dir.resolve(DatosBenchmark.STOPS), dir.resolve(DatosBenchmark.LINESTOPS)
+        ).getNetwork();
+        exporter = new ExportadorImagenGrafo();
+
+        for (int s = 1; s < red.getSequenceCount(); s++) {
+            int length = red.getSequenceEnd(s) - red.getSequenceStart(s);
+            if (length > red.getSequenceEnd(longestSequence) - red.getSequenceStart(longestSequence)) {
+                longestSequence = s;
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage renderRoute() {
+        return exporter.renderRouteGraph(red, longestSequence);
+    }
+
+    @Benchmark
+    public BufferedImage renderFullGraph() {
+        return exporter.renderFullGraph(red);
+    }
+}
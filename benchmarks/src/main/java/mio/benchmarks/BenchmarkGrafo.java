@@ -0,0 +1,132 @@
+package mio.benchmarks;
+
+import mio.Util.EscritorBytes;
+import mio.model.AlmacenParadas;
+import mio.model.DatosCargados;
+import mio.model.ParadaRuta;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+import mio.service.CargadorConcurrente;
+import mio.service.ConstructorGrafo;
+import mio.service.ConstructorRedCompacta;
+import mio.service.SumideroArcos;
+import mio.service.SumideroReporteTexto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Construcción de la red compacta y generación de la lista de arcos (sin y con el reporte de texto)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkGrafo {
+
+    @Param({"241", "x10", "x100"})
+    public String dataset;
+
+    private Map<Integer, Ruta> routes;
+    private AlmacenParadas stops;
+    private Map<Integer, Map<Integer, List<ParadaRuta>>> lineStops;
+    private RedCompacta red;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path dir = DatosBenchmark.prepare(dataset);
+        DatosCargados data = new CargadorConcurrente().loadAll(
+                dir.resolve(DatosBenchmark.LINES), dir.resolve(DatosBenchmark.STOPS), dir.resolve(DatosBenchmark.LINESTOPS));
+        routes = data.getRoutesById();
+        stops = data.getStops();
+        lineStops = data.getLineStopsByRouteAndOrientation();
+        red = data.getNetwork();
+    }
+
+    @Benchmark
+    public RedCompacta buildNetwork() {
+        return new ConstructorRedCompacta().build(routes, stops, lineStops);
+    }
+
+    // solo el recorrido de los arcos
+    @Benchmark
+    public int generateArcs() throws IOException {
+        ContadorArcos counter = new ContadorArcos();
+        new ConstructorGrafo().exportArcs(red, counter);
+        return counter.checksum;
+    }
+
+    // recorrido + formato del reporte de consola, escrito a un canal que descarta los bytes
+    @Benchmark
+    public long textReport() throws IOException {
+        Descarte sink = new Descarte();
+        try (SumideroReporteTexto report = new SumideroReporteTexto(
+                new EscritorBytes(sink, false, StandardCharsets.UTF_8, EscritorBytes.DEFAULT_BUFFER_SIZE))) {
+            new ConstructorGrafo().exportArcs(red, report);
+        }
+        return sink.bytes;
+    }
+
+    // sumidero que solo acumula las posiciones (para que el JIT no elimine el recorrido)
+    private static class ContadorArcos implements SumideroArcos {
+        int checksum;
+
+        @Override
+        public void begin(RedCompacta red) {
+        }
+
+        @Override
+        public void beginRoute(int lineId, Ruta route) {
+        }
+
+        @Override
+        public void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) {
+        }
+
+        @Override
+        public void arc(int lineId, int orientation, int number, int from, int to) {
+            checksum = 31 * checksum + (from ^ to);
+        }
+
+        @Override
+        public void endRoute(int lineId) {
+        }
+
+        @Override
+        public void end(int totalRoutes, int totalArcs) {
+            checksum += totalArcs;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Descarte implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package mio.benchmarks;
+
+import mio.service.GeneradorRedSintetica;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Conjuntos de datos de los benchmarks: "241" son los CSV del repositorio y "x10", "x100"...
+// son redes sintéticas de ese tamaño (GeneradorRedSintetica, semilla fija), que se generan una
+// vez en el directorio temporal y se reutilizan entre corridas.
+final class DatosBenchmark {
+
+    static final String LINES = "lines-241.csv";
+    static final String STOPS = "stops-241.csv";
+    static final String LINESTOPS = "linestops-241.csv";
+
+    private static final long SEED = 241;
+
+    private DatosBenchmark() {
+    }
+
+    // carpeta con los tres CSV del conjunto pedido
+    static Path prepare(String dataset) throws IOException {
+        Path source = Path.of(System.getProperty("mio.datos", "../src/data/proyecto-mio/MIO"));
+        if (dataset.equals("241")) return source;
+        if (!dataset.startsWith("x")) {
+            throw new IllegalArgumentException("Conjunto de datos desconocido: " + dataset);
+        }
+
+        double scale = Double.parseDouble(dataset.substring(1));
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "mio-benchmarks-" + dataset + "-" + SEED);
+        Path done = dir.resolve(".completo");
+        if (Files.exists(done)) return dir;
+
+        new GeneradorRedSintetica(scale, SEED, 241).generate(dir);
+        Files.createFile(done);
+        return dir;
+    }
+}
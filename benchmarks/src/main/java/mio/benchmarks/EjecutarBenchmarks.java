@@ -0,0 +1,29 @@
+package mio.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Corre los benchmarks con el perfilador de GC (bytes asignados por operación y recolecciones)
+// y guarda los resultados en JSON para comparar corridas. Acepta las mismas opciones que JMH,
+// por ejemplo: java -jar benchmarks.jar BenchmarkCarga -p dataset=241 -rff carga.json
+public class EjecutarBenchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli);
+        builder.addProfiler(GCProfiler.class);
+        if (!cli.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!cli.getResult().hasValue()) builder.result("resultados-benchmarks.json");
+
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,151 @@
+package mio.Util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Escritor de texto con un buffer grande sobre un canal: los números se escriben dígito por
+// dígito y el texto ASCII byte por byte, sin Formatter ni Strings intermedios.
+// El canal solo se toca cuando el buffer se llena o en flush(); no es seguro entre hilos.
+public class EscritorBytes implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final Charset charset;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[11];
+
+    public EscritorBytes(WritableByteChannel channel, boolean closeChannel, Charset charset, int bufferSize) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.charset = charset;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+    }
+
+    // crea (o reemplaza) el archivo y escribe en UTF-8
+    public static EscritorBytes open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new EscritorBytes(channel, true, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    // escribe sobre un stream ya abierto (por ejemplo System.out) sin cerrarlo al final
+    public static EscritorBytes wrap(OutputStream out, Charset charset) {
+        return new EscritorBytes(Channels.newChannel(out), false, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public EscritorBytes write(char c) throws IOException {
+        if (c < 0x80) {
+            ensure(1);
+            buffer.put((byte) c);
+            return this;
+        }
+        return write(String.valueOf(c));
+    }
+
+    public EscritorBytes write(String text) throws IOException {
+        return write(text, 0, text.length());
+    }
+
+    // escribe text[start, end)
+    public EscritorBytes write(String text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // hay caracteres no ASCII: codifico el resto de una vez
+                writeEncoded(text.substring(i, end));
+                return this;
+            }
+            ensure(1);
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    // salto de línea del sistema (igual que println)
+    public EscritorBytes newLine() throws IOException {
+        return write(LINE_SEPARATOR);
+    }
+
+    public EscritorBytes write(int value) throws IOException {
+        return writePadded(value, 0);
+    }
+
+    public EscritorBytes write(long value) throws IOException {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return write((int) value);
+        return write(Long.toString(value));
+    }
+
+    public EscritorBytes write(double value) throws IOException {
+        return write(Double.toString(value));
+    }
+
+    // entero alineado a la derecha en un ancho mínimo (como "%3d")
+    public EscritorBytes writePadded(int value, int width) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            String text = Integer.toString(value);
+            for (int i = text.length(); i < width; i++) write(' ');
+            return write(text);
+        }
+
+        boolean negative = value < 0;
+        int v = negative ? -value : value;
+        int n = 0;
+        do {
+            digits[digits.length - 1 - n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (negative) digits[digits.length - 1 - n++] = '-';
+
+        ensure(Math.max(n, width));
+        for (int i = n; i < width; i++) buffer.put((byte) ' ');
+        buffer.put(digits, digits.length - n, n);
+        return this;
+    }
+
+    // pasa lo que hay en el buffer al canal
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (closeChannel) channel.close();
+        }
+    }
+
+    private void writeEncoded(String text) throws IOException {
+        byte[] bytes = text.getBytes(charset);
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            ByteBuffer big = ByteBuffer.wrap(bytes);
+            while (big.hasRemaining()) channel.write(big);
+            return;
+        }
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() < n) flush();
+    }
+}
@@ -0,0 +1,302 @@
+package mio.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Lector CSV que trabaja directo sobre los bytes del archivo (UTF-8).
+// Solo guarda dónde empieza y termina cada campo de la fila actual: los enteros y decimales
+// se leen en el sitio sin crear Strings, y los Strings se crean solo cuando se piden.
+// Soporta campos entre comillas (con comas, saltos de línea y "" escapadas adentro).
+// Lee desde la posición hasta el límite del buffer (si el buffer no tiene arreglo, por ejemplo
+// un bloque mapeado en memoria, lo copia de una vez a un arreglo); no es seguro entre hilos.
+public class LectorCsv {
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // potencias de 10 exactas en double (hasta 10^22) para leer decimales sin perder precisión
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[] buf;
+    private final int limit;
+    private final int byteCount;
+    private int pos;
+
+    // fila actual
+    private int rowStart;
+    private int rowEnd;
+    private int fieldCount;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldEscaped = new boolean[16]; // el campo tiene "" adentro
+
+    private byte[] scratch = new byte[64];
+
+    public LectorCsv(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.buf = buffer.array();
+            this.pos = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            // leer byte a byte de un buffer directo es mucho más lento que una copia en bloque
+            this.buf = new byte[buffer.remaining()];
+            buffer.duplicate().get(this.buf);
+            this.pos = 0;
+            this.limit = this.buf.length;
+        }
+
+        byteCount = limit - pos;
+
+        // omito el BOM de UTF-8 si el archivo lo trae
+        if (limit - pos >= 3
+                && buf[pos] == (byte) 0xEF
+                && buf[pos + 1] == (byte) 0xBB
+                && buf[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+    }
+
+    // lee todo el archivo a memoria
+    public static LectorCsv open(Path path) throws IOException {
+        return new LectorCsv(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    // tamaño en bytes del contenido (todo el archivo si se abrió con open)
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    // avanza a la siguiente fila no vacía; retorna false al final del buffer
+    public boolean nextRow() {
+        while (pos < limit) {
+            rowStart = pos;
+            fieldCount = 0;
+            boolean blank = true;
+
+            while (true) {
+                // espacios al inicio del campo
+                int p = pos;
+                while (p < limit && isSpace(buf[p])) p++;
+
+                int start;
+                int end;
+                boolean escaped = false;
+
+                if (p < limit && buf[p] == QUOTE) {
+                    // campo entre comillas: termina en una comilla que no esté duplicada
+                    blank = false;
+                    start = p + 1;
+                    p = start;
+                    while (true) {
+                        if (p >= limit) {
+                            end = p;
+                            break;
+                        }
+                        if (buf[p] == QUOTE) {
+                            if (p + 1 < limit && buf[p + 1] == QUOTE) {
+                                escaped = true;
+                                p += 2;
+                                continue;
+                            }
+                            end = p;
+                            p++;
+                            break;
+                        }
+                        p++;
+                    }
+                    // lo que quede hasta la coma se ignora
+                    while (p < limit && buf[p] != COMMA && buf[p] != LF && buf[p] != CR) p++;
+                } else {
+                    start = p;
+                    while (p < limit && buf[p] != COMMA && buf[p] != LF && buf[p] != CR) p++;
+                    end = p;
+                    while (end > start && isSpace(buf[end - 1])) end--;
+                    if (end > start) blank = false;
+                }
+
+                addField(start, end, escaped);
+
+                if (p < limit && buf[p] == COMMA) {
+                    blank = false;
+                    pos = p + 1;
+                    continue;
+                }
+
+                // fin de fila (LF, CRLF o fin del buffer)
+                rowEnd = p;
+                if (p < limit && buf[p] == CR) p++;
+                if (p < limit && buf[p] == LF) p++;
+                pos = p;
+                break;
+            }
+
+            if (!blank) {
+                return true;
+            }
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    // retorna true si la fila contiene el texto (ASCII, sin importar mayúsculas)
+    public boolean rowContainsIgnoreCase(String text) {
+        int n = text.length();
+        for (int i = rowStart; i + n <= rowEnd; i++) {
+            int j = 0;
+            while (j < n && toUpper(buf[i + j]) == Character.toUpperCase(text.charAt(j))) j++;
+            if (j == n) return true;
+        }
+        return false;
+    }
+
+    // lee un entero del campo sin crear objetos
+    public int getInt(int field) {
+        int p = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (p >= end) throw new NumberFormatException("Campo " + field + " vacío");
+
+        boolean negative = false;
+        byte b = buf[p];
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+            if (p >= end) throw invalidNumber(field);
+        }
+
+        long value = 0;
+        for (; p < end; p++) {
+            int d = buf[p] - '0';
+            if (d < 0 || d > 9) throw invalidNumber(field);
+            value = value * 10 + d;
+            if (value > (long) Integer.MAX_VALUE + 1) throw invalidNumber(field);
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw invalidNumber(field);
+        return (int) value;
+    }
+
+    // como getInt, pero retorna defaultValue si la fila no trae el campo o viene vacío
+    public int getInt(int field, int defaultValue) {
+        if (field >= fieldCount || fieldStarts[field] >= fieldEnds[field]) return defaultValue;
+        return getInt(field);
+    }
+
+    // lee un decimal del campo; si tiene más de 15 dígitos o exponente grande usa Double.parseDouble
+    public double getDouble(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (start >= end) throw new NumberFormatException("Campo " + field + " vacío");
+
+        int p = start;
+        boolean negative = false;
+        byte b = buf[p];
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; p < end; p++) {
+            b = buf[p];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    // los ceros a la izquierda no cuentan como dígitos significativos
+                    if (seenDot) scale++;
+                    continue;
+                }
+                if (++digits > 15) return parseSlow(field);
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot) scale++;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else if (b == 'e' || b == 'E') {
+                return parseSlow(field);
+            } else {
+                throw invalidNumber(field);
+            }
+        }
+        if (!seenDigit) throw invalidNumber(field);
+        if (scale > 22) return parseSlow(field);
+
+        // mantisa y 10^scale son exactos en double, así que la división queda bien redondeada
+        double value = mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    // crea el String del campo (sin comillas, con "" convertidas en ")
+    public String getString(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        int len = end - start;
+        if (len <= 0) return "";
+
+        if (!fieldEscaped[field]) {
+            return new String(buf, start, len, StandardCharsets.UTF_8);
+        }
+
+        byte[] bytes = copyField(start, end);
+
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            bytes[n++] = bytes[i];
+            if (bytes[i] == QUOTE && i + 1 < len && bytes[i + 1] == QUOTE) i++;
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private double parseSlow(int field) {
+        return Double.parseDouble(getString(field));
+    }
+
+    private byte[] copyField(int start, int end) {
+        int len = end - start;
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        System.arraycopy(buf, start, scratch, 0, len);
+        return scratch;
+    }
+
+    private void addField(int start, int end, boolean escaped) {
+        if (fieldCount == fieldStarts.length) {
+            int n = fieldCount * 2;
+            fieldStarts = Arrays.copyOf(fieldStarts, n);
+            fieldEnds = Arrays.copyOf(fieldEnds, n);
+            fieldEscaped = Arrays.copyOf(fieldEscaped, n);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldEscaped[fieldCount] = escaped;
+        fieldCount++;
+    }
+
+    private NumberFormatException invalidNumber(int field) {
+        return new NumberFormatException("Número inválido en el campo " + field + ": " + getString(field));
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static int toUpper(byte b) {
+        return (b >= 'a' && b <= 'z') ? b - 32 : b;
+    }
+}
@@ -0,0 +1,108 @@
+package mio.Util;
+
+import java.util.Arrays;
+
+// Mapa int -> int con direccionamiento abierto (sondeo lineal) sobre dos arreglos paralelos:
+// sin Integer ni nodos por entrada, a diferencia de HashMap<Integer, Integer>.
+// No es seguro para escribir desde varios hilos; leer desde varios hilos sí, una vez armado.
+public class MapaEnteroEntero {
+
+    // clave que marca una casilla vacía; si se usa como clave de verdad va aparte
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+
+    public MapaEnteroEntero() {
+        this(16);
+    }
+
+    public MapaEnteroEntero(int expectedSize) {
+        // a lo más medio lleno, para que las búsquedas fallidas terminen rápido
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == EMPTY) return hasEmptyKey;
+        return keys[slot(key)] != EMPTY;
+    }
+
+    // valor de la clave, o defaultValue si no está
+    public int get(int key, int defaultValue) {
+        if (key == EMPTY) return hasEmptyKey ? emptyKeyValue : defaultValue;
+        int i = slot(key);
+        return keys[i] != EMPTY ? values[i] : defaultValue;
+    }
+
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            if (!hasEmptyKey) size++;
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+
+        int i = slot(key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+            if (2 * size > keys.length) {
+                values[i] = value;
+                grow();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    // suma delta al valor de la clave (0 si no estaba) y retorna el resultado
+    public int add(int key, int delta) {
+        int value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+
+    // casilla de la clave, o la casilla vacía donde iría
+    private int slot(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
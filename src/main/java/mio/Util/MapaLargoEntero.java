@@ -0,0 +1,135 @@
+package mio.Util;
+
+import java.util.Arrays;
+
+// Mapa long -> int con direccionamiento abierto (sondeo lineal) sobre dos arreglos paralelos, pensado
+// para contar por arco con el par (origen, destino) empaquetado en un long. Sin Long ni nodos por
+// entrada, a diferencia de HashMap<Long, Integer>.
+// No es seguro para escribir desde varios hilos: cada hilo cuenta en su mapa y después se suman.
+public class MapaLargoEntero {
+
+    // clave que marca una casilla vacía; si se usa como clave de verdad va aparte
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+
+    public MapaLargoEntero() {
+        this(16);
+    }
+
+    public MapaLargoEntero(int expectedSize) {
+        // a lo más medio lleno, para que las búsquedas fallidas terminen rápido
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) return hasEmptyKey;
+        return keys[slot(key)] != EMPTY;
+    }
+
+    // valor de la clave, o defaultValue si no está
+    public int get(long key, int defaultValue) {
+        if (key == EMPTY) return hasEmptyKey ? emptyKeyValue : defaultValue;
+        int i = slot(key);
+        return keys[i] != EMPTY ? values[i] : defaultValue;
+    }
+
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            if (!hasEmptyKey) size++;
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+
+        int i = slot(key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            values[i] = value;
+            if (2 * ++size > keys.length) grow();
+            return;
+        }
+        values[i] = value;
+    }
+
+    // suma delta al valor de la clave (0 si no estaba) y retorna el resultado
+    public int add(long key, int delta) {
+        if (key == EMPTY) {
+            put(key, get(key, 0) + delta);
+            return emptyKeyValue;
+        }
+
+        int i = slot(key);
+        if (keys[i] != EMPTY) {
+            return values[i] += delta;
+        }
+        keys[i] = key;
+        values[i] = delta;
+        if (2 * ++size > keys.length) grow();
+        return delta;
+    }
+
+    // suma al mapa los valores de other (para juntar los conteos de cada hilo)
+    public void addAll(MapaLargoEntero other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) add(other.keys[i], other.values[i]);
+        }
+        if (other.hasEmptyKey) add(EMPTY, other.emptyKeyValue);
+    }
+
+    // claves del mapa, en ningún orden en particular
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) result[n++] = key;
+        }
+        if (hasEmptyKey) result[n] = EMPTY;
+        return result;
+    }
+
+    // casilla de la clave, o la casilla vacía donde iría
+    private int slot(long key) {
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package mio.Util;
+
+// Utilidades de distancias sobre la Tierra (esfera de radio medio)
+public class UtilidadesGeo {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    // distancia haversine en metros entre dos puntos en grados
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // largo de la cuerda (en la esfera unitaria) que corresponde a una distancia sobre la superficie
+    public static double chordForMeters(double meters) {
+        double angle = Math.min(Math.PI, meters / EARTH_RADIUS_METERS);
+        return 2 * Math.sin(angle / 2);
+    }
+
+    // distancia sobre la superficie que corresponde a una cuerda de la esfera unitaria
+    public static double metersForChord(double chord) {
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, chord / 2));
+    }
+}
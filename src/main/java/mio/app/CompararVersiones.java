@@ -0,0 +1,93 @@
+package mio.app;
+
+import mio.model.Arco;
+import mio.model.DiferenciaRedes;
+import mio.service.AlmacenVersiones;
+import mio.service.RedRechazadaException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Carga dos o más versiones del plan en el mismo proceso y muestra qué cambió entre dos de ellas
+// Uso: CompararVersiones [carpeta de datos=src/data/proyecto-mio/MIO] [versión de origen] [versión de destino]
+// Sin versiones, compara cada versión de la carpeta con la siguiente. Con -Dmio.conectividad.estricta=true
+// no se cargan las versiones que tengan paradas sumidero o fuente.
+public class CompararVersiones {
+
+    private static final int MAX_DETAIL = 20;
+
+    public static void main(String[] args) {
+        Path dataDir = Path.of(args.length > 0 ? args[0] : "src/data/proyecto-mio/MIO");
+
+        try {
+            AlmacenVersiones store = new AlmacenVersiones(Boolean.getBoolean("mio.conectividad.estricta"));
+            List<Integer> versions = store.loadDirectory(dataDir, Path.of("InstantaneasRed"));
+            System.out.println("Versiones cargadas: " + versions);
+            for (int version : versions) {
+                System.out.println("  " + version + ": " + store.getConnectivity(version));
+            }
+
+            if (args.length > 2) {
+                print(store.diff(Integer.parseInt(args[1]), Integer.parseInt(args[2])));
+            } else {
+                for (int i = 0; i + 1 < versions.size(); i++) {
+                    print(store.diff(versions.get(i), versions.get(i + 1)));
+                }
+            }
+        } catch (RedRechazadaException e) {
+            System.err.println("Rechazada por -Dmio.conectividad.estricta: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error cargando las versiones: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void print(DiferenciaRedes diff) {
+        System.out.println();
+        System.out.println("=== Versión " + diff.getFromVersion() + " -> " + diff.getToVersion() + " ===");
+        if (diff.isEmpty()) {
+            System.out.println("Sin cambios");
+            return;
+        }
+
+        printIds("Rutas agregadas", diff.getAddedLines());
+        printIds("Rutas quitadas", diff.getRemovedLines());
+        printIds("Rutas con otro recorrido", diff.getChangedLines());
+        printIds("Paradas agregadas", diff.getAddedStops());
+        printIds("Paradas quitadas", diff.getRemovedStops());
+
+        int[] moved = diff.getMovedStops();
+        double[] meters = diff.getMovedMeters();
+        System.out.println("Paradas movidas: " + moved.length);
+        for (int i = 0; i < Math.min(moved.length, MAX_DETAIL); i++) {
+            System.out.printf("  %d (%.1f m)%n", moved[i], meters[i]);
+        }
+        if (moved.length > MAX_DETAIL) System.out.println("  ...");
+
+        printArcs("Arcos agregados", diff.getAddedArcs());
+        printArcs("Arcos quitados", diff.getRemovedArcs());
+    }
+
+    private static void printIds(String title, int[] ids) {
+        StringBuilder line = new StringBuilder(title).append(": ").append(ids.length);
+        for (int i = 0; i < Math.min(ids.length, MAX_DETAIL); i++) {
+            line.append(i == 0 ? " [" : ", ").append(ids[i]);
+        }
+        if (ids.length > 0) line.append(ids.length > MAX_DETAIL ? ", ...]" : "]");
+        System.out.println(line);
+    }
+
+    private static void printArcs(String title, long[] arcs) {
+        System.out.println(title + ": " + arcs.length);
+        for (int i = 0; i < Math.min(arcs.length, MAX_DETAIL); i++) {
+            System.out.println("  " + Arco.packedOrigen(arcs[i]) + " -> " + Arco.packedDestino(arcs[i]));
+        }
+        if (arcs.length > MAX_DETAIL) System.out.println("  ...");
+    }
+}
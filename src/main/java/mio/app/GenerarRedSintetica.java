@@ -0,0 +1,38 @@
+package mio.app;
+
+import mio.service.GeneradorRedSintetica;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Genera CSV sintéticos con el formato de los del MIO para pruebas de escala
+// Uso: GenerarRedSintetica <carpeta> [escala=10] [semilla=241] [versión del plan=241]
+public class GenerarRedSintetica {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: GenerarRedSintetica <carpeta> [escala=10] [semilla=241] [versión del plan=241]");
+            System.exit(2);
+        }
+
+        Path dir = Path.of(args[0]);
+        double scale = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 241;
+        int planVersion = args.length > 3 ? Integer.parseInt(args[3]) : 241;
+
+        try {
+            long t0 = System.nanoTime();
+            GeneradorRedSintetica generator = new GeneradorRedSintetica(scale, seed, planVersion);
+            long linestops = generator.generate(dir);
+
+            System.out.println("Red sintética x" + scale + " (semilla " + seed + ") generada en "
+                    + (System.nanoTime() - t0) / 1_000_000 + " ms");
+            System.out.println("  " + generator.getLinesFile(dir).toAbsolutePath());
+            System.out.println("  " + generator.getStopsFile(dir).toAbsolutePath());
+            System.out.println("  " + generator.getLineStopsFile(dir).toAbsolutePath() + " (" + linestops + " filas)");
+        } catch (IOException e) {
+            System.err.println("Error escribiendo los archivos: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package mio.app;
 
-import mio.model.Ruta;
-import mio.model.Parada;
-import mio.model.ParadaRuta;
-import mio.service.CargadorRutas;
-import mio.service.CargadorParadas;
-import mio.service.CargadorParadasRutas;
+import mio.model.CargaCorredores;
+import mio.model.CentralidadRed;
+import mio.model.ComponentesRed;
+import mio.model.Corredor;
+import mio.model.RedCompacta;
+import mio.service.AgregadorCorredores;
+import mio.service.AnalizadorComponentes;
+import mio.service.CentralidadParadas;
 import mio.service.ConstructorGrafo;
 import mio.service.ExportadorImagenGrafo;
+import mio.service.ExportadorTeselas;
+import mio.service.FormatoImagen;
+import mio.service.InstantaneaRed;
+import mio.service.MetricasProceso;
+import mio.service.RedRechazadaException;
+import mio.service.SumideroCsv;
+import mio.service.SumideroGraphML;
+import mio.service.SumideroJsonLines;
+import mio.service.SumideroReporteTexto;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 //Procesa datos del MIO y genera grafos
 public class Main {
@@ -24,30 +36,56 @@ public class Main {
         Path stopsCsvPath     = Path.of("src/data/proyecto-mio/MIO/stops-241.csv");
         Path lineStopsCsvPath = Path.of("src/data/proyecto-mio/MIO/linestops-241.csv");
 
+        // Instantáneas binarias por versión del plan (red-241.bin, ...)
+        Path snapshotDir = Path.of("InstantaneasRed");
+
         // Servicios
-        CargadorRutas routeLoader = new CargadorRutas();
-        CargadorParadas stopLoader = new CargadorParadas();
-        CargadorParadasRutas lineStopLoader = new CargadorParadasRutas();
+        // -Dmio.conectividad.estricta=true: no procesar una versión con paradas sumidero o fuente
+        InstantaneaRed loader = new InstantaneaRed(Boolean.getBoolean("mio.conectividad.estricta"));
         ConstructorGrafo graphBuilder = new ConstructorGrafo();
-        ExportadorImagenGrafo imageExporter = new ExportadorImagenGrafo();
+        // Formato de imagen e hilos codificadores: -Dmio.imagen.formato, -Dmio.imagen.calidad,
+        // -Dmio.imagen.compresion y -Dmio.imagen.codificadores
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExportadorImagenGrafo imageExporter = new ExportadorImagenGrafo(
+                FormatoImagen.fromSystemProperties(),
+                Integer.getInteger("mio.imagen.codificadores", Math.max(1, cores / 2))
+        );
+
+        // Teselas z/x/y del mapa de la red, solo si se piden: -Dmio.teselas=11-16 (o un solo nivel).
+        // Reviso el rango antes de las fases largas para no fallar al final
+        String tileZooms = System.getProperty("mio.teselas");
+        int[] tileZoomRange = tileZooms != null ? parseZoomRange(tileZooms) : null;
+        if (tileZooms != null && tileZoomRange == null) {
+            System.err.println("Valor inválido para -Dmio.teselas: \"" + tileZooms + "\"");
+            System.err.println("Uso: -Dmio.teselas=ZMIN-ZMAX o -Dmio.teselas=Z, con 0 <= ZMIN <= ZMAX <= "
+                    + ExportadorTeselas.MAX_ZOOM + " (por ejemplo -Dmio.teselas=11-16)");
+            System.exit(1);
+        }
 
         try {
-            // Carga datos desde CSV
+            // Abre la instantánea de esta versión del plan si está al día; si no, carga los tres CSV
+            // al mismo tiempo, arma la red compacta (secuencias ordenadas una sola vez) y la guarda
             System.out.println("Cargando datos de los archivos CSV...");
-            Map<Integer, Ruta> routesById = routeLoader.loadRoutes(linesCsvPath);
-            Map<Integer, Parada> stopsById = stopLoader.loadStops(stopsCsvPath);
-            Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation =
-                    lineStopLoader.loadLineStops(lineStopsCsvPath);
+            InstantaneaRed.Carga loaded = loader.load(linesCsvPath, stopsCsvPath, lineStopsCsvPath, snapshotDir);
+            RedCompacta network = loaded.getNetwork();
             
-            System.out.println("Rutas cargadas: " + routesById.size());
-            System.out.println("Paradas cargadas: " + stopsById.size());
+            System.out.println("Rutas cargadas: " + network.getRouteCount());
+            System.out.println("Paradas cargadas: " + network.getStopCount());
             System.out.println("Relaciones ruta-parada cargadas");
             System.out.println();
 
             // Construye grafos
             System.out.println("Construyendo grafos y generando lista de arcos...");
             System.out.println();
-            graphBuilder.buildAndPrintGraphs(routesById, stopsById, lineStopsByRouteAndOrientation);
+            // una sola pasada: reporte en consola y listas de arcos para otras herramientas
+            Path arcListsDir = Path.of("ListasArcos");
+            Files.createDirectories(arcListsDir);
+            try (SumideroReporteTexto console = SumideroReporteTexto.console();
+                 SumideroCsv csv = SumideroCsv.file(arcListsDir.resolve("arcos.csv"));
+                 SumideroJsonLines jsonl = SumideroJsonLines.file(arcListsDir.resolve("arcos.jsonl"));
+                 SumideroGraphML graphml = SumideroGraphML.file(arcListsDir.resolve("red.graphml"))) {
+                graphBuilder.exportArcs(network, console, csv, jsonl, graphml);
+            }
 
             // Genera imágenes de grafos individuales
             System.out.println();
@@ -55,28 +93,99 @@ public class Main {
             System.out.println("║ Generando imágenes de los grafos de las rutas individuales... ║");
             System.out.println("╚═══════════════════════════════════════════════════════════════╝");
             Path graphsDir = Path.of("GrafosRutasIndividuales");
-            imageExporter.exportRouteGraphs(
-                    routesById,
-                    stopsById,
-                    lineStopsByRouteAndOrientation,
-                    graphsDir
-            );
+            imageExporter.exportRouteGraphs(network, graphsDir, cores);
             
             System.out.println("\nUbicación: " + graphsDir.toAbsolutePath());
             System.out.println();
             
-            // Genera grafo completo
+            // Carga por arco: cuántas rutas y secuencias comparten cada par de paradas
+            CargaCorredores corridors = new AgregadorCorredores().aggregate(network);
+
+            // Centralidad de las paradas (Brandes); exacta, o con -Dmio.centralidad.muestras=N
+            // aproximada con N fuentes al azar para redes grandes
+            CentralidadParadas centralityCalculator = new CentralidadParadas(network);
+            int samples = Integer.getInteger("mio.centralidad.muestras", 0);
+            CentralidadRed centrality = samples > 0
+                    ? centralityCalculator.computeSampled(samples, 241L)
+                    : centralityCalculator.compute();
+
+            // Genera grafo completo (el grosor de cada arco sale de su carga y el tamaño de cada
+            // parada de su centralidad)
             Path fullGraphDir = Path.of("GrafoRutasCompletas");
-            imageExporter.exportFullGraph(
-                    routesById,
-                    stopsById,
-                    lineStopsByRouteAndOrientation,
-                    fullGraphDir
-            );
+            imageExporter.exportFullGraph(network, corridors, centrality, fullGraphDir);
+
+            // Corredores más cargados y lista completa de la carga por arco
+            System.out.println();
+            System.out.println("Corredores con más rutas:");
+            for (Corredor c : corridors.top(10)) {
+                int a = network.indexOfStop(c.getOrigenStopId());
+                int b = network.indexOfStop(c.getDestinoStopId());
+                System.out.println("  " + network.getStopShortName(a) + " -> " + network.getStopShortName(b)
+                        + " (" + c.getOrigenStopId() + " -> " + c.getDestinoStopId() + "): "
+                        + c.getLines() + " rutas, " + c.getLineOrientations() + " rutas por sentido, "
+                        + c.getSequences() + " secuencias");
+            }
+            Path corridorsCsv = arcListsDir.resolve("corredores.csv");
+            new AgregadorCorredores().writeCsv(network, corridors, corridorsCsv);
+            System.out.println("Carga de " + corridors.getArcCount() + " arcos: " + corridorsCsv.toAbsolutePath());
+
+            // Paradas por donde pasan más caminos mínimos (cuellos de botella de la red)
+            System.out.println();
+            System.out.println("Paradas con mayor betweenness" + (centrality.isSampled()
+                    ? " (aproximada con " + centrality.getSources() + " fuentes):" : ":"));
+            for (int stop : centrality.topByBetweenness(10)) {
+                System.out.printf("  %s (%d): betweenness %.1f, closeness %.4f%n",
+                        network.getStopShortName(stop), network.getStopId(stop),
+                        centrality.getBetweenness(stop), centrality.getCloseness(stop));
+            }
+            Path centralityCsv = arcListsDir.resolve("centralidad.csv");
+            centralityCalculator.writeCsv(centrality, centralityCsv);
+            System.out.println("Centralidad de " + centrality.getStopCount() + " paradas: " + centralityCsv.toAbsolutePath());
 
+            // Componentes fuertemente conexas, paradas aisladas, sumideros y fuentes (calculadas al
+            // cargar la red, en la compuerta de conectividad)
+            ComponentesRed components = loaded.getConnectivity();
+            System.out.println();
+            System.out.println("Conectividad: " + components);
+            Path componentsCsv = arcListsDir.resolve("conectividad.csv");
+            new AnalizadorComponentes().writeCsv(network, components, componentsCsv);
+            System.out.println("Componentes de " + network.getStopCount() + " paradas: " + componentsCsv.toAbsolutePath());
+
+            // Teselas del mapa, si se pidieron (el rango ya se revisó al empezar)
+            if (tileZoomRange != null) {
+                System.out.println();
+                new ExportadorTeselas(network, 256)
+                        .exportPyramid(Path.of("TeselasRed"), tileZoomRange[0], tileZoomRange[1], cores);
+            }
+
+            // Reporte de la ejecución por fase (tiempos, items/s, memoria asignada, latencias);
+            // las mismas métricas se ven por JMX mientras corre (mio:type=Fase)
+            Path report = Path.of("ReporteMetricas", "metricas-"
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            MetricasProceso.get().writeReport(report);
+            System.out.println();
+            System.out.println("Reporte de métricas: " + report.toAbsolutePath());
+
+        } catch (RedRechazadaException e) {
+            System.err.println("Rechazada por -Dmio.conectividad.estricta: " + e.getMessage());
+            System.exit(1);
         } catch (IOException e) {
             System.err.println("Error leyendo archivos CSV: " + e.getMessage());
             e.printStackTrace();
         }
     }
+
+    // "11-16" o "14" -> {min, max}; null si no son números o el rango no es válido
+    private static int[] parseZoomRange(String value) {
+        String[] range = value.split("-", -1);
+        if (range.length > 2) return null;
+        try {
+            int minZoom = Integer.parseInt(range[0].trim());
+            int maxZoom = Integer.parseInt(range[range.length - 1].trim());
+            if (minZoom < 0 || maxZoom > ExportadorTeselas.MAX_ZOOM || minZoom > maxZoom) return null;
+            return new int[]{minZoom, maxZoom};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
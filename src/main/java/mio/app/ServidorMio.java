@@ -0,0 +1,47 @@
+package mio.app;
+
+import mio.model.RedCompacta;
+import mio.service.InstantaneaRed;
+import mio.service.ServidorConsultas;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+
+// Modo servidor: carga la red una vez y atiende consultas HTTP hasta que se detenga el proceso
+// Uso: ServidorMio [puerto=8080] [carpeta de datos=src/data/proyecto-mio/MIO] [versión del plan=241]
+// Por defecto solo atiende pedidos de la misma máquina; -Dmio.servidor.direccion=0.0.0.0 (u otra
+// dirección o nombre de una interfaz) lo expone en la red
+public class ServidorMio {
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path dataDir = Path.of(args.length > 1 ? args[1] : "src/data/proyecto-mio/MIO");
+        String planVersion = args.length > 2 ? args[2] : "241";
+
+        try {
+            long t0 = System.nanoTime();
+            RedCompacta network = new InstantaneaRed().loadOrBuild(
+                    dataDir.resolve("lines-" + planVersion + ".csv"),
+                    dataDir.resolve("stops-" + planVersion + ".csv"),
+                    dataDir.resolve("linestops-" + planVersion + ".csv"),
+                    Path.of("InstantaneasRed"));
+
+            String bindAddress = System.getProperty("mio.servidor.direccion");
+            InetAddress address = bindAddress != null
+                    ? InetAddress.getByName(bindAddress) : InetAddress.getLoopbackAddress();
+            ServidorConsultas server = new ServidorConsultas(network, address, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            server.start();
+
+            System.out.println("Red cargada: " + network.getRouteCount() + " rutas, "
+                    + network.getStopCount() + " paradas (" + (System.nanoTime() - t0) / 1_000_000 + " ms)");
+            System.out.println("Servidor de consultas en http://" + address.getHostAddress() + ":"
+                    + server.getPort() + "/" + (bindAddress == null ? " (solo local)" : ""));
+        } catch (IOException e) {
+            System.err.println("Error iniciando el servidor: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
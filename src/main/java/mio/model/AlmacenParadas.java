@@ -0,0 +1,356 @@
+package mio.model;
+
+import mio.Util.MapaEnteroEntero;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Paradas en arreglos paralelos (ordenadas por stopId; la posición es el índice denso) en lugar de
+// un objeto Parada por parada. Los nombres cortos y largos van a un solo diccionario donde cada
+// texto distinto se guarda una vez (las plataformas pareadas repiten el nombre largo) y cada parada
+// guarda el código de su nombre. El stopId se busca en un mapa int -> int sin objetos.
+// Las columnas van en páginas de unas 64 paradas. El corte entre páginas depende del stopId (una
+// página nueva empieza en las paradas cuyo hash cae en cero), no de la posición: agregar o quitar
+// una parada solo cambia su página, y las demás páginas de otra versión del plan se pueden compartir.
+// Es inmutable: los arreglos que recibe el constructor pasan a ser propiedad del almacén.
+public class AlmacenParadas {
+
+    // tamaño promedio (potencia de dos) y máximo de una página
+    private static final int PAGE_AVERAGE = 64;
+    private static final int PAGE_MAX = 256;
+    // bloques fijos para ubicar la página de un índice sin búsqueda binaria
+    private static final int BLOCK_SHIFT = 6;
+
+    private final int size;
+    private final int[] pageStarts;   // la página p tiene los índices [pageStarts[p], pageStarts[p + 1])
+    private final int[] blockPages;   // página del índice b << BLOCK_SHIFT
+    private final int[][] stopIds;
+    private final double[][] lats;
+    private final double[][] lons;
+    private final int[][] shortNameCodes; // posición en names, o -1 si no tiene nombre
+    private final int[][] longNameCodes;
+    private final String[] names;         // diccionario: cada nombre distinto una vez
+    private final MapaEnteroEntero indexById;
+
+    public AlmacenParadas(int[] stopIds, double[] lats, double[] lons,
+                          int[] shortNameCodes, int[] longNameCodes, String[] names) {
+        this(pageStarts(stopIds), stopIds, lats, lons, shortNameCodes, longNameCodes, names);
+    }
+
+    private AlmacenParadas(int[] pageStarts, int[] stopIds, double[] lats, double[] lons,
+                           int[] shortNameCodes, int[] longNameCodes, String[] names) {
+        this(pageStarts, split(stopIds, pageStarts), split(lats, pageStarts), split(lons, pageStarts),
+                split(shortNameCodes, pageStarts), split(longNameCodes, pageStarts), names, null);
+    }
+
+    private AlmacenParadas(int[] pageStarts, int[][] stopIds, double[][] lats, double[][] lons,
+                           int[][] shortNameCodes, int[][] longNameCodes, String[] names,
+                           MapaEnteroEntero indexById) {
+        this.size = pageStarts[pageStarts.length - 1];
+        this.pageStarts = pageStarts;
+        this.stopIds = stopIds;
+        this.lats = lats;
+        this.lons = lons;
+        this.shortNameCodes = shortNameCodes;
+        this.longNameCodes = longNameCodes;
+        this.names = names;
+
+        blockPages = new int[(size >> BLOCK_SHIFT) + 1];
+        int page = 0;
+        for (int b = 0; b < blockPages.length; b++) {
+            while (page + 1 < stopIds.length && pageStarts[page + 1] <= b << BLOCK_SHIFT) page++;
+            blockPages[b] = page;
+        }
+
+        if (indexById == null) {
+            indexById = new MapaEnteroEntero(size);
+            int i = 0;
+            for (int[] ids : stopIds) {
+                for (int id : ids) {
+                    indexById.put(id, i++);
+                }
+            }
+        }
+        this.indexById = indexById;
+    }
+
+    // cortes de página: en el primer stopId, en los stopId con hash múltiplo de PAGE_AVERAGE y cada
+    // PAGE_MAX paradas como mucho
+    private static int[] pageStarts(int[] stopIds) {
+        int[] starts = new int[stopIds.length / 8 + 2];
+        int n = 0;
+        for (int i = 0; i < stopIds.length; i++) {
+            if (i == 0 || (mix(stopIds[i]) & (PAGE_AVERAGE - 1)) == 0 || i - starts[n - 1] == PAGE_MAX) {
+                if (n + 1 == starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+                starts[n++] = i;
+            }
+        }
+        if (n == 0) starts[n++] = 0; // almacén vacío: una página vacía
+        starts[n++] = stopIds.length;
+        return Arrays.copyOf(starts, n);
+    }
+
+    private static int mix(int stopId) {
+        int h = stopId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[][] split(int[] column, int[] pageStarts) {
+        int[][] pages = new int[pageStarts.length - 1][];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = Arrays.copyOfRange(column, pageStarts[p], pageStarts[p + 1]);
+        }
+        return pages;
+    }
+
+    private static double[][] split(double[] column, int[] pageStarts) {
+        double[][] pages = new double[pageStarts.length - 1][];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = Arrays.copyOfRange(column, pageStarts[p], pageStarts[p + 1]);
+        }
+        return pages;
+    }
+
+    // almacén a partir de arreglos ya ordenados por stopId con un nombre por parada
+    public static AlmacenParadas of(int[] stopIds, String[] shortNames, String[] longNames,
+                                    double[] lats, double[] lons) {
+        Diccionario dictionary = new Diccionario(stopIds.length);
+        int[] shortCodes = new int[stopIds.length];
+        int[] longCodes = new int[stopIds.length];
+        for (int i = 0; i < stopIds.length; i++) {
+            shortCodes[i] = dictionary.code(shortNames[i]);
+            longCodes[i] = dictionary.code(longNames[i]);
+        }
+        return new AlmacenParadas(stopIds, lats, lons, shortCodes, longCodes, dictionary.toArray());
+    }
+
+    // almacén a partir del mapa de paradas de los cargadores
+    public static AlmacenParadas of(Map<Integer, Parada> stopsById) {
+        int n = stopsById.size();
+        int[] stopIds = new int[n];
+        int k = 0;
+        for (int stopId : stopsById.keySet()) {
+            stopIds[k++] = stopId;
+        }
+        Arrays.sort(stopIds);
+
+        String[] shortNames = new String[n];
+        String[] longNames = new String[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            Parada s = stopsById.get(stopIds[i]);
+            shortNames[i] = s.getShortName();
+            longNames[i] = s.getLongName();
+            lats[i] = s.getLat();
+            lons[i] = s.getLon();
+        }
+        return of(stopIds, shortNames, longNames, lats, lons);
+    }
+
+    // ---- consultas ----
+
+    public int size() {
+        return size;
+    }
+
+    // índice denso de la parada, o -1 si no existe
+    public int indexOf(int stopId) {
+        return indexById.get(stopId, -1);
+    }
+
+    public int getStopId(int index) {
+        int p = pageOf(index);
+        return stopIds[p][index - pageStarts[p]];
+    }
+
+    public double getLat(int index) {
+        int p = pageOf(index);
+        return lats[p][index - pageStarts[p]];
+    }
+
+    public double getLon(int index) {
+        int p = pageOf(index);
+        return lons[p][index - pageStarts[p]];
+    }
+
+    public String getShortName(int index) {
+        int code = getShortNameCode(index);
+        return code >= 0 ? names[code] : null;
+    }
+
+    public String getLongName(int index) {
+        int code = getLongNameCode(index);
+        return code >= 0 ? names[code] : null;
+    }
+
+    // cantidad de nombres del diccionario (cortos y largos juntos; con almacenamiento compartido
+    // puede incluir nombres de paradas que ya no están)
+    public int getNameCount() {
+        return names.length;
+    }
+
+    public String getName(int code) {
+        return names[code];
+    }
+
+    public int getShortNameCode(int index) {
+        int p = pageOf(index);
+        return shortNameCodes[p][index - pageStarts[p]];
+    }
+
+    public int getLongNameCode(int index) {
+        int p = pageOf(index);
+        return longNameCodes[p][index - pageStarts[p]];
+    }
+
+    // vista de la parada para el código que usa Parada; se crea en cada llamada
+    public Parada getStop(int index) {
+        int p = pageOf(index);
+        int k = index - pageStarts[p];
+        return new Parada(stopIds[p][k], getShortName(index), getLongName(index), lats[p][k], lons[p][k]);
+    }
+
+    // vista de la parada con ese id, o null si no existe
+    public Parada getStopById(int stopId) {
+        int i = indexOf(stopId);
+        return i >= 0 ? getStop(i) : null;
+    }
+
+    // mapa stopId -> Parada para el código que todavía trabaja con mapas (crea una vista por parada)
+    public Map<Integer, Parada> toMap() {
+        Map<Integer, Parada> stopsById = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            stopsById.put(getStopId(i), getStop(i));
+        }
+        return stopsById;
+    }
+
+    // página del índice: la del bloque y, si hay cortes dentro del bloque, las siguientes
+    private int pageOf(int index) {
+        if (index < 0 || index >= size) throw new ArrayIndexOutOfBoundsException(index);
+        int p = blockPages[index >> BLOCK_SHIFT];
+        while (pageStarts[p + 1] <= index) p++;
+        return p;
+    }
+
+    // ---- almacenamiento compartido entre versiones del plan ----
+
+    // Almacén igual a este que reutiliza las páginas de other con el mismo contenido (se buscan por
+    // su primer stopId). El diccionario pasa a ser el de other con los nombres nuevos al final, así
+    // las paradas con el mismo nombre tienen el mismo código en las dos versiones y sus páginas de
+    // códigos también se comparten.
+    public AlmacenParadas shareStorageWith(AlmacenParadas other) {
+        if (this == other) return this;
+
+        String[] sharedNames = other.names;
+        int[][] shortCodes = shortNameCodes;
+        int[][] longCodes = longNameCodes;
+        if (!Arrays.equals(names, other.names)) {
+            Diccionario merged = new Diccionario(other.names.length + names.length);
+            for (String name : other.names) {
+                merged.code(name);
+            }
+            int[] remap = new int[names.length];
+            for (int c = 0; c < names.length; c++) {
+                remap[c] = merged.code(names[c]);
+            }
+            String[] mergedNames = merged.toArray();
+            if (mergedNames.length > other.names.length) sharedNames = mergedNames;
+            shortCodes = recode(shortNameCodes, remap);
+            longCodes = recode(longNameCodes, remap);
+        }
+
+        // páginas de other por su primer stopId
+        MapaEnteroEntero otherPages = new MapaEnteroEntero(other.stopIds.length);
+        for (int q = 0; q < other.stopIds.length; q++) {
+            if (other.stopIds[q].length > 0) otherPages.put(other.stopIds[q][0], q);
+        }
+
+        int nPages = stopIds.length;
+        int[][] ids = stopIds.clone();
+        double[][] sharedLats = lats.clone();
+        double[][] sharedLons = lons.clone();
+        int[][] sharedShort = shortCodes.clone();
+        int[][] sharedLong = longCodes.clone();
+        boolean sameIds = nPages == other.stopIds.length;
+        boolean sameAll = sameIds && sharedNames == other.names;
+        for (int p = 0; p < nPages; p++) {
+            int q = ids[p].length > 0 ? otherPages.get(ids[p][0], -1) : -1;
+            if (q >= 0) {
+                ids[p] = share(ids[p], other.stopIds[q]);
+                sharedLats[p] = share(sharedLats[p], other.lats[q]);
+                sharedLons[p] = share(sharedLons[p], other.lons[q]);
+                sharedShort[p] = share(sharedShort[p], other.shortNameCodes[q]);
+                sharedLong[p] = share(sharedLong[p], other.longNameCodes[q]);
+            }
+            sameIds &= q == p && ids[p] == other.stopIds[p];
+            sameAll &= q == p && ids[p] == other.stopIds[p] && sharedLats[p] == other.lats[p]
+                    && sharedLons[p] == other.lons[p] && sharedShort[p] == other.shortNameCodes[p]
+                    && sharedLong[p] == other.longNameCodes[p];
+        }
+        if (sameAll) return other;
+
+        // mismas paradas en el mismo orden: los índices densos coinciden y el mapa también
+        return new AlmacenParadas(sameIds ? other.pageStarts : pageStarts, ids, sharedLats, sharedLons,
+                sharedShort, sharedLong, sharedNames, sameIds ? other.indexById : indexById);
+    }
+
+    // true si las coordenadas de todas las paradas están en las mismas páginas (las comparten dos versiones)
+    public boolean sharesCoordinatesWith(AlmacenParadas other) {
+        if (stopIds.length != other.stopIds.length) return false;
+        for (int p = 0; p < stopIds.length; p++) {
+            if (stopIds[p] != other.stopIds[p] || lats[p] != other.lats[p] || lons[p] != other.lons[p]) return false;
+        }
+        return true;
+    }
+
+    private static int[][] recode(int[][] pages, int[] remap) {
+        int[][] recoded = new int[pages.length][];
+        for (int p = 0; p < pages.length; p++) {
+            recoded[p] = new int[pages[p].length];
+            for (int k = 0; k < pages[p].length; k++) {
+                int code = pages[p][k];
+                recoded[p][k] = code >= 0 ? remap[code] : -1;
+            }
+        }
+        return recoded;
+    }
+
+    private static int[] share(int[] mine, int[] theirs) {
+        return Arrays.equals(mine, theirs) ? theirs : mine;
+    }
+
+    private static double[] share(double[] mine, double[] theirs) {
+        return Arrays.equals(mine, theirs) ? theirs : mine;
+    }
+
+    // Asigna a cada nombre distinto un código en orden de aparición
+    public static final class Diccionario {
+        private final Map<String, Integer> codes;
+        private String[] names;
+        private int size;
+
+        public Diccionario(int expectedSize) {
+            codes = new HashMap<>(Math.max(16, expectedSize));
+            names = new String[Math.max(16, expectedSize / 2)];
+        }
+
+        // código del nombre (el mismo para textos iguales), o -1 si es null
+        public int code(String name) {
+            if (name == null) return -1;
+            Integer code = codes.get(name);
+            if (code != null) return code;
+
+            if (size == names.length) names = Arrays.copyOf(names, size * 2);
+            names[size] = name;
+            codes.put(name, size);
+            return size++;
+        }
+
+        public String[] toArray() {
+            return Arrays.copyOf(names, size);
+        }
+    }
+}
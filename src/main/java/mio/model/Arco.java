@@ -10,6 +10,20 @@ public class Arco {
         this.destinoStopId = destinoStopId;
     }
 
+    // arco empaquetado en un long (origen en los 32 bits altos, destino en los bajos), para usarlo
+    // como clave sin crear objetos; ordenar las claves ordena por (origen, destino)
+    public static long pack(int origenStopId, int destinoStopId) {
+        return ((long) origenStopId << 32) | (destinoStopId & 0xFFFFFFFFL);
+    }
+
+    public static int packedOrigen(long arc) {
+        return (int) (arc >>> 32);
+    }
+
+    public static int packedDestino(long arc) {
+        return (int) arc;
+    }
+
     public int getOrigenStopId() {
         return origenStopId;
     }
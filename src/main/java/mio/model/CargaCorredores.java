@@ -0,0 +1,96 @@
+package mio.model;
+
+import mio.Util.MapaLargoEntero;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Carga de cada arco de la red: cuántas rutas, cuántas rutas por orientación (ruta + orientación) y
+// cuántas secuencias (ruta + orientación + variante) pasan por cada par de paradas. Las claves son arcos empaquetados con Arco.pack(origen, destino).
+public class CargaCorredores {
+    private final MapaLargoEntero linesByArc;
+    private final MapaLargoEntero lineOrientationsByArc;
+    private final MapaLargoEntero sequencesByArc;
+    private final int maxSequences;
+
+    public CargaCorredores(MapaLargoEntero linesByArc, MapaLargoEntero lineOrientationsByArc,
+                           MapaLargoEntero sequencesByArc) {
+        this.linesByArc = linesByArc;
+        this.lineOrientationsByArc = lineOrientationsByArc;
+        this.sequencesByArc = sequencesByArc;
+
+        int max = 0;
+        for (long arc : sequencesByArc.keys()) {
+            max = Math.max(max, sequencesByArc.get(arc, 0));
+        }
+        this.maxSequences = max;
+    }
+
+    // cantidad de arcos distintos
+    public int getArcCount() {
+        return sequencesByArc.size();
+    }
+
+    public int getLines(int origenStopId, int destinoStopId) {
+        return linesByArc.get(Arco.pack(origenStopId, destinoStopId), 0);
+    }
+
+    // pares (ruta, orientación) que usan el arco: una ruta que lo recorre en ida y en regreso cuenta dos
+    public int getLineOrientations(int origenStopId, int destinoStopId) {
+        return lineOrientationsByArc.get(Arco.pack(origenStopId, destinoStopId), 0);
+    }
+
+    public int getSequences(int origenStopId, int destinoStopId) {
+        return sequencesByArc.get(Arco.pack(origenStopId, destinoStopId), 0);
+    }
+
+    public int getMaxSequences() {
+        return maxSequences;
+    }
+
+    // peso del arco entre 0 y 1 (secuencias que lo usan sobre las del arco más cargado), para el grosor del dibujo
+    public double getWeight(int origenStopId, int destinoStopId) {
+        return maxSequences > 0 ? (double) getSequences(origenStopId, destinoStopId) / maxSequences : 0;
+    }
+
+    // arcos empaquetados, ordenados por (origen, destino)
+    public long[] getArcs() {
+        long[] arcs = sequencesByArc.keys();
+        Arrays.sort(arcs);
+        return arcs;
+    }
+
+    public Corredor getCorridor(long arc) {
+        return new Corredor(Arco.packedOrigen(arc), Arco.packedDestino(arc),
+                linesByArc.get(arc, 0), lineOrientationsByArc.get(arc, 0), sequencesByArc.get(arc, 0));
+    }
+
+    // los n arcos que usan más rutas (en empate, más secuencias y después por origen y destino);
+    // con un heap de tamaño n no hace falta ordenar todos los arcos
+    public List<Corredor> top(int n) {
+        if (n <= 0) return new ArrayList<>();
+
+        PriorityQueue<Corredor> best = new PriorityQueue<>(n + 1, BUSIEST_FIRST.reversed());
+        for (long arc : sequencesByArc.keys()) {
+            int lines = linesByArc.get(arc, 0);
+            Corredor worst = best.peek();
+            if (best.size() == n && lines < worst.getLines()) continue;
+
+            best.add(getCorridor(arc));
+            if (best.size() > n) best.poll();
+        }
+
+        List<Corredor> result = new ArrayList<>(best);
+        result.sort(BUSIEST_FIRST);
+        return result;
+    }
+
+    private static final Comparator<Corredor> BUSIEST_FIRST =
+            Comparator.comparingInt(Corredor::getLines).reversed()
+                    .thenComparing(Comparator.comparingInt(Corredor::getSequences).reversed())
+                    .thenComparingInt(Corredor::getOrigenStopId)
+                    .thenComparingInt(Corredor::getDestinoStopId);
+}
@@ -0,0 +1,72 @@
+package mio.model;
+
+// Centralidad de cada parada del grafo fusionado (índices densos de la red compacta).
+// betweenness: cuántos caminos mínimos entre pares de paradas pasan por la parada (sin normalizar;
+// con muestreo es la estimación escalada a todas las fuentes). closeness: Wasserman-Faust, que sirve
+// con grafos no conexos; -1 si la parada no fue fuente (solo pasa con muestreo).
+public class CentralidadRed {
+    private final double[] betweenness;
+    private final double[] closeness;
+    private final int sources;
+    private final boolean sampled;
+
+    public CentralidadRed(double[] betweenness, double[] closeness, int sources, boolean sampled) {
+        this.betweenness = betweenness;
+        this.closeness = closeness;
+        this.sources = sources;
+        this.sampled = sampled;
+    }
+
+    public int getStopCount() {
+        return betweenness.length;
+    }
+
+    public double getBetweenness(int stopIndex) {
+        return betweenness[stopIndex];
+    }
+
+    // betweenness dividida por la cantidad de pares ordenados que no incluyen a la parada
+    public double getNormalizedBetweenness(int stopIndex) {
+        double n = betweenness.length;
+        return n > 2 ? betweenness[stopIndex] / ((n - 1) * (n - 2)) : 0;
+    }
+
+    public double getCloseness(int stopIndex) {
+        return closeness[stopIndex];
+    }
+
+    public double getMaxBetweenness() {
+        double max = 0;
+        for (double b : betweenness) {
+            max = Math.max(max, b);
+        }
+        return max;
+    }
+
+    // cantidad de paradas usadas como fuente de caminos
+    public int getSources() {
+        return sources;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    // índices de las n paradas con más betweenness, de mayor a menor (en empate, el menor índice)
+    public int[] topByBetweenness(int n) {
+        int k = Math.min(n, betweenness.length);
+        int[] top = new int[k];
+        int size = 0;
+        for (int i = 0; i < betweenness.length; i++) {
+            // inserción en un arreglo ordenado de tamaño k
+            if (size == k && (k == 0 || betweenness[i] <= betweenness[top[k - 1]])) continue;
+            int j = size < k ? size++ : k - 1;
+            while (j > 0 && betweenness[top[j - 1]] < betweenness[i]) {
+                top[j] = top[j - 1];
+                j--;
+            }
+            top[j] = i;
+        }
+        return top;
+    }
+}
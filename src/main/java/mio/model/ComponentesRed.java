@@ -0,0 +1,91 @@
+package mio.model;
+
+// Conectividad del grafo fusionado de paradas: componentes fuertemente conexas (solo de las paradas
+// que aparecen en alguna secuencia), paradas aisladas (están en el archivo de paradas pero en ninguna
+// secuencia), paradas sumidero (se llega pero no se sale) y fuente (se sale pero no se llega).
+// Las paradas van por stopId, ordenadas.
+public class ComponentesRed {
+    private final int[] componentOf;    // por índice denso de parada: componente, o -1 si está aislada
+    private final int[] componentSizes; // por componente
+    private final int largestComponent;
+    private final int[] isolatedStops;
+    private final int[] sinkStops;
+    private final int[] sourceStops;
+
+    public ComponentesRed(int[] componentOf, int[] componentSizes,
+                          int[] isolatedStops, int[] sinkStops, int[] sourceStops) {
+        this.componentOf = componentOf;
+        this.componentSizes = componentSizes;
+        this.isolatedStops = isolatedStops;
+        this.sinkStops = sinkStops;
+        this.sourceStops = sourceStops;
+
+        int largest = -1;
+        for (int c = 0; c < componentSizes.length; c++) {
+            if (largest < 0 || componentSizes[c] > componentSizes[largest]) largest = c;
+        }
+        this.largestComponent = largest;
+    }
+
+    public int getComponentCount() {
+        return componentSizes.length;
+    }
+
+    // componente de la parada (índice denso), o -1 si está aislada
+    public int getComponent(int stopIndex) {
+        return componentOf[stopIndex];
+    }
+
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    // paradas de la componente más grande (0 si no hay componentes)
+    public int getLargestComponentSize() {
+        return largestComponent >= 0 ? componentSizes[largestComponent] : 0;
+    }
+
+    public int getLargestComponent() {
+        return largestComponent;
+    }
+
+    // paradas usadas por las secuencias que quedan fuera de la componente más grande
+    public int getStopsOutsideLargest() {
+        int n = 0;
+        for (int c = 0; c < componentSizes.length; c++) {
+            if (c != largestComponent) n += componentSizes[c];
+        }
+        return n;
+    }
+
+    public int[] getIsolatedStops() {
+        return isolatedStops.clone();
+    }
+
+    public int[] getSinkStops() {
+        return sinkStops.clone();
+    }
+
+    public int[] getSourceStops() {
+        return sourceStops.clone();
+    }
+
+    // true si desde cualquier parada usada se llega a cualquier otra
+    public boolean isStronglyConnected() {
+        return componentSizes.length <= 1;
+    }
+
+    // true si hay paradas a las que se llega y de las que no se sale (o al revés); la red real no es
+    // fuertemente conexa (hay bolsillos de un solo sentido), pero un callejón sin salida es un error de datos
+    public boolean hasDeadEnds() {
+        return sinkStops.length > 0 || sourceStops.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return getComponentCount() + " componentes fuertemente conexas (la mayor con "
+                + getLargestComponentSize() + " paradas, " + getStopsOutsideLargest() + " fuera de ella), "
+                + isolatedStops.length + " paradas aisladas, " + sinkStops.length + " sumideros, "
+                + sourceStops.length + " fuentes";
+    }
+}
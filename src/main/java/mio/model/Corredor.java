@@ -0,0 +1,45 @@
+package mio.model;
+
+// Un par de paradas consecutivas (arco) con cuántas rutas, rutas por orientación (ruta + orientación) y
+// secuencias (ruta + orientación + variante) lo usan
+public class Corredor {
+    private final int origenStopId;
+    private final int destinoStopId;
+    private final int lines;
+    private final int lineOrientations;
+    private final int sequences;
+
+    public Corredor(int origenStopId, int destinoStopId, int lines, int lineOrientations, int sequences) {
+        this.origenStopId = origenStopId;
+        this.destinoStopId = destinoStopId;
+        this.lines = lines;
+        this.lineOrientations = lineOrientations;
+        this.sequences = sequences;
+    }
+
+    public int getOrigenStopId() {
+        return origenStopId;
+    }
+
+    public int getDestinoStopId() {
+        return destinoStopId;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getLineOrientations() {
+        return lineOrientations;
+    }
+
+    public int getSequences() {
+        return sequences;
+    }
+
+    @Override
+    public String toString() {
+        return origenStopId + " -> " + destinoStopId + " (" + lines + " rutas, " + lineOrientations + " rutas por sentido, "
+                + sequences + " secuencias)";
+    }
+}
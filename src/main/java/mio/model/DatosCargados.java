@@ -0,0 +1,44 @@
+package mio.model;
+
+import java.util.List;
+import java.util.Map;
+
+// Resultado de cargar los tres archivos CSV: rutas y relaciones ruta-parada en mapas, paradas en
+// un AlmacenParadas y la red compacta
+public class DatosCargados {
+    private final Map<Integer, Ruta> routesById;
+    private final AlmacenParadas stops;
+    private final Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation;
+    private final RedCompacta network;
+
+    public DatosCargados(Map<Integer, Ruta> routesById,
+                         AlmacenParadas stops,
+                         Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation,
+                         RedCompacta network) {
+        this.routesById = routesById;
+        this.stops = stops;
+        this.lineStopsByRouteAndOrientation = lineStopsByRouteAndOrientation;
+        this.network = network;
+    }
+
+    public Map<Integer, Ruta> getRoutesById() {
+        return routesById;
+    }
+
+    public AlmacenParadas getStops() {
+        return stops;
+    }
+
+    // mapa stopId -> Parada armado en cada llamada (vistas sobre el almacén)
+    public Map<Integer, Parada> getStopsById() {
+        return stops.toMap();
+    }
+
+    public Map<Integer, Map<Integer, List<ParadaRuta>>> getLineStopsByRouteAndOrientation() {
+        return lineStopsByRouteAndOrientation;
+    }
+
+    public RedCompacta getNetwork() {
+        return network;
+    }
+}
@@ -0,0 +1,95 @@
+package mio.model;
+
+// Cambios de una versión del plan a otra: arcos, paradas y rutas que aparecen, desaparecen o cambian.
+// Los arcos van empaquetados en un long (Arco.pack) y todos los arreglos están ordenados por id.
+public class DiferenciaRedes {
+    private final int fromVersion;
+    private final int toVersion;
+
+    private final long[] addedArcs;
+    private final long[] removedArcs;
+
+    private final int[] addedStops;
+    private final int[] removedStops;
+    private final int[] movedStops;
+    private final double[] movedMeters; // movedMeters[i]: cuánto se movió movedStops[i]
+
+    private final int[] addedLines;
+    private final int[] removedLines;
+    private final int[] changedLines; // rutas que siguen pero con otras secuencias de paradas
+
+    public DiferenciaRedes(int fromVersion, int toVersion,
+                           long[] addedArcs, long[] removedArcs,
+                           int[] addedStops, int[] removedStops, int[] movedStops, double[] movedMeters,
+                           int[] addedLines, int[] removedLines, int[] changedLines) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.addedArcs = addedArcs;
+        this.removedArcs = removedArcs;
+        this.addedStops = addedStops;
+        this.removedStops = removedStops;
+        this.movedStops = movedStops;
+        this.movedMeters = movedMeters;
+        this.addedLines = addedLines;
+        this.removedLines = removedLines;
+        this.changedLines = changedLines;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public int getToVersion() {
+        return toVersion;
+    }
+
+    public long[] getAddedArcs() {
+        return addedArcs.clone();
+    }
+
+    public long[] getRemovedArcs() {
+        return removedArcs.clone();
+    }
+
+    public int[] getAddedStops() {
+        return addedStops.clone();
+    }
+
+    public int[] getRemovedStops() {
+        return removedStops.clone();
+    }
+
+    public int[] getMovedStops() {
+        return movedStops.clone();
+    }
+
+    public double[] getMovedMeters() {
+        return movedMeters.clone();
+    }
+
+    public int[] getAddedLines() {
+        return addedLines.clone();
+    }
+
+    public int[] getRemovedLines() {
+        return removedLines.clone();
+    }
+
+    public int[] getChangedLines() {
+        return changedLines.clone();
+    }
+
+    public boolean isEmpty() {
+        return addedArcs.length == 0 && removedArcs.length == 0
+                && addedStops.length == 0 && removedStops.length == 0 && movedStops.length == 0
+                && addedLines.length == 0 && removedLines.length == 0 && changedLines.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DiferenciaRedes{" + fromVersion + " -> " + toVersion
+                + ", arcos +" + addedArcs.length + " -" + removedArcs.length
+                + ", paradas +" + addedStops.length + " -" + removedStops.length + " ~" + movedStops.length
+                + ", rutas +" + addedLines.length + " -" + removedLines.length + " ~" + changedLines.length + "}";
+    }
+}
@@ -1,17 +1,24 @@
 package mio.model;
 
-// Relación entre una ruta y una parada (con secuencia y orientación)
+// Relación entre una ruta y una parada (con secuencia, orientación y variante de la ruta)
 public class ParadaRuta {
     private final int lineId;
     private final int stopId;
     private final int sequence;
     private final int orientation;
+    private final int variant;
 
+    // sin LINEVARIANT: todas las paradas quedan en la variante 0
     public ParadaRuta(int lineId, int stopId, int sequence, int orientation) {
+        this(lineId, stopId, sequence, orientation, 0);
+    }
+
+    public ParadaRuta(int lineId, int stopId, int sequence, int orientation, int variant) {
         this.lineId = lineId;
         this.stopId = stopId;
         this.sequence = sequence;
         this.orientation = orientation;
+        this.variant = variant;
     }
 
     public int getLineId() {
@@ -29,5 +36,9 @@ public class ParadaRuta {
     public int getOrientation() {
         return orientation;
     }
+
+    public int getVariant() {
+        return variant;
+    }
 }
 
@@ -0,0 +1,317 @@
+package mio.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Red del MIO en arreglos primitivos: paradas con índice denso (AlmacenParadas), secuencias por
+// ruta/orientación/variante (ordenadas una sola vez al armar la red) en arreglos de offsets y
+// adyacencia parada-parada fusionada en formato CSR.
+// Es inmutable: los arreglos que recibe el constructor pasan a ser propiedad de la red.
+public class RedCompacta {
+
+    // paradas, ordenadas por stopId (el índice denso es la posición en el almacén)
+    private final AlmacenParadas stops;
+
+    // rutas del archivo de líneas, ordenadas por lineId
+    private final int[] routeLineIds;
+    private final Ruta[] routes;
+
+    // rutas que tienen secuencias: la ruta l usa las secuencias [lineSeqOffsets[l], lineSeqOffsets[l + 1])
+    private final int[] lineIds;
+    private final int[] lineSeqOffsets;
+
+    // secuencias (ruta + orientación + variante), en ese orden:
+    // la secuencia s ocupa las posiciones [seqOffsets[s], seqOffsets[s + 1])
+    private final int[] seqLineIds;
+    private final int[] seqOrientations;
+    private final int[] seqVariants;
+    private final int[] seqOffsets;
+
+    // una posición por parada de cada secuencia, ya ordenadas por STOPSEQUENCE. Los stopId van en un
+    // arreglo por ruta (la ruta l tiene las posiciones [linePositionStarts[l], linePositionStarts[l + 1])),
+    // así una versión del plan comparte los de las rutas que no cambiaron. Los índices densos van en un
+    // solo arreglo: los usan los ciclos internos y cambian con cualquier parada agregada o quitada
+    private final int[] linePositionStarts;
+    private final int[][] lineStopIds;
+    private final int[] seqStopIndices; // índice denso de la parada o -1 si no está en el archivo de paradas
+
+    // adyacencia fusionada: los vecinos de la parada i están en adjTargets[adjOffsets[i] .. adjOffsets[i + 1])
+    private final int[] adjOffsets;
+    private final int[] adjTargets;
+
+    public RedCompacta(int[] stopIds, String[] stopShortNames, String[] stopLongNames,
+                       double[] stopLats, double[] stopLons,
+                       int[] routeLineIds, Ruta[] routes,
+                       int[] lineIds, int[] lineSeqOffsets,
+                       int[] seqLineIds, int[] seqOrientations, int[] seqVariants, int[] seqOffsets,
+                       int[] seqStopIds, int[] seqStopIndices,
+                       int[] adjOffsets, int[] adjTargets) {
+        this(AlmacenParadas.of(stopIds, stopShortNames, stopLongNames, stopLats, stopLons),
+                routeLineIds, routes, lineIds, lineSeqOffsets,
+                seqLineIds, seqOrientations, seqVariants, seqOffsets,
+                seqStopIds, seqStopIndices, adjOffsets, adjTargets);
+    }
+
+    public RedCompacta(AlmacenParadas stops,
+                       int[] routeLineIds, Ruta[] routes,
+                       int[] lineIds, int[] lineSeqOffsets,
+                       int[] seqLineIds, int[] seqOrientations, int[] seqVariants, int[] seqOffsets,
+                       int[] seqStopIds, int[] seqStopIndices,
+                       int[] adjOffsets, int[] adjTargets) {
+        this(stops, routeLineIds, routes, lineIds, lineSeqOffsets,
+                seqLineIds, seqOrientations, seqVariants, seqOffsets,
+                linePositionStarts(lineSeqOffsets, seqOffsets),
+                splitByLine(seqStopIds, linePositionStarts(lineSeqOffsets, seqOffsets)),
+                seqStopIndices, adjOffsets, adjTargets);
+    }
+
+    private RedCompacta(AlmacenParadas stops,
+                        int[] routeLineIds, Ruta[] routes,
+                        int[] lineIds, int[] lineSeqOffsets,
+                        int[] seqLineIds, int[] seqOrientations, int[] seqVariants, int[] seqOffsets,
+                        int[] linePositionStarts, int[][] lineStopIds, int[] seqStopIndices,
+                        int[] adjOffsets, int[] adjTargets) {
+        this.stops = stops;
+        this.routeLineIds = routeLineIds;
+        this.routes = routes;
+        this.lineIds = lineIds;
+        this.lineSeqOffsets = lineSeqOffsets;
+        this.seqLineIds = seqLineIds;
+        this.seqOrientations = seqOrientations;
+        this.seqVariants = seqVariants;
+        this.seqOffsets = seqOffsets;
+        this.linePositionStarts = linePositionStarts;
+        this.lineStopIds = lineStopIds;
+        this.seqStopIndices = seqStopIndices;
+        this.adjOffsets = adjOffsets;
+        this.adjTargets = adjTargets;
+    }
+
+    // primera posición de cada ruta con secuencias (y el total al final)
+    private static int[] linePositionStarts(int[] lineSeqOffsets, int[] seqOffsets) {
+        int nLines = lineSeqOffsets.length - 1;
+        int[] starts = new int[nLines + 1];
+        for (int l = 0; l <= nLines; l++) {
+            starts[l] = seqOffsets[lineSeqOffsets[l]];
+        }
+        return starts;
+    }
+
+    private static int[][] splitByLine(int[] positions, int[] linePositionStarts) {
+        int[][] slices = new int[linePositionStarts.length - 1][];
+        for (int l = 0; l < slices.length; l++) {
+            slices[l] = Arrays.copyOfRange(positions, linePositionStarts[l], linePositionStarts[l + 1]);
+        }
+        return slices;
+    }
+
+    // ---- almacenamiento compartido entre versiones del plan ----
+
+    // Red igual a esta pero que reutiliza lo de other que tiene el mismo contenido: las páginas de
+    // paradas (ver AlmacenParadas), los stopId de cada ruta que no cambió, los arreglos completos que
+    // son iguales, y los Strings y rutas iguales aunque el arreglo haya cambiado. Como las redes no
+    // cambian después de creadas, compartir es seguro: una versión con cambios solo ocupa memoria
+    // nueva en lo que cambió (copia al escribir). Lo que depende del índice denso de las paradas
+    // (índices de las posiciones, adyacencia, mapa de stopId) se comparte solo si no cambió ninguna
+    // parada, porque agregar o quitar una corre los índices de todas las siguientes.
+    public RedCompacta shareStorageWith(RedCompacta other) {
+        // rutas: reutilizo la Ruta de other si tiene los mismos datos
+        Ruta[] sharedRoutes = routes.clone();
+        boolean sameRoutes = routes.length == other.routes.length;
+        for (int i = 0; i < routes.length; i++) {
+            Ruta previous = other.getRoute(routeLineIds[i]);
+            if (previous != null && sameRoute(routes[i], previous)) {
+                sharedRoutes[i] = previous;
+            }
+            sameRoutes &= i < other.routes.length && sharedRoutes[i] == other.routes[i];
+        }
+        if (sameRoutes) sharedRoutes = other.routes;
+
+        // stopId de las posiciones, por ruta: el de other si la ruta tiene exactamente las mismas paradas
+        int[][] sharedLineStops = lineStopIds.clone();
+        boolean sameLineStops = lineStopIds.length == other.lineStopIds.length;
+        for (int l = 0; l < lineStopIds.length; l++) {
+            int previous = Arrays.binarySearch(other.lineIds, lineIds[l]);
+            if (previous >= 0) sharedLineStops[l] = share(lineStopIds[l], other.lineStopIds[previous]);
+            sameLineStops &= previous == l && sharedLineStops[l] == other.lineStopIds[l];
+        }
+        if (sameLineStops) sharedLineStops = other.lineStopIds;
+
+        return new RedCompacta(
+                stops.shareStorageWith(other.stops),
+                share(routeLineIds, other.routeLineIds), sharedRoutes,
+                share(lineIds, other.lineIds), share(lineSeqOffsets, other.lineSeqOffsets),
+                share(seqLineIds, other.seqLineIds), share(seqOrientations, other.seqOrientations),
+                share(seqVariants, other.seqVariants), share(seqOffsets, other.seqOffsets),
+                share(linePositionStarts, other.linePositionStarts), sharedLineStops,
+                share(seqStopIndices, other.seqStopIndices),
+                share(adjOffsets, other.adjOffsets), share(adjTargets, other.adjTargets)
+        );
+    }
+
+    // true si las dos redes tienen las mismas paradas en los mismos arreglos
+    public boolean sharesStopsWith(RedCompacta other) {
+        return stops.sharesCoordinatesWith(other.stops);
+    }
+
+    private static int[] share(int[] mine, int[] theirs) {
+        return Arrays.equals(mine, theirs) ? theirs : mine;
+    }
+
+    private static boolean sameRoute(Ruta a, Ruta b) {
+        return a.getLineId() == b.getLineId()
+                && Objects.equals(a.getShortName(), b.getShortName())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    // ---- paradas ----
+
+    public AlmacenParadas getStops() {
+        return stops;
+    }
+
+    public int getStopCount() {
+        return stops.size();
+    }
+
+    // índice denso de la parada, o -1 si no existe
+    public int indexOfStop(int stopId) {
+        return stops.indexOf(stopId);
+    }
+
+    public int getStopId(int stopIndex) {
+        return stops.getStopId(stopIndex);
+    }
+
+    public String getStopShortName(int stopIndex) {
+        return stops.getShortName(stopIndex);
+    }
+
+    public String getStopLongName(int stopIndex) {
+        return stops.getLongName(stopIndex);
+    }
+
+    public double getLat(int stopIndex) {
+        return stops.getLat(stopIndex);
+    }
+
+    public double getLon(int stopIndex) {
+        return stops.getLon(stopIndex);
+    }
+
+    // ---- rutas ----
+
+    public int getRouteCount() {
+        return routes.length;
+    }
+
+    // i-ésima ruta en orden de lineId
+    public Ruta getRouteAt(int i) {
+        return routes[i];
+    }
+
+    // ruta del archivo de líneas, o null si no existe
+    public Ruta getRoute(int lineId) {
+        int i = Arrays.binarySearch(routeLineIds, lineId);
+        return i >= 0 ? routes[i] : null;
+    }
+
+    // ---- rutas con secuencias ----
+
+    public int getLineCount() {
+        return lineIds.length;
+    }
+
+    public int getLineId(int line) {
+        return lineIds[line];
+    }
+
+    public int getLineFirstSequence(int line) {
+        return lineSeqOffsets[line];
+    }
+
+    public int getLineEndSequence(int line) {
+        return lineSeqOffsets[line + 1];
+    }
+
+    // ---- secuencias ----
+
+    public int getSequenceCount() {
+        return seqLineIds.length;
+    }
+
+    public int getSequenceLineId(int seq) {
+        return seqLineIds[seq];
+    }
+
+    public int getSequenceOrientation(int seq) {
+        return seqOrientations[seq];
+    }
+
+    // LINEVARIANT de la secuencia (0 si el archivo no la trae)
+    public int getSequenceVariant(int seq) {
+        return seqVariants[seq];
+    }
+
+    public int getSequenceStart(int seq) {
+        return seqOffsets[seq];
+    }
+
+    public int getSequenceEnd(int seq) {
+        return seqOffsets[seq + 1];
+    }
+
+    // total de posiciones (paradas de todas las secuencias)
+    public int getPositionCount() {
+        return seqStopIndices.length;
+    }
+
+    public int getPositionStopId(int pos) {
+        int stop = seqStopIndices[pos];
+        if (stop >= 0) return stops.getStopId(stop);
+        // parada que no está en el archivo de paradas: el stopId solo queda en el arreglo de la ruta
+        int line = lineOfPosition(pos);
+        return lineStopIds[line][pos - linePositionStarts[line]];
+    }
+
+    // true si la ruta line de esta red y la ruta otherLine de other usan el mismo arreglo de stopId
+    // (compartido con shareStorageWith): tienen las mismas paradas en el mismo orden sin recorrerlas
+    public boolean sharesLineStopsWith(int line, RedCompacta other, int otherLine) {
+        return lineStopIds[line] == other.lineStopIds[otherLine];
+    }
+
+    // ruta dueña de la posición (búsqueda binaria sobre las primeras posiciones de cada ruta)
+    private int lineOfPosition(int pos) {
+        if (pos < 0 || pos >= seqStopIndices.length) throw new ArrayIndexOutOfBoundsException(pos);
+        int lo = 0;
+        int hi = lineStopIds.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (linePositionStarts[mid] <= pos) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public int getPositionStopIndex(int pos) {
+        return seqStopIndices[pos];
+    }
+
+    // ---- adyacencia fusionada (CSR) ----
+
+    public int getArcCount() {
+        return adjTargets.length;
+    }
+
+    public int getArcsStart(int stopIndex) {
+        return adjOffsets[stopIndex];
+    }
+
+    public int getArcsEnd(int stopIndex) {
+        return adjOffsets[stopIndex + 1];
+    }
+
+    public int getArcTarget(int arc) {
+        return adjTargets[arc];
+    }
+}
@@ -0,0 +1,58 @@
+package mio.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Resultado de planear un viaje: paradas recorridas en orden y la ruta con la que se llega a cada una
+public class Viaje {
+    private final int[] stopIds;
+    private final int[] lineIds; // lineIds[i]: ruta con la que se llega a stopIds[i] (en la primera, la que se toma)
+    private final double distanceMeters;
+    private final int transfers;
+    private final double cost;
+
+    public Viaje(int[] stopIds, int[] lineIds, double distanceMeters, int transfers, double cost) {
+        this.stopIds = stopIds;
+        this.lineIds = lineIds;
+        this.distanceMeters = distanceMeters;
+        this.transfers = transfers;
+        this.cost = cost;
+    }
+
+    public int[] getStopIds() {
+        return stopIds.clone();
+    }
+
+    public int[] getLineIds() {
+        return lineIds.clone();
+    }
+
+    // rutas usadas en orden, sin repetir las consecutivas
+    public List<Integer> getLinesUsed() {
+        List<Integer> lines = new ArrayList<>();
+        for (int lineId : lineIds) {
+            if (lines.isEmpty() || lines.get(lines.size() - 1) != lineId) lines.add(lineId);
+        }
+        return lines;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public int getTransfers() {
+        return transfers;
+    }
+
+    // distancia más las penalizaciones por transbordo
+    public double getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return "Viaje{paradas=" + Arrays.toString(stopIds) + ", rutas=" + getLinesUsed()
+                + ", distancia=" + Math.round(distanceMeters) + " m, transbordos=" + transfers + "}";
+    }
+}
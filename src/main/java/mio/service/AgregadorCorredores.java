@@ -0,0 +1,160 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.Util.MapaLargoEntero;
+import mio.model.Arco;
+import mio.model.CargaCorredores;
+import mio.model.Corredor;
+import mio.model.RedCompacta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Cuenta cuántas rutas, rutas por orientación (ruta + orientación) y secuencias (ruta + orientación +
+// variante) pasan por cada arco de la red.
+// Las rutas se reparten en bloques entre los hilos del pool; cada bloque cuenta en sus propios
+// mapas (arco empaquetado en un long -> conteo, sin objetos por arco) y los mapas se suman al final.
+// Un arco cuenta una vez por secuencia, por orientación y por ruta aunque se repita en el recorrido.
+public class AgregadorCorredores {
+
+    // rutas por bloque: por debajo de esto no vale la pena partir
+    private static final int LINES_PER_TASK = 8;
+
+    public CargaCorredores aggregate(RedCompacta red) {
+        return aggregate(red, ForkJoinPool.commonPool());
+    }
+
+    public CargaCorredores aggregate(RedCompacta red, ForkJoinPool pool) {
+        MetricasProceso.Medicion corridors = MetricasProceso.get().startAcrossThreads(MetricasProceso.CORREDORES);
+        Conteo count = pool.invoke(new LineasTask(red, 0, red.getLineCount()));
+        corridors.stop(red.getPositionCount());
+        return new CargaCorredores(count.lines, count.lineOrientations, count.sequences);
+    }
+
+    // escribe un CSV con todos los arcos ordenados por (origen, destino) y su carga
+    public void writeCsv(RedCompacta red, CargaCorredores load, Path file) throws IOException {
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("FROM_STOPID,TO_STOPID,FROM_SHORTNAME,TO_SHORTNAME,LINES,LINE_ORIENTATIONS,SEQUENCES,WEIGHT").newLine();
+            for (long arc : load.getArcs()) {
+                Corredor c = load.getCorridor(arc);
+                int a = red.indexOfStop(c.getOrigenStopId());
+                int b = red.indexOfStop(c.getDestinoStopId());
+                out.write(c.getOrigenStopId()).write(',').write(c.getDestinoStopId()).write(',')
+                        .write(a >= 0 ? red.getStopShortName(a) : "").write(',')
+                        .write(b >= 0 ? red.getStopShortName(b) : "").write(',')
+                        .write(c.getLines()).write(',').write(c.getLineOrientations()).write(',')
+                        .write(c.getSequences()).write(',')
+                        .write(Math.round(load.getWeight(c.getOrigenStopId(), c.getDestinoStopId()) * 1000) / 1000.0)
+                        .newLine();
+            }
+        }
+    }
+
+    // cuenta las rutas [lo, hi) partiendo el rango en dos y sumando los mapas
+    private static final class LineasTask extends RecursiveTask<Conteo> {
+        private static final long serialVersionUID = 1L;
+
+        private final RedCompacta red;
+        private final int lo;
+        private final int hi;
+
+        LineasTask(RedCompacta red, int lo, int hi) {
+            this.red = red;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Conteo compute() {
+            if (hi - lo <= LINES_PER_TASK) {
+                return countLines();
+            }
+
+            int mid = (lo + hi) >>> 1;
+            LineasTask right = new LineasTask(red, mid, hi);
+            right.fork();
+            Conteo merged = new LineasTask(red, lo, mid).compute();
+            Conteo later = right.join();
+            merged.lines.addAll(later.lines);
+            merged.lineOrientations.addAll(later.lineOrientations);
+            merged.sequences.addAll(later.sequences);
+            return merged;
+        }
+
+        private Conteo countLines() {
+            int positions = red.getPositionCount() / Math.max(1, red.getLineCount()) * (hi - lo);
+            Conteo count = new Conteo(positions);
+            long[] lineArcs = new long[64];
+
+            for (int l = lo; l < hi; l++) {
+                int n = 0;
+                int orientationFirst = 0;
+                for (int s = red.getLineFirstSequence(l); s < red.getLineEndSequence(l); s++) {
+                    int start = red.getSequenceStart(s);
+                    int end = red.getSequenceEnd(s);
+                    if (lineArcs.length < n + (end - start)) {
+                        lineArcs = Arrays.copyOf(lineArcs, Math.max(lineArcs.length * 2, n + end - start));
+                    }
+
+                    // arcos de la secuencia sin repetir
+                    int first = n;
+                    for (int p = start; p < end - 1; p++) {
+                        int a = red.getPositionStopIndex(p);
+                        int b = red.getPositionStopIndex(p + 1);
+                        if (a < 0 || b < 0 || a == b) continue;
+                        lineArcs[n++] = Arco.pack(red.getStopId(a), red.getStopId(b));
+                    }
+                    n = first + unique(lineArcs, first, n);
+                    for (int i = first; i < n; i++) {
+                        count.sequences.add(lineArcs[i], 1);
+                    }
+
+                    // las secuencias vienen en orden de orientación: al terminar la última de una
+                    // orientación cuento sus arcos sin repetir entre variantes
+                    if (s + 1 == red.getLineEndSequence(l)
+                            || red.getSequenceOrientation(s + 1) != red.getSequenceOrientation(s)) {
+                        n = orientationFirst + unique(lineArcs, orientationFirst, n);
+                        for (int i = orientationFirst; i < n; i++) {
+                            count.lineOrientations.add(lineArcs[i], 1);
+                        }
+                        orientationFirst = n;
+                    }
+                }
+
+                // arcos de la ruta sin repetir entre sus secuencias
+                int distinct = unique(lineArcs, 0, n);
+                for (int i = 0; i < distinct; i++) {
+                    count.lines.add(lineArcs[i], 1);
+                }
+            }
+            return count;
+        }
+    }
+
+    // ordena values[from, to) y deja los distintos al principio; retorna cuántos son
+    private static int unique(long[] values, int from, int to) {
+        if (to - from < 2) return to - from;
+        Arrays.sort(values, from, to);
+        int m = from + 1;
+        for (int i = from + 1; i < to; i++) {
+            if (values[i] != values[m - 1]) values[m++] = values[i];
+        }
+        return m - from;
+    }
+
+    // conteos de un bloque de rutas
+    private static final class Conteo {
+        final MapaLargoEntero lines;
+        final MapaLargoEntero lineOrientations;
+        final MapaLargoEntero sequences;
+
+        Conteo(int expectedArcs) {
+            lines = new MapaLargoEntero(expectedArcs);
+            lineOrientations = new MapaLargoEntero(expectedArcs);
+            sequences = new MapaLargoEntero(expectedArcs);
+        }
+    }
+}
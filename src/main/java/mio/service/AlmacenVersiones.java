@@ -0,0 +1,129 @@
+package mio.service;
+
+import mio.model.ComponentesRed;
+import mio.model.DiferenciaRedes;
+import mio.model.RedCompacta;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Varias versiones del plan (PLANVERSIONID) cargadas en el mismo proceso. Cada red nueva comparte
+// con la versión cargada más cercana los arreglos, nombres y rutas que no cambiaron, así que tener
+// N versiones parecidas cuesta poco más que una. Las redes son inmutables, por eso compartir es seguro.
+// Toda versión que entra pasa por el análisis de conectividad (ver InstantaneaRed.checkConnectivity).
+public class AlmacenVersiones {
+
+    private static final Pattern LINE_STOPS_FILE = Pattern.compile("linestops-(\\d+)\\.csv");
+
+    private final InstantaneaRed snapshots;
+    private final ComparadorRedes comparator = new ComparadorRedes();
+    private final TreeMap<Integer, RedCompacta> versions = new TreeMap<>();
+    private final Map<Integer, ComponentesRed> connectivity = new HashMap<>();
+
+    public AlmacenVersiones() {
+        this(false);
+    }
+
+    // strictConnectivity: rechazar las versiones con paradas sumidero o fuente
+    public AlmacenVersiones(boolean strictConnectivity) {
+        this.snapshots = new InstantaneaRed(strictConnectivity);
+    }
+
+    // carga una versión desde sus CSV (o su instantánea) y la agrega al almacén
+    public RedCompacta load(Path linesCsvPath, Path stopsCsvPath, Path lineStopsCsvPath, Path snapshotDir)
+            throws IOException {
+        int planVersion = InstantaneaRed.planVersionOf(lineStopsCsvPath);
+        // la carga ya pasa la red por la compuerta de conectividad; guardo ese resultado
+        InstantaneaRed.Carga loaded = snapshots.load(linesCsvPath, stopsCsvPath, lineStopsCsvPath, snapshotDir);
+        return store(planVersion, loaded.getNetwork(), loaded.getConnectivity());
+    }
+
+    // carga todas las versiones que tengan sus tres archivos en la carpeta, en orden de versión
+    public List<Integer> loadDirectory(Path dataDir, Path snapshotDir) throws IOException {
+        List<Integer> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dataDir, "linestops-*.csv")) {
+            for (Path file : files) {
+                Matcher m = LINE_STOPS_FILE.matcher(file.getFileName().toString());
+                if (m.matches()) found.add(Integer.parseInt(m.group(1)));
+            }
+        }
+        found.sort(null);
+
+        List<Integer> loaded = new ArrayList<>();
+        for (int planVersion : found) {
+            Path lines = dataDir.resolve("lines-" + planVersion + ".csv");
+            Path stops = dataDir.resolve("stops-" + planVersion + ".csv");
+            if (Files.notExists(lines) || Files.notExists(stops)) {
+                System.err.println("Versión " + planVersion + " incompleta, se omite");
+                continue;
+            }
+            load(lines, stops, dataDir.resolve("linestops-" + planVersion + ".csv"), snapshotDir);
+            loaded.add(planVersion);
+        }
+        return loaded;
+    }
+
+    // agrega una red ya armada; retorna la red que queda guardada (la que comparte almacenamiento).
+    // Las redes que no vienen de load también pasan por la compuerta de conectividad
+    public RedCompacta add(int planVersion, RedCompacta network) throws IOException {
+        ComponentesRed components = snapshots.checkConnectivity(network, planVersion);
+        return store(planVersion, network, components);
+    }
+
+    private synchronized RedCompacta store(int planVersion, RedCompacta network, ComponentesRed components) {
+        RedCompacta closest = closestTo(planVersion);
+        RedCompacta stored = closest != null ? network.shareStorageWith(closest) : network;
+        versions.put(planVersion, stored);
+        connectivity.put(planVersion, components);
+        return stored;
+    }
+
+    public synchronized RedCompacta get(int planVersion) {
+        RedCompacta network = versions.get(planVersion);
+        if (network == null) {
+            throw new IllegalArgumentException("Versión del plan no cargada: " + planVersion);
+        }
+        return network;
+    }
+
+    // componentes, paradas aisladas, sumideros y fuentes de la versión, calculados al cargarla
+    public synchronized ComponentesRed getConnectivity(int planVersion) {
+        get(planVersion);
+        return connectivity.get(planVersion);
+    }
+
+    public synchronized boolean contains(int planVersion) {
+        return versions.containsKey(planVersion);
+    }
+
+    public synchronized List<Integer> getVersions() {
+        return new ArrayList<>(versions.keySet());
+    }
+
+    public synchronized RedCompacta remove(int planVersion) {
+        connectivity.remove(planVersion);
+        return versions.remove(planVersion);
+    }
+
+    public DiferenciaRedes diff(int fromVersion, int toVersion) {
+        return comparator.compare(fromVersion, get(fromVersion), toVersion, get(toVersion));
+    }
+
+    // versión cargada más cercana (la anterior en empate), sin contar la misma versión
+    private RedCompacta closestTo(int planVersion) {
+        Map.Entry<Integer, RedCompacta> lower = versions.lowerEntry(planVersion);
+        Map.Entry<Integer, RedCompacta> higher = versions.higherEntry(planVersion);
+        if (lower == null) return higher != null ? higher.getValue() : null;
+        if (higher == null) return lower.getValue();
+        return planVersion - lower.getKey() <= higher.getKey() - planVersion ? lower.getValue() : higher.getValue();
+    }
+}
@@ -0,0 +1,153 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.ComponentesRed;
+import mio.model.RedCompacta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Componentes fuertemente conexas del grafo fusionado de paradas (adyacencia CSR de la red) con
+// Tarjan iterativo: la pila de llamadas es un arreglo (parada + próximo arco), así que no hay límite
+// de profundidad. Todo es lineal en paradas + arcos y solo usa arreglos primitivos, así que se puede
+// correr en cada carga de una versión del plan (tarda unos milisegundos).
+public class AnalizadorComponentes {
+
+    public ComponentesRed analyze(RedCompacta red) {
+        MetricasProceso.Medicion connectivity = MetricasProceso.get().start(MetricasProceso.CONECTIVIDAD);
+        int n = red.getStopCount();
+
+        // paradas que aparecen en alguna secuencia y grados de entrada/salida
+        boolean[] used = new boolean[n];
+        for (int p = 0; p < red.getPositionCount(); p++) {
+            int stop = red.getPositionStopIndex(p);
+            if (stop >= 0) used[stop] = true;
+        }
+        int[] inDegree = new int[n];
+        for (int a = 0; a < red.getArcCount(); a++) {
+            inDegree[red.getArcTarget(a)]++;
+        }
+
+        int[] componentOf = new int[n];
+        Arrays.fill(componentOf, -1);
+        int[] sizes = tarjan(red, used, componentOf);
+
+        int nIsolated = 0;
+        int nSinks = 0;
+        int nSources = 0;
+        int[] isolated = new int[n];
+        int[] sinks = new int[n];
+        int[] sources = new int[n];
+        for (int i = 0; i < n; i++) {
+            int outDegree = red.getArcsEnd(i) - red.getArcsStart(i);
+            if (!used[i]) {
+                isolated[nIsolated++] = red.getStopId(i);
+            } else if (outDegree == 0 && inDegree[i] > 0) {
+                sinks[nSinks++] = red.getStopId(i);
+            } else if (inDegree[i] == 0 && outDegree > 0) {
+                sources[nSources++] = red.getStopId(i);
+            }
+        }
+
+        connectivity.stop(n);
+        return new ComponentesRed(componentOf, sizes,
+                Arrays.copyOf(isolated, nIsolated), Arrays.copyOf(sinks, nSinks), Arrays.copyOf(sources, nSources));
+    }
+
+    // escribe un CSV con una fila por parada, en orden de stopId; COMPONENT vacío si está aislada
+    public void writeCsv(RedCompacta red, ComponentesRed components, Path file) throws IOException {
+        int[] sinks = components.getSinkStops();
+        int[] sources = components.getSourceStops();
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("STOPID,SHORTNAME,COMPONENT,COMPONENT_SIZE,STATUS").newLine();
+            for (int i = 0; i < red.getStopCount(); i++) {
+                int stopId = red.getStopId(i);
+                int component = components.getComponent(i);
+                String status;
+                if (component < 0) status = "AISLADA";
+                else if (Arrays.binarySearch(sinks, stopId) >= 0) status = "SUMIDERO";
+                else if (Arrays.binarySearch(sources, stopId) >= 0) status = "FUENTE";
+                else if (component != components.getLargestComponent()) status = "FUERA_DE_LA_MAYOR";
+                else status = "";
+
+                out.write(stopId).write(',')
+                        .write(red.getStopShortName(i) != null ? red.getStopShortName(i) : "").write(',');
+                if (component >= 0) out.write(component).write(',').write(components.getComponentSize(component));
+                else out.write(',');
+                out.write(',').write(status).newLine();
+            }
+        }
+    }
+
+    // asigna componentOf a las paradas usadas y retorna el tamaño de cada componente
+    private static int[] tarjan(RedCompacta red, boolean[] used, int[] componentOf) {
+        int n = red.getStopCount();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int stackSize = 0;
+
+        // pila de llamadas: parada y el próximo arco por revisar
+        int[] callStop = new int[n];
+        int[] callArc = new int[n];
+
+        int[] sizes = new int[16];
+        int nComponents = 0;
+        int nextIndex = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (!used[root] || index[root] >= 0) continue;
+
+            int depth = 0;
+            callStop[0] = root;
+            callArc[0] = red.getArcsStart(root);
+            index[root] = low[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int v = callStop[depth];
+                if (callArc[depth] < red.getArcsEnd(v)) {
+                    int w = red.getArcTarget(callArc[depth]++);
+                    if (index[w] < 0) {
+                        // "llamada" a w
+                        index[w] = low[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        depth++;
+                        callStop[depth] = w;
+                        callArc[depth] = red.getArcsStart(w);
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // terminé con v: si es raíz de una componente la saco de la pila
+                if (low[v] == index[v]) {
+                    if (nComponents == sizes.length) sizes = Arrays.copyOf(sizes, nComponents * 2);
+                    int size = 0;
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        componentOf[w] = nComponents;
+                        size++;
+                    } while (w != v);
+                    sizes[nComponents++] = size;
+                }
+
+                // "retorno" al padre
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStop[depth];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return Arrays.copyOf(sizes, nComponents);
+    }
+}
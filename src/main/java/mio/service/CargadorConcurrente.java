@@ -0,0 +1,92 @@
+package mio.service;
+
+import mio.model.AlmacenParadas;
+import mio.model.DatosCargados;
+import mio.model.ParadaRuta;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Carga rutas, paradas y relaciones ruta-parada al mismo tiempo (los tres archivos son independientes)
+public class CargadorConcurrente {
+
+    private final CargadorRutas routeLoader = new CargadorRutas();
+    private final CargadorParadas stopLoader = new CargadorParadas();
+    private final CargadorParadasRutas lineStopLoader = new CargadorParadasRutas();
+    private final ConstructorRedCompacta networkBuilder = new ConstructorRedCompacta();
+
+    // Carga los tres archivos en paralelo y arma la red cuando los tres terminan.
+    // Si falla alguno espera a los demás y lanza una sola excepción con un error por archivo.
+    public DatosCargados loadAll(Path linesCsvPath, Path stopsCsvPath, Path lineStopsCsvPath) throws IOException {
+        // un hilo por archivo: la carga es sobre todo espera de E/S. Los hilos terminan antes que la
+        // fase de carga; la fábrica de MetricasProceso deja anotado lo que asignaron
+        ExecutorService executor = Executors.newFixedThreadPool(3,
+                MetricasProceso.get().threadFactory("carga-csv"));
+
+        try {
+            CompletableFuture<Map<Integer, Ruta>> routes =
+                    CompletableFuture.supplyAsync(() -> load(() -> routeLoader.loadRoutes(linesCsvPath)), executor);
+            CompletableFuture<AlmacenParadas> stops =
+                    CompletableFuture.supplyAsync(() -> load(() -> stopLoader.loadStopStore(stopsCsvPath)), executor);
+            CompletableFuture<Map<Integer, Map<Integer, List<ParadaRuta>>>> lineStops =
+                    CompletableFuture.supplyAsync(
+                            () -> load(() -> lineStopLoader.loadLineStopsParallel(lineStopsCsvPath)), executor);
+
+            // espero los tres aunque alguno falle, para reportar todos los errores juntos
+            List<String> errors = new ArrayList<>();
+            List<Throwable> causes = new ArrayList<>();
+            collectFailure(routes, linesCsvPath, errors, causes);
+            collectFailure(stops, stopsCsvPath, errors, causes);
+            collectFailure(lineStops, lineStopsCsvPath, errors, causes);
+
+            if (!errors.isEmpty()) {
+                IOException e = new IOException(String.join("; ", errors));
+                causes.forEach(e::addSuppressed);
+                throw e;
+            }
+
+            RedCompacta network = networkBuilder.build(routes.join(), stops.join(), lineStops.join());
+            return new DatosCargados(routes.join(), stops.join(), lineStops.join(), network);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void collectFailure(CompletableFuture<?> future, Path path, List<String> errors, List<Throwable> causes) {
+        try {
+            future.get();
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            errors.add(path.getFileName() + ": " + cause);
+            causes.add(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.add(path.getFileName() + ": carga interrumpida");
+            causes.add(e);
+        }
+    }
+
+    private static <T> T load(Carga<T> carga) {
+        try {
+            return carga.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // carga de un archivo que puede lanzar IOException
+    private interface Carga<T> {
+        T load() throws IOException;
+    }
+}
@@ -1,55 +1,116 @@
 package mio.service;
 
+import mio.model.AlmacenParadas;
 import mio.model.Parada;
-import mio.Util.UtilidadesCsv;
+import mio.Util.LectorCsv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 // Carga paradas desde archivo CSV
 public class CargadorParadas {
 
+    // mapa stopId -> Parada (una vista por parada sobre el almacén)
     public Map<Integer, Parada> loadStops(Path path) throws IOException {
-        Map<Integer, Parada> stopsById = new HashMap<>();
+        return loadStopStore(path).toMap();
+    }
 
-        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            String line;
-            boolean first = true;
+    // Carga las paradas directo a arreglos paralelos, sin crear un objeto Parada por fila.
+    // Si un stopId se repite queda la última fila, como al guardarlas en un mapa.
+    public AlmacenParadas loadStopStore(Path path) throws IOException {
+        int capacity = 1024;
+        int[] ids = new int[capacity];
+        double[] lats = new double[capacity];
+        double[] lons = new double[capacity];
+        int[] shortCodes = new int[capacity];
+        int[] longCodes = new int[capacity];
+        AlmacenParadas.Diccionario names = new AlmacenParadas.Diccionario(capacity);
+        int n = 0;
 
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
+        EventoCargaCsv event = new EventoCargaCsv();
+        event.begin();
+        MetricasProceso.Medicion parse = MetricasProceso.get().start(MetricasProceso.PARSEO);
+        LectorCsv csv = LectorCsv.open(path);
+        boolean first = true;
+        int rows = 0;
+        int rejected = 0;
 
-                if (first) {
-                    first = false;
-                    if (line.toUpperCase().contains("STOPID")) {
-                        continue;
-                    }
+        while (csv.nextRow()) {
+            if (first) {
+                first = false;
+                if (csv.rowContainsIgnoreCase("STOPID")) {
+                    continue;
                 }
+            }
 
-                String[] parts = UtilidadesCsv.splitCsvLine(line);
-                if (parts.length < 8) continue;
+            rows++;
+            if (csv.getFieldCount() < 8) {
+                rejected++;
+                continue;
+            }
 
-                try {
-                    int stopId = Integer.parseInt(parts[0].trim());
-                    String shortName = parts[2].trim();
-                    String longName = parts[3].trim();
-                    double lon = Double.parseDouble(parts[6].trim());
-                    double lat = Double.parseDouble(parts[7].trim());
+            try {
+                // primero los números: si la fila es inválida no creo los Strings
+                int stopId = csv.getInt(0);
+                double lon = csv.getDouble(6);
+                double lat = csv.getDouble(7);
 
-                    Parada stop = new Parada(stopId, shortName, longName, lat, lon);
-                    stopsById.put(stopId, stop);
-                } catch (NumberFormatException e) {
+                if (n == capacity) {
+                    capacity *= 2;
+                    ids = Arrays.copyOf(ids, capacity);
+                    lats = Arrays.copyOf(lats, capacity);
+                    lons = Arrays.copyOf(lons, capacity);
+                    shortCodes = Arrays.copyOf(shortCodes, capacity);
+                    longCodes = Arrays.copyOf(longCodes, capacity);
                 }
+                ids[n] = stopId;
+                lats[n] = lat;
+                lons[n] = lon;
+                shortCodes[n] = names.code(csv.getString(2));
+                longCodes[n] = names.code(csv.getString(3));
+                n++;
+            } catch (NumberFormatException e) {
+                rejected++;
             }
         }
 
-        return stopsById;
+        AlmacenParadas store = sortById(n, ids, lats, lons, shortCodes, longCodes, names.toArray());
+        parse.stop(rows);
+        event.finish(path, csv.getByteCount(), rows, rejected);
+        return store;
     }
-}
 
+    // ordena las filas por stopId (el archivo casi siempre viene ordenado) y deja la última de cada id
+    private static AlmacenParadas sortById(int n, int[] ids, double[] lats, double[] lons,
+                                           int[] shortCodes, int[] longCodes, String[] names) {
+        // clave = stopId en los 32 bits altos y número de fila en los bajos: el orden es estable
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (i + 1 < n && (int) (keys[i + 1] >> 32) == (int) (keys[i] >> 32)) continue;
+            keys[m++] = keys[i];
+        }
+
+        int[] sortedIds = new int[m];
+        double[] sortedLats = new double[m];
+        double[] sortedLons = new double[m];
+        int[] sortedShort = new int[m];
+        int[] sortedLong = new int[m];
+        for (int k = 0; k < m; k++) {
+            int row = (int) keys[k];
+            sortedIds[k] = ids[row];
+            sortedLats[k] = lats[row];
+            sortedLons[k] = lons[row];
+            sortedShort[k] = shortCodes[row];
+            sortedLong[k] = longCodes[row];
+        }
+        return new AlmacenParadas(sortedIds, sortedLats, sortedLons, sortedShort, sortedLong, names);
+    }
+}
@@ -1,61 +1,252 @@
 package mio.service;
 
 import mio.model.ParadaRuta;
-import mio.Util.UtilidadesCsv;
+import mio.Util.LectorCsv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 // Carga relaciones ruta-parada desde archivo CSV
 public class CargadorParadasRutas {
 
+    // tamaño mínimo de un bloque en la carga paralela (archivos pequeños se leen en un solo bloque)
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // tamaño máximo de un bloque: cada bloque se mapea por separado y el lector lo copia a un arreglo
+    private static final long MAX_CHUNK_BYTES = 1L << 26;
+
     // Retorna: Map<lineId, Map<orientation, List<ParadaRuta>>>
     public Map<Integer, Map<Integer, List<ParadaRuta>>> loadLineStops(Path path) throws IOException {
-        Map<Integer, Map<Integer, List<ParadaRuta>>> grouped = new HashMap<>();
+        EventoCargaCsv event = new EventoCargaCsv();
+        event.begin();
+        MetricasProceso.Medicion parse = MetricasProceso.get().start(MetricasProceso.PARSEO);
+        List<ParadaRuta> rows = new ArrayList<>();
+        ConteoFilas count = new ConteoFilas();
+        LectorCsv csv = LectorCsv.open(path);
+        parse.stop(parseRows(csv, true, rows, count));
+        Map<Integer, Map<Integer, List<ParadaRuta>>> grouped = group(rows);
+        event.finish(path, csv.getByteCount(), count.rows, count.rejected);
+        return grouped;
+    }
+
+    // Igual que loadLineStops, pero mapea el archivo en memoria, lo parte en bloques por líneas
+    // y procesa los bloques en paralelo en el pool común de fork/join
+    public Map<Integer, Map<Integer, List<ParadaRuta>>> loadLineStopsParallel(Path path) throws IOException {
+        return loadLineStopsParallel(path, ForkJoinPool.commonPool());
+    }
+
+    // Supone que ningún campo entre comillas tiene saltos de línea (los bloques se cortan en '\n')
+    public Map<Integer, Map<Integer, List<ParadaRuta>>> loadLineStopsParallel(Path path, ForkJoinPool pool)
+            throws IOException {
 
-        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            String line;
-            boolean first = true;
+        EventoCargaCsv event = new EventoCargaCsv();
+        event.begin();
+        ConteoFilas count = new ConteoFilas();
+        Map<Integer, Map<Integer, List<ParadaRuta>>> grouped;
+        long bytes;
 
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = channel.size();
+            long[] bounds = splitOnLines(channel, pool.getParallelism());
 
-                // Omite encabezado
-                if (first) {
-                    first = false;
-                    if (line.toUpperCase().contains("LINESTOP")) {
-                        continue;
-                    }
+            try {
+                grouped = pool.invoke(new ChunkTask(channel, bounds, 0, bounds.length - 1, count));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        event.finish(path, bytes, count.rows, count.rejected);
+        return grouped;
+    }
+
+    // lee filas del lector y las agrega a parsed en el orden del archivo;
+    // retorna cuántas filas de datos leyó (y las suma, con las descartadas, a count)
+    private int parseRows(LectorCsv csv, boolean checkHeader, List<ParadaRuta> parsed, ConteoFilas count) {
+        boolean first = checkHeader;
+        int rows = 0;
+        int rejected = 0;
+
+        while (csv.nextRow()) {
+            // Omite encabezado
+            if (first) {
+                first = false;
+                if (csv.rowContainsIgnoreCase("LINESTOP")) {
+                    continue;
                 }
+            }
 
-                String[] parts = UtilidadesCsv.splitCsvLine(line);
-                if (parts.length < 5) continue;
+            rows++;
+            if (csv.getFieldCount() < 5) {
+                rejected++;
+                continue;
+            }
 
-                try {
-                    int sequence = Integer.parseInt(parts[1].trim());
-                    int orientation = Integer.parseInt(parts[2].trim());
-                    int lineId = Integer.parseInt(parts[3].trim());
-                    int stopId = Integer.parseInt(parts[4].trim());
+            try {
+                int sequence = csv.getInt(1);
+                int orientation = csv.getInt(2);
+                int lineId = csv.getInt(3);
+                int stopId = csv.getInt(4);
+                // LINEVARIANT: cada variante es un recorrido distinto con su propia numeración;
+                // sin la columna o con el campo vacío es la variante 0
+                int variant = csv.getInt(6, 0);
 
-                    ParadaRuta ls = new ParadaRuta(lineId, stopId, sequence, orientation);
+                parsed.add(new ParadaRuta(lineId, stopId, sequence, orientation, variant));
 
-                    // Agrupa por ruta y orientación
-                    grouped
-                        .computeIfAbsent(lineId, k -> new HashMap<>())
-                        .computeIfAbsent(orientation, k -> new ArrayList<>())
-                        .add(ls);
+            } catch (NumberFormatException e) {
+                rejected++;
+            }
+        }
+        count.add(rows, rejected);
+        return rows;
+    }
 
-                } catch (NumberFormatException e) {
+    // agrupa por ruta y orientación, en el orden de las filas (las variantes se separan al armar la
+    // red compacta); es la fase de agrupación en la carga secuencial y en cada bloque de la paralela
+    private static Map<Integer, Map<Integer, List<ParadaRuta>>> group(List<ParadaRuta> rows) {
+        MetricasProceso.Medicion group = MetricasProceso.get().start(MetricasProceso.AGRUPACION);
+        Map<Integer, Map<Integer, List<ParadaRuta>>> grouped = new HashMap<>();
+        for (ParadaRuta ls : rows) {
+            grouped
+                .computeIfAbsent(ls.getLineId(), k -> new HashMap<>())
+                .computeIfAbsent(ls.getOrientation(), k -> new ArrayList<>())
+                .add(ls);
+        }
+        group.stop(rows.size());
+        return grouped;
+    }
+
+    // calcula los límites de los bloques: cada uno (menos el primero) empieza justo después de un '\n'
+    private long[] splitOnLines(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        long chunks = Math.max(1, Math.min(size / MIN_CHUNK_BYTES, parallelism * 4L));
+        chunks = Math.max(chunks, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        long nominal = size / chunks;
+
+        long[] bounds = new long[(int) chunks + 1];
+        int n = 1;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+
+        for (int i = 1; i < chunks; i++) {
+            long from = Math.max(i * nominal, bounds[n - 1]);
+            long cut = nextLineStart(channel, from, size, probe);
+            if (cut > bounds[n - 1] && cut < size) {
+                bounds[n++] = cut;
+            }
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    // primera posición >= from que empieza una línea
+    private long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long p = from - 1;
+        while (p < size) {
+            probe.clear();
+            int read = channel.read(probe, p);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return p + i + 1;
                 }
             }
+            p += read;
         }
+        return size;
+    }
 
-        return grouped;
+    // procesa los bloques [lo, hi) partiendo el rango en dos y juntando los resultados en orden
+    private class ChunkTask extends RecursiveTask<Map<Integer, Map<Integer, List<ParadaRuta>>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+        private final ConteoFilas count;
+
+        ChunkTask(FileChannel channel, long[] bounds, int lo, int hi, ConteoFilas count) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+            this.count = count;
+        }
+
+        @Override
+        protected Map<Integer, Map<Integer, List<ParadaRuta>>> compute() {
+            if (hi - lo == 1) {
+                return parseChunk();
+            }
+
+            int mid = (lo + hi) >>> 1;
+            ChunkTask left = new ChunkTask(channel, bounds, lo, mid, count);
+            ChunkTask right = new ChunkTask(channel, bounds, mid, hi, count);
+            right.fork();
+            Map<Integer, Map<Integer, List<ParadaRuta>>> merged = left.compute();
+            Map<Integer, Map<Integer, List<ParadaRuta>>> later = right.join();
+            MetricasProceso.Medicion group = MetricasProceso.get().start(MetricasProceso.AGRUPACION);
+            group.stop(mergeInto(merged, later));
+            return merged;
+        }
+
+        private Map<Integer, Map<Integer, List<ParadaRuta>>> parseChunk() {
+            long start = bounds[lo];
+            long length = bounds[hi] - start;
+            if (length == 0) return new HashMap<>();
+
+            List<ParadaRuta> rows = new ArrayList<>();
+            try {
+                MetricasProceso.Medicion parse = MetricasProceso.get().start(MetricasProceso.PARSEO);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                // solo el primer bloque puede tener el encabezado
+                parse.stop(parseRows(new LectorCsv(chunk), lo == 0, rows, count));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return group(rows);
+        }
+    }
+
+    // filas leídas y descartadas de un archivo, sumando los bloques
+    private static final class ConteoFilas {
+        int rows;
+        int rejected;
+
+        synchronized void add(int rowCount, int rejectedCount) {
+            rows += rowCount;
+            rejected += rejectedCount;
+        }
     }
-}
 
+    // agrega los grupos de un bloque posterior al final de los del bloque anterior;
+    // retorna cuántas relaciones ruta-parada se movieron
+    private static int mergeInto(Map<Integer, Map<Integer, List<ParadaRuta>>> target,
+                                  Map<Integer, Map<Integer, List<ParadaRuta>>> later) {
+        int moved = 0;
+        for (var entry : later.entrySet()) {
+            Map<Integer, List<ParadaRuta>> byOrientation = target.get(entry.getKey());
+            if (byOrientation == null) {
+                target.put(entry.getKey(), entry.getValue());
+                for (List<ParadaRuta> seq : entry.getValue().values()) moved += seq.size();
+                continue;
+            }
+            for (var orientEntry : entry.getValue().entrySet()) {
+                moved += orientEntry.getValue().size();
+                List<ParadaRuta> seq = byOrientation.get(orientEntry.getKey());
+                if (seq == null) {
+                    byOrientation.put(orientEntry.getKey(), orientEntry.getValue());
+                } else {
+                    seq.addAll(orientEntry.getValue());
+                }
+            }
+        }
+        return moved;
+    }
+}
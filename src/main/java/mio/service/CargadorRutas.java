@@ -1,12 +1,9 @@
 package mio.service;
 
 import mio.model.Ruta;
-import mio.Util.UtilidadesCsv;
+import mio.Util.LectorCsv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,37 +14,42 @@ public class CargadorRutas {
     public Map<Integer, Ruta> loadRoutes(Path path) throws IOException {
         Map<Integer, Ruta> routesById = new HashMap<>();
 
-        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            String line;
-            boolean first = true;
-
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                if (first) {
-                    first = false;
-                    if (line.toUpperCase().contains("LINEID")) {
-                        continue;
-                    }
+        EventoCargaCsv event = new EventoCargaCsv();
+        event.begin();
+        MetricasProceso.Medicion parse = MetricasProceso.get().start(MetricasProceso.PARSEO);
+        LectorCsv csv = LectorCsv.open(path);
+        boolean first = true;
+        int rows = 0;
+        int rejected = 0;
+
+        while (csv.nextRow()) {
+            if (first) {
+                first = false;
+                if (csv.rowContainsIgnoreCase("LINEID")) {
+                    continue;
                 }
+            }
 
-                String[] parts = UtilidadesCsv.splitCsvLine(line);
-                if (parts.length < 4) continue;
+            rows++;
+            if (csv.getFieldCount() < 4) {
+                rejected++;
+                continue;
+            }
 
-                try {
-                    int lineId = Integer.parseInt(parts[0].trim());
-                    String shortName = parts[2].trim();
-                    String description = parts[3].trim();
+            try {
+                int lineId = csv.getInt(0);
+                String shortName = csv.getString(2);
+                String description = csv.getString(3);
 
-                    Ruta route = new Ruta(lineId, shortName, description);
-                    routesById.put(lineId, route);
-                } catch (NumberFormatException e) {
-                }
+                Ruta route = new Ruta(lineId, shortName, description);
+                routesById.put(lineId, route);
+            } catch (NumberFormatException e) {
+                rejected++;
             }
         }
 
+        parse.stop(rows);
+        event.finish(path, csv.getByteCount(), rows, rejected);
         return routesById;
     }
 }
-
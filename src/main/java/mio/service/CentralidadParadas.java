@@ -0,0 +1,215 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.CentralidadRed;
+import mio.model.RedCompacta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Betweenness (Brandes) y closeness de las paradas sobre el grafo dirigido fusionado (la adyacencia
+// CSR de la red compacta, los mismos arcos que lista ConstructorGrafo), sin pesos: un camino mínimo
+// es el de menos arcos. Cada fuente es un BFS más la acumulación de dependencias hacia atrás, O(V·E)
+// en total. Las fuentes se reparten en bloques con fork/join; cada bloque usa sus propios arreglos
+// de trabajo, reutilizados entre fuentes (el ciclo interno no asigna memoria), y suma en su propio
+// arreglo de betweenness, que se junta con los demás al terminar.
+public class CentralidadParadas {
+
+    // fuentes por bloque: al menos esto, y no más de unos 8 bloques por hilo (cada bloque tiene
+    // arreglos del tamaño de la red)
+    private static final int MIN_SOURCES_PER_TASK = 32;
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final RedCompacta red;
+
+    public CentralidadParadas(RedCompacta red) {
+        this.red = red;
+    }
+
+    // exacta: todas las paradas como fuente
+    public CentralidadRed compute() {
+        return compute(ForkJoinPool.commonPool());
+    }
+
+    public CentralidadRed compute(ForkJoinPool pool) {
+        int n = red.getStopCount();
+        int[] sources = new int[n];
+        for (int i = 0; i < n; i++) {
+            sources[i] = i;
+        }
+        return run(sources, false, pool);
+    }
+
+    // aproximada: 'samples' fuentes al azar (siempre las mismas para la misma semilla) y la
+    // betweenness escalada por n / samples; si samples >= n es la exacta
+    public CentralidadRed computeSampled(int samples, long seed) {
+        return computeSampled(samples, seed, ForkJoinPool.commonPool());
+    }
+
+    public CentralidadRed computeSampled(int samples, long seed, ForkJoinPool pool) {
+        int n = red.getStopCount();
+        if (samples >= n) return compute(pool);
+        if (samples <= 0) throw new IllegalArgumentException("Cantidad de fuentes inválida: " + samples);
+
+        // Fisher-Yates parcial: las primeras 'samples' posiciones quedan al azar sin repetir
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < samples; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = all[i];
+            all[i] = all[j];
+            all[j] = t;
+        }
+        int[] sources = Arrays.copyOf(all, samples);
+        return run(sources, true, pool);
+    }
+
+    private CentralidadRed run(int[] sources, boolean sampled, ForkJoinPool pool) {
+        int n = red.getStopCount();
+        MetricasProceso.Medicion centrality = MetricasProceso.get().startAcrossThreads(MetricasProceso.CENTRALIDAD);
+        double[] closeness = new double[n];
+        Arrays.fill(closeness, -1);
+        int perTask = Math.max(MIN_SOURCES_PER_TASK,
+                sources.length / (pool.getParallelism() * TASKS_PER_THREAD) + 1);
+        double[] betweenness = pool.invoke(new FuentesTask(sources, 0, sources.length, perTask, closeness));
+        centrality.stop(sources.length);
+
+        if (sampled) {
+            double scale = (double) n / sources.length;
+            for (int i = 0; i < n; i++) {
+                betweenness[i] *= scale;
+            }
+        }
+        return new CentralidadRed(betweenness, closeness, sources.length, sampled);
+    }
+
+    // escribe un CSV con una fila por parada, en orden de stopId
+    public void writeCsv(CentralidadRed centrality, Path file) throws IOException {
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("STOPID,SHORTNAME,BETWEENNESS,BETWEENNESS_NORM,CLOSENESS").newLine();
+            for (int i = 0; i < centrality.getStopCount(); i++) {
+                out.write(red.getStopId(i)).write(',')
+                        .write(red.getStopShortName(i) != null ? red.getStopShortName(i) : "").write(',')
+                        .write(Math.round(centrality.getBetweenness(i) * 1000) / 1000.0).write(',')
+                        .write(centrality.getNormalizedBetweenness(i)).write(',');
+                if (centrality.getCloseness(i) >= 0) out.write(centrality.getCloseness(i));
+                out.newLine();
+            }
+        }
+    }
+
+    // procesa las fuentes [lo, hi) partiendo el rango en dos y sumando las betweenness
+    private final class FuentesTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] sources;
+        private final int lo;
+        private final int hi;
+        private final int perTask;
+        private final double[] closeness; // cada fuente escribe solo su casilla
+
+        FuentesTask(int[] sources, int lo, int hi, int perTask, double[] closeness) {
+            this.sources = sources;
+            this.lo = lo;
+            this.hi = hi;
+            this.perTask = perTask;
+            this.closeness = closeness;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (hi - lo <= perTask) {
+                Brandes brandes = new Brandes(red.getStopCount());
+                for (int k = lo; k < hi; k++) {
+                    closeness[sources[k]] = brandes.accumulate(sources[k]);
+                }
+                return brandes.betweenness;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            FuentesTask right = new FuentesTask(sources, mid, hi, perTask, closeness);
+            right.fork();
+            double[] merged = new FuentesTask(sources, lo, mid, perTask, closeness).compute();
+            double[] later = right.join();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += later[i];
+            }
+            return merged;
+        }
+    }
+
+    // arreglos de trabajo de un bloque; se reutilizan entre fuentes
+    private final class Brandes {
+        final double[] betweenness;
+        private final int[] dist;     // -1 = no alcanzada
+        private final double[] sigma; // cantidad de caminos mínimos desde la fuente
+        private final double[] delta; // dependencia de la fuente en cada parada
+        private final int[] order;    // paradas en orden de BFS (también es la cola)
+
+        Brandes(int n) {
+            betweenness = new double[n];
+            dist = new int[n];
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[n];
+            Arrays.fill(dist, -1);
+        }
+
+        // suma a betweenness las dependencias de la fuente s y retorna su closeness
+        double accumulate(int s) {
+            dist[s] = 0;
+            sigma[s] = 1;
+            order[0] = s;
+            int head = 0;
+            int tail = 1;
+            long sumDist = 0;
+
+            while (head < tail) {
+                int v = order[head++];
+                int dv = dist[v];
+                sumDist += dv;
+                for (int e = red.getArcsStart(v); e < red.getArcsEnd(v); e++) {
+                    int w = red.getArcTarget(e);
+                    if (dist[w] < 0) {
+                        dist[w] = dv + 1;
+                        order[tail++] = w;
+                    }
+                    if (dist[w] == dv + 1) sigma[w] += sigma[v];
+                }
+            }
+
+            // hacia atrás: delta[v] = suma sobre los sucesores w en un camino mínimo de sigma[v] / sigma[w] * (1 + delta[w])
+            for (int k = tail - 1; k > 0; k--) {
+                int v = order[k];
+                double dv = 0;
+                for (int e = red.getArcsStart(v); e < red.getArcsEnd(v); e++) {
+                    int w = red.getArcTarget(e);
+                    if (dist[w] == dist[v] + 1) dv += sigma[v] / sigma[w] * (1 + delta[w]);
+                }
+                delta[v] = dv;
+                betweenness[v] += dv;
+            }
+
+            // Wasserman-Faust: (alcanzadas / (n - 1)) * (alcanzadas / suma de distancias)
+            int n = dist.length;
+            int reached = tail - 1;
+            double closeness = sumDist > 0 && n > 1 ? ((double) reached / (n - 1)) * ((double) reached / sumDist) : 0;
+
+            // dejo los arreglos listos para la siguiente fuente (solo las paradas alcanzadas)
+            for (int k = 0; k < tail; k++) {
+                int v = order[k];
+                dist[v] = -1;
+                sigma[v] = 0;
+                delta[v] = 0;
+            }
+            return closeness;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package mio.service;
+
+import mio.Util.UtilidadesGeo;
+import mio.model.Arco;
+import mio.model.DiferenciaRedes;
+import mio.model.RedCompacta;
+
+import java.util.Arrays;
+
+// Compara dos versiones de la red sin reconstruir grafos: paradas, rutas y arcos ya están ordenados
+// por id en la red compacta, así que cada comparación es un recorrido en paralelo de dos listas
+// ordenadas. Lo que las dos versiones comparten (ver RedCompacta.shareStorageWith) se salta sin
+// recorrerlo: las coordenadas si las paradas son las mismas, los arcos si la red es la misma y las
+// paradas de cada ruta cuyo arreglo de stopId es el mismo.
+public class ComparadorRedes {
+
+    // una parada cuenta como movida si sus coordenadas cambian más que esto
+    public static final double DEFAULT_MOVE_METERS = 1.0;
+
+    private final double moveMeters;
+
+    public ComparadorRedes() {
+        this(DEFAULT_MOVE_METERS);
+    }
+
+    public ComparadorRedes(double moveMeters) {
+        this.moveMeters = moveMeters;
+    }
+
+    public DiferenciaRedes compare(int fromVersion, RedCompacta from, int toVersion, RedCompacta to) {
+        int[][] stops = compareStops(from, to);
+        int[][] lines = compareLines(from, to);
+        long[][] arcs = from == to ? new long[][] { new long[0], new long[0] } : compareArcs(from, to);
+
+        return new DiferenciaRedes(fromVersion, toVersion,
+                arcs[0], arcs[1],
+                stops[0], stops[1], stops[2], movedMeters(from, to, stops[2]),
+                lines[0], lines[1], lines[2]);
+    }
+
+    // {agregadas, quitadas, movidas}
+    private int[][] compareStops(RedCompacta from, RedCompacta to) {
+        IdsBuffer added = new IdsBuffer();
+        IdsBuffer removed = new IdsBuffer();
+        IdsBuffer moved = new IdsBuffer();
+        boolean sameCoordinates = from.sharesStopsWith(to);
+
+        int i = 0;
+        int j = 0;
+        int n = from.getStopCount();
+        int m = to.getStopCount();
+        while (i < n || j < m) {
+            int a = i < n ? from.getStopId(i) : Integer.MAX_VALUE;
+            int b = j < m ? to.getStopId(j) : Integer.MAX_VALUE;
+            if (i < n && (j >= m || a < b)) {
+                removed.add(a);
+                i++;
+            } else if (j < m && (i >= n || b < a)) {
+                added.add(b);
+                j++;
+            } else {
+                if (!sameCoordinates && distance(from, i, to, j) > moveMeters) moved.add(a);
+                i++;
+                j++;
+            }
+        }
+        return new int[][] { added.toArray(), removed.toArray(), moved.toArray() };
+    }
+
+    private static double[] movedMeters(RedCompacta from, RedCompacta to, int[] movedStops) {
+        double[] meters = new double[movedStops.length];
+        for (int k = 0; k < movedStops.length; k++) {
+            meters[k] = distance(from, from.indexOfStop(movedStops[k]), to, to.indexOfStop(movedStops[k]));
+        }
+        return meters;
+    }
+
+    private static double distance(RedCompacta from, int i, RedCompacta to, int j) {
+        return UtilidadesGeo.haversineMeters(from.getLat(i), from.getLon(i), to.getLat(j), to.getLon(j));
+    }
+
+    // {agregadas, quitadas, cambiadas}, sobre las rutas que tienen secuencias
+    private int[][] compareLines(RedCompacta from, RedCompacta to) {
+        IdsBuffer added = new IdsBuffer();
+        IdsBuffer removed = new IdsBuffer();
+        IdsBuffer changed = new IdsBuffer();
+
+        int i = 0;
+        int j = 0;
+        int n = from.getLineCount();
+        int m = to.getLineCount();
+        while (i < n || j < m) {
+            int a = i < n ? from.getLineId(i) : Integer.MAX_VALUE;
+            int b = j < m ? to.getLineId(j) : Integer.MAX_VALUE;
+            if (i < n && (j >= m || a < b)) {
+                removed.add(a);
+                i++;
+            } else if (j < m && (i >= n || b < a)) {
+                added.add(b);
+                j++;
+            } else {
+                if (!sameSequences(from, i, to, j)) changed.add(a);
+                i++;
+                j++;
+            }
+        }
+        return new int[][] { added.toArray(), removed.toArray(), changed.toArray() };
+    }
+
+    // misma cantidad de secuencias, con la misma orientación, variante y paradas en el mismo orden
+    private static boolean sameSequences(RedCompacta from, int lineFrom, RedCompacta to, int lineTo) {
+        int sFirst = from.getLineFirstSequence(lineFrom);
+        int tFirst = to.getLineFirstSequence(lineTo);
+        int sEnd = from.getLineEndSequence(lineFrom);
+        if (sEnd - sFirst != to.getLineEndSequence(lineTo) - tFirst) return false;
+
+        // primero lo que es por secuencia (pocos datos); con eso igual, las posiciones de la ruta
+        // se corresponden una a una
+        for (int s = sFirst, t = tFirst; s < sEnd; s++, t++) {
+            if (from.getSequenceOrientation(s) != to.getSequenceOrientation(t)
+                    || from.getSequenceVariant(s) != to.getSequenceVariant(t)
+                    || from.getSequenceEnd(s) - from.getSequenceStart(s)
+                            != to.getSequenceEnd(t) - to.getSequenceStart(t)) {
+                return false;
+            }
+        }
+
+        // ruta sin cambios compartida entre las versiones: no hace falta recorrer sus paradas
+        if (from.sharesLineStopsWith(lineFrom, to, lineTo)) return true;
+
+        int p = from.getSequenceStart(sFirst);
+        int q = to.getSequenceStart(tFirst);
+        int pEnd = from.getSequenceStart(sEnd);
+        for (; p < pEnd; p++, q++) {
+            if (from.getPositionStopId(p) != to.getPositionStopId(q)) return false;
+        }
+        return true;
+    }
+
+    // {agregados, quitados}: la adyacencia CSR ya está ordenada por (origen, destino) y los índices
+    // densos siguen el orden de stopId, así que los arcos salen ordenados sin ordenar nada
+    private static long[][] compareArcs(RedCompacta from, RedCompacta to) {
+        LongsBuffer added = new LongsBuffer();
+        LongsBuffer removed = new LongsBuffer();
+
+        int i = 0;
+        int j = 0;
+        int n = from.getArcCount();
+        int m = to.getArcCount();
+        int fromStop = 0;
+        int toStop = 0;
+        while (i < n || j < m) {
+            long a = Long.MAX_VALUE;
+            if (i < n) {
+                while (from.getArcsEnd(fromStop) <= i) fromStop++;
+                a = Arco.pack(from.getStopId(fromStop), from.getStopId(from.getArcTarget(i)));
+            }
+            long b = Long.MAX_VALUE;
+            if (j < m) {
+                while (to.getArcsEnd(toStop) <= j) toStop++;
+                b = Arco.pack(to.getStopId(toStop), to.getStopId(to.getArcTarget(j)));
+            }
+
+            if (i < n && (j >= m || a < b)) {
+                removed.add(a);
+                i++;
+            } else if (j < m && (i >= n || b < a)) {
+                added.add(b);
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return new long[][] { added.toArray(), removed.toArray() };
+    }
+
+    private static final class IdsBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class LongsBuffer {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
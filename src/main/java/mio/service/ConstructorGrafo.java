@@ -1,11 +1,13 @@
 package mio.service;
 
-import mio.model.Arco;
 import mio.model.ParadaRuta;
+import mio.model.RedCompacta;
 import mio.model.Ruta;
 import mio.model.Parada;
 
-import java.util.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 // Construye grafos a partir de rutas y paradas
 public class ConstructorGrafo {
@@ -15,107 +17,110 @@ public class ConstructorGrafo {
             Map<Integer, Ruta> routesById,
             Map<Integer, Parada> stopsById,
             Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation
-    ) {
-        // agarro todas las rutas y las ordeno
-        List<Integer> lineIds = new ArrayList<>(lineStopsByRouteAndOrientation.keySet());
-        Collections.sort(lineIds);
+    ) throws IOException {
+        buildAndPrintGraphs(new ConstructorRedCompacta().build(routesById, stopsById, lineStopsByRouteAndOrientation));
+    }
+
+    // Construye y muestra grafos de todas las rutas a partir de la red compacta
+    public void buildAndPrintGraphs(RedCompacta red) throws IOException {
+        try (SumideroReporteTexto console = SumideroReporteTexto.console()) {
+            exportArcs(red, console);
+        }
+    }
 
+    // Recorre la red una vez y le pasa cada ruta, secuencia y arco a todos los sumideros
+    // (consola, CSV, JSONL, GraphML...). No los cierra: eso le toca a quien los creó.
+    public void exportArcs(RedCompacta red, SumideroArcos... sinks) throws IOException {
+        MetricasProceso.Medicion arcs = MetricasProceso.get().start(MetricasProceso.ARCOS);
         int totalArcos = 0;
         int totalRutas = 0;
 
-        // imprimo el título
-        System.out.println("=================================================================");
-        System.out.println("GRAFOS DE RUTAS DEL SITM-MIO - LISTA DE ARCOS POR RUTA");
-        System.out.println("=================================================================");
-        System.out.println();
-
-        // voy ruta por ruta
-        for (int lineId : lineIds) {
-            Ruta route = routesById.get(lineId);
-            // las paradas vienen agrupadas por orientación (ida o regreso)
-            Map<Integer, List<ParadaRuta>> byOrientation = lineStopsByRouteAndOrientation.get(lineId);
-
-            // veo qué orientaciones tiene esta ruta (0=ida, 1=regreso)
-            List<Integer> orientations = new ArrayList<>(byOrientation.keySet());
-            Collections.sort(orientations);
-
-            String routeName = (route != null ? route.getShortName() : ("LINEID " + lineId));
-            String routeDesc = (route != null ? route.getDescription() : "");
-
-            // muestro info de la ruta
-            System.out.println("=================================================================");
-            System.out.println("RUTA: " + routeName + " (ID: " + lineId + ")");
-            if (!routeDesc.isEmpty()) {
-                System.out.println("Descripcion: " + routeDesc);
-            }
-            System.out.println("=================================================================");
-
-            // ahora proceso ida y regreso por separado
-            for (int orientation : orientations) {
-                // ordeno las paradas por secuencia (1, 2, 3...)
-                List<ParadaRuta> stopsSeq = new ArrayList<>(byOrientation.get(orientation));
-                stopsSeq.sort(Comparator.comparingInt(ParadaRuta::getSequence));
-
-                String orientationLabel = orientationLabel(orientation);
-                
-                // creo los arcos conectando parada 1->2, 2->3, etc
-                List<Arco> arcos = buildArcos(stopsSeq);
-                totalArcos += arcos.size();
-
-                // muestro info de esta orientación
-                System.out.println();
-                System.out.println("--- " + orientationLabel + " ---");
-                System.out.println("Paradas: " + stopsSeq.size() + " | Arcos: " + arcos.size());
-                System.out.println("Secuencia de arcos:");
-
-                // imprimo cada arco con sus paradas
-                for (int i = 0; i < arcos.size(); i++) {
-                    Arco arco = arcos.get(i);
-                    Parada stopFrom = stopsById.get(arco.getOrigenStopId());
-                    Parada stopTo = stopsById.get(arco.getDestinoStopId());
-
-                    String fromName = (stopFrom != null ? stopFrom.getShortName() : "N/A");
-                    String toName = (stopTo != null ? stopTo.getShortName() : "N/A");
-
-                    // formato: número, IDs, nombres
-                    System.out.printf("  %3d. [%d -> %d] %s -> %s%n",
-                            i + 1,
-                            arco.getOrigenStopId(),
-                            arco.getDestinoStopId(),
-                            fromName,
-                            toName);
-                }
-            }
+        for (SumideroArcos sink : sinks) {
+            sink.begin(red);
+        }
 
+        // voy ruta por ruta (la red ya las tiene ordenadas por id)
+        for (int l = 0; l < red.getLineCount(); l++) {
+            totalArcos += exportLine(red, l, sinks);
             totalRutas++;
-            System.out.println();
         }
 
-        System.out.println("╔═════════════════════════════════╗");
-        System.out.println("║            RESUMEN              ║");
-        System.out.println("╚═════════════════════════════════╝");
-        System.out.println("- Total de rutas procesadas: " + totalRutas);
-        System.out.println("- Total de arcos generados: " + totalArcos);
+        for (SumideroArcos sink : sinks) {
+            sink.end(totalRutas, totalArcos);
+        }
+        arcs.stop(totalArcos);
     }
 
-    // creo los arcos: parada 1->2, 2->3, 3->4, etc
-    private List<Arco> buildArcos(List<ParadaRuta> stopsSeq) {
-        List<Arco> arcos = new ArrayList<>();
-        
-        // voy hasta size-1 porque la última no tiene siguiente
-        for (int i = 0; i < stopsSeq.size() - 1; i++) {
-            ParadaRuta from = stopsSeq.get(i);
-            ParadaRuta to = stopsSeq.get(i + 1);
-            // creo el arco de esta parada a la siguiente
-            Arco arco = new Arco(from.getStopId(), to.getStopId());
-            arcos.add(arco);
+    // Igual que exportArcs pero solo con una ruta; retorna false si la ruta no tiene secuencias
+    public boolean exportRouteArcs(RedCompacta red, int lineId, SumideroArcos... sinks) throws IOException {
+        int l = indexOfLine(red, lineId);
+        if (l < 0) return false;
+
+        for (SumideroArcos sink : sinks) {
+            sink.begin(red);
+        }
+        int totalArcos = exportLine(red, l, sinks);
+        for (SumideroArcos sink : sinks) {
+            sink.end(1, totalArcos);
+        }
+        return true;
+    }
+
+    // índice de la ruta entre las que tienen secuencias (están ordenadas por lineId), o -1
+    static int indexOfLine(RedCompacta red, int lineId) {
+        int lo = 0;
+        int hi = red.getLineCount() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = red.getLineId(mid);
+            if (id < lineId) lo = mid + 1;
+            else if (id > lineId) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // pasa la ruta l (sus secuencias y arcos) a los sumideros; retorna cuántos arcos tiene
+    private int exportLine(RedCompacta red, int l, SumideroArcos[] sinks) throws IOException {
+        int lineId = red.getLineId(l);
+        Ruta route = red.getRoute(lineId);
+        for (SumideroArcos sink : sinks) {
+            sink.beginRoute(lineId, route);
+        }
+
+        // ahora proceso ida y regreso (y cada variante) por separado; cada secuencia ya viene ordenada
+        int totalArcos = 0;
+        for (int s = red.getLineFirstSequence(l); s < red.getLineEndSequence(l); s++) {
+            int start = red.getSequenceStart(s);
+            int orientation = red.getSequenceOrientation(s);
+            int variant = red.getSequenceVariant(s);
+
+            // los arcos son parada 1->2, 2->3, etc: uno menos que las paradas
+            int nStops = red.getSequenceEnd(s) - start;
+            int nArcos = Math.max(0, nStops - 1);
+            totalArcos += nArcos;
+
+            EventoArcosRuta event = new EventoArcosRuta();
+            event.begin();
+            for (SumideroArcos sink : sinks) {
+                sink.beginSequence(lineId, orientation, variant, nStops, nArcos);
+            }
+            for (int i = 0; i < nArcos; i++) {
+                for (SumideroArcos sink : sinks) {
+                    sink.arc(lineId, orientation, i + 1, start + i, start + i + 1);
+                }
+            }
+            event.finish(lineId, orientation, variant, nStops, nArcos);
+        }
+
+        for (SumideroArcos sink : sinks) {
+            sink.endRoute(lineId);
         }
-        
-        return arcos;
+        return totalArcos;
     }
 
     // convierto 0 a "IDA" y 1 a "REGRESO"
-    private String orientationLabel(int orientation) {
+    static String orientationLabel(int orientation) {
         if (orientation == 0) {
             return "IDA";
         } else if (orientation == 1) {
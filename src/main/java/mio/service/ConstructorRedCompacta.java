@@ -0,0 +1,163 @@
+package mio.service;
+
+import mio.model.AlmacenParadas;
+import mio.model.Parada;
+import mio.model.ParadaRuta;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.util.*;
+
+// Convierte los mapas de los cargadores en una RedCompacta (arreglos primitivos).
+// Cada lista ruta/orientación se ordena una sola vez por (variante, STOPSEQUENCE) y se parte en
+// una secuencia por variante: las variantes repiten números de secuencia, así que mezclarlas
+// crearía arcos entre paradas de recorridos distintos.
+public class ConstructorRedCompacta {
+
+    public RedCompacta build(
+            Map<Integer, Ruta> routesById,
+            Map<Integer, Parada> stopsById,
+            Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation
+    ) {
+        return build(routesById, AlmacenParadas.of(stopsById), lineStopsByRouteAndOrientation);
+    }
+
+    public RedCompacta build(
+            Map<Integer, Ruta> routesById,
+            AlmacenParadas stops,
+            Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation
+    ) {
+        // las paradas ya vienen ordenadas por id: la posición es el índice denso
+        int nStops = stops.size();
+        int k;
+
+        // rutas ordenadas por id
+        int nRoutes = routesById.size();
+        int[] routeLineIds = new int[nRoutes];
+        k = 0;
+        for (int lineId : routesById.keySet()) {
+            routeLineIds[k++] = lineId;
+        }
+        Arrays.sort(routeLineIds);
+        Ruta[] routes = new Ruta[nRoutes];
+        for (int i = 0; i < nRoutes; i++) {
+            routes[i] = routesById.get(routeLineIds[i]);
+        }
+
+        // ordeno cada ruta/orientación y cuento secuencias (variantes) y posiciones
+        MetricasProceso.Medicion sort = MetricasProceso.get().start(MetricasProceso.ORDENAMIENTO);
+        List<Integer> lineIdList = new ArrayList<>(lineStopsByRouteAndOrientation.keySet());
+        Collections.sort(lineIdList);
+
+        // listas ruta/orientación ya ordenadas, en orden de ruta y orientación
+        List<ParadaRuta[]> sortedLists = new ArrayList<>();
+        List<Integer> listLineIds = new ArrayList<>();
+        int nSeq = 0;
+        int nPos = 0;
+        for (int lineId : lineIdList) {
+            Map<Integer, List<ParadaRuta>> byOrientation = lineStopsByRouteAndOrientation.get(lineId);
+            List<Integer> orientations = new ArrayList<>(byOrientation.keySet());
+            Collections.sort(orientations);
+
+            for (int orientation : orientations) {
+                ParadaRuta[] sorted = byOrientation.get(orientation).toArray(new ParadaRuta[0]);
+                Arrays.sort(sorted, BY_VARIANT_AND_SEQUENCE);
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i == 0 || sorted[i].getVariant() != sorted[i - 1].getVariant()) nSeq++;
+                }
+                nPos += sorted.length;
+                sortedLists.add(sorted);
+                listLineIds.add(lineId);
+            }
+        }
+
+        int nLines = lineIdList.size();
+        int[] lineIds = new int[nLines];
+        int[] lineSeqOffsets = new int[nLines + 1];
+        int[] seqLineIds = new int[nSeq];
+        int[] seqOrientations = new int[nSeq];
+        int[] seqVariants = new int[nSeq];
+        int[] seqOffsets = new int[nSeq + 1];
+        int[] seqStopIds = new int[nPos];
+        int[] seqStopIndices = new int[nPos];
+
+        // lleno las secuencias en orden de ruta, orientación y variante (ya vienen ordenadas)
+        int s = 0;
+        int pos = 0;
+        int next = 0; // siguiente lista ordenada
+        for (int l = 0; l < nLines; l++) {
+            int lineId = lineIdList.get(l);
+            lineIds[l] = lineId;
+            lineSeqOffsets[l] = s;
+
+            for (; next < sortedLists.size() && listLineIds.get(next) == lineId; next++) {
+                ParadaRuta[] sorted = sortedLists.get(next);
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i == 0 || sorted[i].getVariant() != sorted[i - 1].getVariant()) {
+                        seqLineIds[s] = lineId;
+                        seqOrientations[s] = sorted[i].getOrientation();
+                        seqVariants[s] = sorted[i].getVariant();
+                        seqOffsets[s] = pos;
+                        s++;
+                    }
+                    seqStopIds[pos] = sorted[i].getStopId();
+                    seqStopIndices[pos] = stops.indexOf(sorted[i].getStopId());
+                    pos++;
+                }
+            }
+        }
+        lineSeqOffsets[nLines] = s;
+        seqOffsets[nSeq] = pos;
+        sort.stop(pos);
+
+        MetricasProceso.Medicion adjacency = MetricasProceso.get().start(MetricasProceso.ADYACENCIA);
+        int[][] csr = buildAdjacency(nStops, seqOffsets, seqStopIndices);
+        adjacency.stop(csr[1].length);
+
+        return new RedCompacta(
+                stops,
+                routeLineIds, routes,
+                lineIds, lineSeqOffsets,
+                seqLineIds, seqOrientations, seqVariants, seqOffsets,
+                seqStopIds, seqStopIndices,
+                csr[0], csr[1]
+        );
+    }
+
+    private static final Comparator<ParadaRuta> BY_VARIANT_AND_SEQUENCE =
+            Comparator.comparingInt(ParadaRuta::getVariant).thenComparingInt(ParadaRuta::getSequence);
+
+    // fusiono los arcos de todas las secuencias en una adyacencia CSR sin repetidos
+    // (se omiten arcos hacia paradas desconocidas y arcos de una parada a sí misma)
+    static int[][] buildAdjacency(int nStops, int[] seqOffsets, int[] seqStopIndices) {
+        int nSeq = seqOffsets.length - 1;
+
+        // cada arco se empaqueta en un long (origen en los 32 bits altos) para ordenarlo sin objetos
+        long[] keys = new long[Math.max(0, seqStopIndices.length - nSeq)];
+        int n = 0;
+        for (int s = 0; s < nSeq; s++) {
+            for (int p = seqOffsets[s]; p < seqOffsets[s + 1] - 1; p++) {
+                int from = seqStopIndices[p];
+                int to = seqStopIndices[p + 1];
+                if (from < 0 || to < 0 || from == to) continue;
+                keys[n++] = ((long) from << 32) | to;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+
+        int[] offsets = new int[nStops + 1];
+        int[] targets = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) continue;
+            int from = (int) (keys[i] >>> 32);
+            offsets[from + 1]++;
+            targets[m++] = (int) keys[i];
+        }
+        for (int i = 0; i < nStops; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        return new int[][] { offsets, Arrays.copyOf(targets, m) };
+    }
+}
@@ -0,0 +1,128 @@
+package mio.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Etapa que codifica y guarda imágenes en hilos aparte, conectada al dibujo por una cola acotada:
+// mientras una imagen se comprime, el hilo de dibujo ya puede estar haciendo la siguiente.
+class EtapaCodificacion implements AutoCloseable {
+
+    // trabajo pendiente: imagen, archivo destino, ruta, orientación y variante (para el evento JFR)
+    // y qué hacer cuando termine (p. ej. devolver el lienzo)
+    private static class Trabajo {
+        final BufferedImage image;
+        final Path file;
+        final int lineId;
+        final int orientation;
+        final int variant;
+        final Runnable onDone;
+
+        Trabajo(BufferedImage image, Path file, int lineId, int orientation, int variant, Runnable onDone) {
+            this.image = image;
+            this.file = file;
+            this.lineId = lineId;
+            this.orientation = orientation;
+            this.variant = variant;
+            this.onDone = onDone;
+        }
+    }
+
+    private static final Trabajo FIN = new Trabajo(null, null, -1, -1, -1, null);
+
+    private final FormatoImagen format;
+    private final BlockingQueue<Trabajo> queue;
+    private final Thread[] encoders;
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private volatile IOException failure;
+    private boolean closed;
+
+    EtapaCodificacion(FormatoImagen format, int encoderThreads, int queueCapacity) {
+        this.format = format;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.encoders = new Thread[Math.max(1, encoderThreads)];
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i] = new Thread(this::runEncoder, "codificador-" + i);
+            encoders[i].setDaemon(true);
+            encoders[i].start();
+        }
+    }
+
+    // encola una imagen; se bloquea si la cola está llena. lineId, orientation y variant son -1 si la
+    // imagen no es de una sola secuencia
+    void submit(BufferedImage image, Path file, int lineId, int orientation, int variant, Runnable onDone)
+            throws IOException {
+        IOException f = failure;
+        if (f != null) throw f;
+
+        try {
+            queue.put(new Trabajo(image, file, lineId, orientation, variant, onDone));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Codificación interrumpida", e);
+        }
+    }
+
+    // tiempo total codificando, sumando todos los hilos
+    long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    // espera a que se guarde todo lo encolado; lanza el primer error de codificación si hubo
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            for (int i = 0; i < encoders.length; i++) {
+                queue.put(FIN);
+            }
+            for (Thread t : encoders) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Codificación interrumpida", e);
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    private void runEncoder() {
+        while (true) {
+            Trabajo job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == FIN) return;
+
+            try {
+                // si ya falló una imagen, solo vacío la cola
+                if (failure == null) {
+                    EventoCodificacionImagen event = new EventoCodificacionImagen();
+                    event.begin();
+                    MetricasProceso.Medicion encode = MetricasProceso.get().start(MetricasProceso.CODIFICACION);
+                    long bytes = format.write(job.image, job.file);
+                    encodeNanos.addAndGet(encode.stop(1));
+                    event.finish(job.lineId, job.orientation, job.variant, job.file, format, bytes);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (failure == null) failure = e;
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null) failure = new IOException("Error guardando " + job.file, e);
+                }
+            } finally {
+                if (job.onDone != null) job.onDone.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package mio.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Evento JFR por cada secuencia (ruta + orientación + variante) al generar su lista de arcos
+@Name("mio.ArcosRuta")
+@Label("Arcos de ruta")
+@Category({"MIO", "Grafo"})
+class EventoArcosRuta extends Event {
+
+    @Label("LINEID")
+    int lineId;
+
+    @Label("Orientación")
+    int orientation;
+
+    @Label("Variante")
+    int variant;
+
+    @Label("Paradas")
+    int stops;
+
+    @Label("Arcos")
+    int arcs;
+
+    // termina el evento y lo guarda si la grabación lo pide
+    void finish(int line, int orient, int lineVariant, int stopCount, int arcCount) {
+        end();
+        if (shouldCommit()) {
+            lineId = line;
+            orientation = orient;
+            variant = lineVariant;
+            stops = stopCount;
+            arcs = arcCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package mio.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.nio.file.Path;
+
+// Evento JFR por cada archivo CSV cargado (en la carga paralela, uno por archivo, no por bloque)
+@Name("mio.CargaCsv")
+@Label("Carga de CSV")
+@Category({"MIO", "Carga"})
+@Description("Lectura de un archivo CSV del MIO con las filas leídas y descartadas")
+class EventoCargaCsv extends Event {
+
+    @Label("Archivo")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Filas")
+    int rows;
+
+    @Label("Filas descartadas")
+    @Description("Filas con menos columnas de las esperadas o con números inválidos")
+    int rejectedRows;
+
+    // termina el evento y lo guarda solo si la grabación lo pide; byteCount es lo que leyó el cargador
+    // (el evento no vuelve a tocar el archivo, así que no puede hacer fallar la carga)
+    void finish(Path path, long byteCount, int rowCount, int rejectedCount) {
+        end();
+        if (shouldCommit()) {
+            file = path.toString();
+            bytes = byteCount;
+            rows = rowCount;
+            rejectedRows = rejectedCount;
+            commit();
+        }
+    }
+}
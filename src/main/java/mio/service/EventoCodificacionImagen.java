@@ -0,0 +1,50 @@
+package mio.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.nio.file.Path;
+
+// Evento JFR por cada imagen codificada y guardada; el grafo completo va con lineId -1
+@Name("mio.CodificacionImagen")
+@Label("Codificación de imagen")
+@Category({"MIO", "Imágenes"})
+class EventoCodificacionImagen extends Event {
+
+    @Label("LINEID")
+    int lineId;
+
+    @Label("Orientación")
+    int orientation;
+
+    @Label("Variante")
+    int variant;
+
+    @Label("Archivo")
+    String file;
+
+    @Label("Formato")
+    String format;
+
+    @Label("Bytes escritos")
+    @DataAmount
+    long bytes;
+
+    // termina el evento y lo guarda si la grabación lo pide; bytesWritten lo cuenta FormatoImagen.write
+    // (el evento no consulta el archivo, así que no puede hacer fallar una imagen ya guardada)
+    void finish(int line, int orient, int lineVariant, Path path, FormatoImagen imageFormat, long bytesWritten) {
+        end();
+        if (shouldCommit()) {
+            lineId = line;
+            orientation = orient;
+            variant = lineVariant;
+            file = path.toString();
+            format = imageFormat.describe();
+            bytes = bytesWritten;
+            commit();
+        }
+    }
+}
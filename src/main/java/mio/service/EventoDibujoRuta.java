@@ -0,0 +1,37 @@
+package mio.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Evento JFR por cada imagen de ruta dibujada (sin contar la codificación)
+@Name("mio.DibujoRuta")
+@Label("Dibujo de ruta")
+@Category({"MIO", "Imágenes"})
+class EventoDibujoRuta extends Event {
+
+    @Label("LINEID")
+    int lineId;
+
+    @Label("Orientación")
+    int orientation;
+
+    @Label("Variante")
+    int variant;
+
+    @Label("Paradas")
+    int stops;
+
+    // termina el evento y lo guarda si la grabación lo pide
+    void finish(int line, int orient, int lineVariant, int stopCount) {
+        end();
+        if (shouldCommit()) {
+            lineId = line;
+            orientation = orient;
+            variant = lineVariant;
+            stops = stopCount;
+            commit();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package mio.service;
 
+import mio.model.Arco;
+import mio.model.CargaCorredores;
+import mio.model.CentralidadRed;
 import mio.model.ParadaRuta;
+import mio.model.RedCompacta;
 import mio.model.Ruta;
 import mio.model.Parada;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
@@ -13,6 +16,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 // Genera imágenes visuales de los grafos de rutas
 public class ExportadorImagenGrafo {
@@ -36,45 +47,228 @@ public class ExportadorImagenGrafo {
     private static final float ROUTE_STROKE_WIDTH = 4.0f;
     private static final float ARROW_SIZE = 12.0f;
 
-    // genera una imagen JPG por cada ruta y orientación (ida/regreso)
+    // grosor de los arcos del grafo completo, del menos al más cargado
+    private static final float FULL_STROKE_MIN = 1.0f;
+    private static final float FULL_STROKE_MAX = 7.0f;
+    private static final int FULL_STROKE_LEVELS = 12;
+
+    // radio de las paradas del grafo completo, de la menos a la más central
+    private static final double FULL_NODE_MIN = 3.0;
+    private static final double FULL_NODE_MAX = 12.0;
+
+    // versión del dibujo de rutas individuales: si cambia, el manifiesto obliga a regenerar todo
+    private static final int RENDER_VERSION = 2;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final FormatoImagen format;
+    private final int encoderThreads;
+
+    // JPG con los parámetros por defecto y un hilo codificador
+    public ExportadorImagenGrafo() {
+        this(FormatoImagen.defaultJpeg(), 1);
+    }
+
+    public ExportadorImagenGrafo(FormatoImagen format, int encoderThreads) {
+        this.format = format;
+        this.encoderThreads = Math.max(1, encoderThreads);
+    }
+
+    // genera una imagen JPG por cada ruta, orientación (ida/regreso) y variante
     public void exportRouteGraphs(
             Map<Integer, Ruta> routesById,
             Map<Integer, Parada> stopsById,
             Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation,
             Path outputDir
     ) throws IOException {
+        exportRouteGraphs(new ConstructorRedCompacta().build(routesById, stopsById, lineStopsByRouteAndOrientation), outputDir);
+    }
+
+    // genera una imagen JPG por cada secuencia (ruta + orientación + variante) de la red compacta
+    public void exportRouteGraphs(RedCompacta red, Path outputDir) throws IOException {
+        exportRouteGraphs(red, outputDir, 1);
+    }
+
+    // igual que exportRouteGraphs, repartiendo el dibujo de las secuencias entre varios hilos.
+    // La codificación va en otra etapa (cola acotada + hilos codificadores), así que mientras
+    // una imagen se comprime ya se dibuja la siguiente. Los lienzos se reciclan cuando la imagen
+    // ya se guardó; los archivos salen iguales que en secuencial.
+    // Solo se redibujan las rutas cuyo hash cambió respecto al manifiesto de la carpeta, y se
+    // borran las imágenes de rutas que ya no existen.
+    public void exportRouteGraphs(RedCompacta red, Path outputDir, int workers) throws IOException {
 
         // creo la carpeta si no existe
         if (Files.notExists(outputDir)) {
             Files.createDirectories(outputDir);
         }
 
-        // agarro todas las rutas y las ordeno
-        List<Integer> lineIds = new ArrayList<>(lineStopsByRouteAndOrientation.keySet());
-        Collections.sort(lineIds);
+        // comparo el hash de cada ruta con el de la ejecución anterior
+        ManifiestoImagenes previous = ManifiestoImagenes.load(outputDir);
+        ManifiestoImagenes current = new ManifiestoImagenes();
+        int nSeq = red.getSequenceCount();
+        String[] fileNames = new String[nSeq];
+        int[] pending = new int[nSeq];
+        int nPending = 0;
+        int unchanged = 0;
+
+        for (int s = 0; s < nSeq; s++) {
+            if (!hasImage(red, s)) continue;
+
+            int lineId = red.getSequenceLineId(s);
+            String fileName = routeFileName(red.getRoute(lineId), lineId,
+                    red.getSequenceOrientation(s), red.getSequenceVariant(s));
+            long hash = routeHash(red, s);
+            fileNames[s] = fileName;
+            current.put(fileName, hash);
+
+            if (previous.matches(fileName, hash) && Files.exists(outputDir.resolve(fileName))) {
+                unchanged++;
+            } else {
+                pending[nPending++] = s;
+            }
+        }
+
+        int nWorkers = Math.max(1, Math.min(workers, nPending));
+        int queueCapacity = 2 * encoderThreads;
+        // alcanza un lienzo por hilo de dibujo, por imagen en cola y por imagen que se está codificando
+        PoolLienzos canvases = new PoolLienzos(WIDTH, HEIGHT, nWorkers + queueCapacity + encoderThreads);
+        AtomicLong renderNanos = new AtomicLong();
+        long t0 = System.nanoTime();
+
+        // al cerrarse la etapa espera a que se guarden todas las imágenes encoladas
+        EtapaCodificacion encoder = new EtapaCodificacion(format, encoderThreads, queueCapacity);
+        try (encoder) {
+            ExportacionRutas job = new ExportacionRutas(red, outputDir, fileNames,
+                    Arrays.copyOf(pending, nPending), canvases, encoder, renderNanos);
+            if (nWorkers == 1) {
+                job.run();
+            } else {
+                runParallel(job, nWorkers);
+            }
+        } finally {
+            canvases.dispose();
+        }
+        long encodeNanos = encoder.getEncodeNanos();
+
+        // borro las imágenes de rutas que ya no están y guardo el manifiesto nuevo
+        int removed = 0;
+        for (String fileName : previous.files()) {
+            if (!current.contains(fileName) && Files.deleteIfExists(outputDir.resolve(fileName))) {
+                removed++;
+            }
+        }
+        current.save(outputDir);
 
-        // voy ruta por ruta
-        for (int lineId : lineIds) {
-            Ruta route = routesById.get(lineId);
-            // las paradas vienen agrupadas por orientación
-            Map<Integer, List<ParadaRuta>> byOrientation = lineStopsByRouteAndOrientation.get(lineId);
+        System.out.println("Grafos individuales generados");
+        System.out.println("Imágenes nuevas o cambiadas: " + nPending
+                + " | Sin cambios: " + unchanged + " | Eliminadas: " + removed);
+        printTimes(renderNanos.get(), encodeNanos, System.nanoTime() - t0);
+    }
 
-            // veo qué orientaciones tiene (ida/regreso)
-            List<Integer> orientations = new ArrayList<>(byOrientation.keySet());
-            Collections.sort(orientations);
+    // una secuencia tiene imagen si tiene al menos 2 paradas y alguna con coordenadas
+    private boolean hasImage(RedCompacta red, int s) {
+        int start = red.getSequenceStart(s);
+        int end = red.getSequenceEnd(s);
+        return end - start >= 2 && calculateBoundingBox(red, start, end) != null;
+    }
 
-            // genero una imagen por cada orientación
-            for (int orientation : orientations) {
-                // ordeno las paradas por secuencia
-                List<ParadaRuta> seq = new ArrayList<>(byOrientation.get(orientation));
-                seq.sort(Comparator.comparingInt(ParadaRuta::getSequence));
+    private String routeFileName(Ruta route, int lineId, int orientation, int variant) {
+        String name = route != null ? route.getShortName() : ("LINE_" + lineId);
+        name = name.replaceAll("[^a-zA-Z0-9_-]", "_"); // quito caracteres raros
 
-                // genero la imagen
-                exportSingleGraph(route, lineId, orientation, seq, stopsById, outputDir);
+        return String.format("%s_%s_%d_v%d.%s",
+                name,
+                getOrientationLabel(orientation).toLowerCase(),
+                lineId,
+                variant,
+                format.getExtension()
+        );
+    }
+
+    // hash de todo lo que se dibuja para una secuencia: paradas en orden (id, coordenadas, nombre),
+    // datos de la ruta y formato de salida. Si cambia el dibujo hay que subir RENDER_VERSION.
+    private long routeHash(RedCompacta red, int s) {
+        int lineId = red.getSequenceLineId(s);
+        Ruta route = red.getRoute(lineId);
+
+        long h = FNV_OFFSET;
+        h = mix(h, RENDER_VERSION);
+        h = mix(h, format.describe());
+        h = mix(h, lineId);
+        h = mix(h, red.getSequenceOrientation(s));
+        h = mix(h, red.getSequenceVariant(s));
+        h = mix(h, route != null ? route.getShortName() : null);
+        h = mix(h, route != null ? route.getDescription() : null);
+
+        for (int i = red.getSequenceStart(s); i < red.getSequenceEnd(s); i++) {
+            h = mix(h, red.getPositionStopId(i));
+            int idx = red.getPositionStopIndex(i);
+            if (idx < 0) {
+                h = mix(h, -1L);
+                continue;
             }
+            h = mix(h, Double.doubleToLongBits(red.getLat(idx)));
+            h = mix(h, Double.doubleToLongBits(red.getLon(idx)));
+            h = mix(h, red.getStopShortName(idx));
         }
+        return h;
+    }
 
-        System.out.println("Grafos individuales generados");
+    // FNV-1a de 64 bits sobre los 8 bytes del valor
+    private static long mix(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (8 * i)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long h, String text) {
+        if (text == null) return mix(h, Long.MIN_VALUE);
+        h = mix(h, text.length());
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    // cada hilo toma la siguiente secuencia pendiente hasta que no quede ninguna
+    private void runParallel(ExportacionRutas job, int nWorkers) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers, r -> {
+            Thread t = new Thread(r, "render-rutas");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int w = 0; w < nWorkers; w++) {
+                results.add(executor.submit(() -> {
+                    job.run();
+                    return null;
+                }));
+            }
+
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException("Error generando imágenes", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generación de imágenes interrumpida", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void printTimes(long renderNanos, long encodeNanos, long wallNanos) {
+        System.out.println("Tiempo de dibujo: " + renderNanos / 1_000_000 + " ms"
+                + " | Tiempo de codificación: " + encodeNanos / 1_000_000 + " ms"
+                + " (suma de hilos) | Tiempo total: " + wallNanos / 1_000_000 + " ms");
     }
 
     // genera una sola imagen con todas las rutas juntas
@@ -84,6 +278,22 @@ public class ExportadorImagenGrafo {
             Map<Integer, Map<Integer, List<ParadaRuta>>> lineStopsByRouteAndOrientation,
             Path outputDir
     ) throws IOException {
+        exportFullGraph(new ConstructorRedCompacta().build(routesById, stopsById, lineStopsByRouteAndOrientation), outputDir);
+    }
+
+    // genera una sola imagen con todas las rutas juntas a partir de la red compacta
+    public void exportFullGraph(RedCompacta red, Path outputDir) throws IOException {
+        exportFullGraph(red, new AgregadorCorredores().aggregate(red), outputDir);
+    }
+
+    // igual que exportFullGraph, con la carga por arco ya calculada (define el grosor de cada arco)
+    public void exportFullGraph(RedCompacta red, CargaCorredores load, Path outputDir) throws IOException {
+        exportFullGraph(red, load, null, outputDir);
+    }
+
+    // igual que exportFullGraph; si hay centralidad, el tamaño de cada parada sale de su betweenness
+    public void exportFullGraph(RedCompacta red, CargaCorredores load, CentralidadRed centrality, Path outputDir)
+            throws IOException {
 
         if (Files.notExists(outputDir)) {
             Files.createDirectories(outputDir);
@@ -93,23 +303,77 @@ public class ExportadorImagenGrafo {
         System.out.println("║ Generando imágen del grafo de las rutas completas... ║");
         System.out.println("╚══════════════════════════════════════════════════════╝");
 
-        // junto todas las paradas de todas las rutas
-        List<ParadaRuta> allStopsGlobal = new ArrayList<>();
+        long t0 = System.nanoTime();
+        MetricasProceso.Medicion render = MetricasProceso.get().start(MetricasProceso.DIBUJO_COMPLETO);
+        GrafoCompleto full = drawFullGraph(red, load, centrality);
+        if (full == null) {
+            System.out.println("  ⚠ No se pudo calcular el bounding box. Abortando.");
+            return;
+        }
+        long renderNanos = render.stop(1);
 
-        for (var entry : lineStopsByRouteAndOrientation.entrySet()) {
-            for (var orientEntry : entry.getValue().entrySet()) {
-                List<ParadaRuta> seq = new ArrayList<>(orientEntry.getValue());
-                seq.sort(Comparator.comparingInt(ParadaRuta::getSequence));
-                allStopsGlobal.addAll(seq);
-            }
+        // guardo la imagen en la etapa de codificación (aquí solo hay una, así que espero a que termine)
+        Path file = outputDir.resolve("Grafo_Completo_MIO." + format.getExtension());
+        EtapaCodificacion encoder = new EtapaCodificacion(format, 1, 1);
+        try (encoder) {
+            encoder.submit(full.image, file, -1, -1, -1, null);
         }
+        long encodeNanos = encoder.getEncodeNanos();
 
-        // calculo el área que contiene todas las paradas (para saber qué mostrar)
-        BoundingBox bbox = calculateBoundingBox(allStopsGlobal, stopsById);
-        if (bbox == null) {
-            System.out.println("  ⚠ No se pudo calcular el bounding box. Abortando.");
-            return;
+        System.out.println("Grafo completo generado");
+        printTimes(renderNanos, encodeNanos, System.nanoTime() - t0);
+        System.out.println("\nUbicación: " + file.toAbsolutePath());
+        System.out.println("\n    - Rutas: " + full.totalRoutes);
+        System.out.println("    - Paradas únicas: " + full.uniqueStops);
+        System.out.println("    - Arcos totales: " + full.totalArcs);
+    }
+
+    // imagen del grafo completo, o null si ninguna parada tiene coordenadas
+    public BufferedImage renderFullGraph(RedCompacta red) {
+        return renderFullGraph(red, new AgregadorCorredores().aggregate(red));
+    }
+
+    public BufferedImage renderFullGraph(RedCompacta red, CargaCorredores load) {
+        return renderFullGraph(red, load, null);
+    }
+
+    public BufferedImage renderFullGraph(RedCompacta red, CargaCorredores load, CentralidadRed centrality) {
+        GrafoCompleto full = drawFullGraph(red, load, centrality);
+        return full != null ? full.image : null;
+    }
+
+    // imagen de la secuencia s en una imagen nueva, o null si la secuencia no tiene imagen
+    public BufferedImage renderRouteGraph(RedCompacta red, int s) {
+        if (!hasImage(red, s)) return null;
+
+        int lineId = red.getSequenceLineId(s);
+        int start = red.getSequenceStart(s);
+        int end = red.getSequenceEnd(s);
+        Lienzo canvas = new Lienzo(WIDTH, HEIGHT);
+        try {
+            EventoDibujoRuta event = new EventoDibujoRuta();
+            event.begin();
+            MetricasProceso.Medicion render = MetricasProceso.get().start(MetricasProceso.DIBUJO);
+            drawRouteGraph(canvas.begin(), red, red.getRoute(lineId), lineId, red.getSequenceOrientation(s),
+                    red.getSequenceVariant(s), start, end, calculateBoundingBox(red, start, end));
+            render.stop(1);
+            event.finish(lineId, red.getSequenceOrientation(s), red.getSequenceVariant(s), end - start);
+        } finally {
+            canvas.dispose();
         }
+        return canvas.image;
+    }
+
+    // dibuja el grafo completo (todas las secuencias y paradas) en una imagen nueva; cada arco se
+    // dibuja una vez, más grueso mientras más secuencias lo compartan, y con centralidad cada parada
+    // es más grande mientras más caminos mínimos pasen por ella
+    private GrafoCompleto drawFullGraph(RedCompacta red, CargaCorredores load, CentralidadRed centrality) {
+        // todas las paradas de todas las rutas son todas las posiciones de la red
+        int nPositions = red.getPositionCount();
+
+        // calculo el área que contiene todas las paradas (para saber qué mostrar)
+        BoundingBox bbox = calculateBoundingBox(red, 0, nPositions);
+        if (bbox == null) return null;
 
         // tamaño de la imagen
         int width = 2400;
@@ -136,10 +400,11 @@ public class ExportadorImagenGrafo {
 
         g.setFont(new Font("SansSerif", Font.PLAIN, 16));
         g.setColor(new Color(70, 70, 70));
-        int totalRoutes = routesById.size();
-        int totalStops = allStopsGlobal.size();
+        int totalRoutes = red.getRouteCount();
+        int totalStops = nPositions;
         g.drawString(
-                "Total de rutas: " + totalRoutes + " | Total de paradas en el grafo: " + totalStops,
+                "Total de rutas: " + totalRoutes + " | Total de paradas en el grafo: " + totalStops
+                        + " | Grosor del arco: secuencias que lo usan (máx. " + load.getMaxSequences() + ")",
                 marginX, 75
         );
 
@@ -147,64 +412,66 @@ public class ExportadorImagenGrafo {
         int usableWidth = width - 2 * marginX;
         int usableHeight = height - marginY - headerHeight;
 
-        // configuro cómo dibujar las líneas
-        g.setStroke(new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        g.setColor(new Color(0, 90, 200, 50)); // azul transparente
-
-        // dibujo todas las líneas de todas las rutas
+        // cuento los segmentos de todas las secuencias (un arco compartido cuenta una vez por secuencia)
         int totalArcs = 0;
-        for (var entry : lineStopsByRouteAndOrientation.entrySet()) {
-            for (var orientEntry : entry.getValue().entrySet()) {
-                List<ParadaRuta> seq = new ArrayList<>(orientEntry.getValue());
-                seq.sort(Comparator.comparingInt(ParadaRuta::getSequence));
-
-                // dibujo línea de parada i a parada i+1
-                for (int i = 0; i < seq.size() - 1; i++) {
-                    Parada a = stopsById.get(seq.get(i).getStopId());
-                    Parada b = stopsById.get(seq.get(i + 1).getStopId());
-                    if (a == null || b == null) continue;
-
-                    // convierto lat/lon a píxeles
-                    Point2D p1 = project(
-                            a.getLon(), a.getLat(),
-                            bbox, marginX, marginY,
-                            usableWidth, usableHeight
-                    );
-                    Point2D p2 = project(
-                            b.getLon(), b.getLat(),
-                            bbox, marginX, marginY,
-                            usableWidth, usableHeight
-                    );
-
-                    g.draw(new Line2D.Double(p1, p2));
-                    totalArcs++;
-                }
+        for (int s = 0; s < red.getSequenceCount(); s++) {
+            for (int i = red.getSequenceStart(s); i < red.getSequenceEnd(s) - 1; i++) {
+                if (red.getPositionStopIndex(i) >= 0 && red.getPositionStopIndex(i + 1) >= 0) totalArcs++;
             }
         }
 
+        // grosor según la carga: un trazo por nivel para no crear uno por arco
+        BasicStroke[] strokes = new BasicStroke[FULL_STROKE_LEVELS + 1];
+        for (int k = 0; k <= FULL_STROKE_LEVELS; k++) {
+            float strokeWidth = FULL_STROKE_MIN + (FULL_STROKE_MAX - FULL_STROKE_MIN) * k / FULL_STROKE_LEVELS;
+            strokes[k] = new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        }
+        g.setColor(new Color(0, 90, 200, 90)); // azul transparente
+
+        // dibujo cada arco distinto una sola vez
+        Line2D.Double segment = new Line2D.Double();
+        for (long arc : load.getArcs()) {
+            int a = red.indexOfStop(Arco.packedOrigen(arc));
+            int b = red.indexOfStop(Arco.packedDestino(arc));
+            if (a < 0 || b < 0) continue;
+
+            // convierto lat/lon a píxeles
+            segment.setLine(
+                    projectX(red.getLon(a), bbox, marginX, usableWidth),
+                    projectY(red.getLat(a), bbox, marginY, usableHeight),
+                    projectX(red.getLon(b), bbox, marginX, usableWidth),
+                    projectY(red.getLat(b), bbox, marginY, usableHeight)
+            );
+
+            double weight = load.getWeight(Arco.packedOrigen(arc), Arco.packedDestino(arc));
+            g.setStroke(strokes[(int) Math.round(weight * FULL_STROKE_LEVELS)]);
+            g.draw(segment);
+        }
+
         // dibujo los círculos (paradas)
-        Set<Integer> drawnStops = new HashSet<>(); // para no dibujar la misma parada dos veces
+        boolean[] drawnStops = new boolean[red.getStopCount()]; // para no dibujar la misma parada dos veces
+        int uniqueStops = 0;
         g.setColor(new Color(200, 0, 0, 180)); // rojo transparente
-        int nodeRadius = 3;
+        double maxBetweenness = centrality != null ? centrality.getMaxBetweenness() : 0;
+        Ellipse2D.Double node = new Ellipse2D.Double();
 
-        for (ParadaRuta ls : allStopsGlobal) {
-            int stopId = ls.getStopId();
-            if (drawnStops.contains(stopId)) continue; // ya la dibujé
-            
-            Parada s = stopsById.get(stopId);
-            if (s == null) continue;
+        for (int i = 0; i < nPositions; i++) {
+            int idx = red.getPositionStopIndex(i);
+            if (idx < 0 || drawnStops[idx]) continue; // desconocida o ya la dibujé
 
             // convierto lat/lon a píxeles
-            Point2D p = project(
-                    s.getLon(), s.getLat(),
-                    bbox, marginX, marginY,
-                    usableWidth, usableHeight
-            );
+            double x = projectX(red.getLon(idx), bbox, marginX, usableWidth);
+            double y = projectY(red.getLat(idx), bbox, marginY, usableHeight);
 
-            // dibujo el círculo
-            g.fill(new Ellipse2D.Double(p.getX() - nodeRadius, p.getY() - nodeRadius, 
-                    nodeRadius * 2, nodeRadius * 2));
-            drawnStops.add(stopId);
+            // dibujo el círculo (raíz de la betweenness, para que el área crezca con ella)
+            double nodeRadius = FULL_NODE_MIN;
+            if (maxBetweenness > 0) {
+                nodeRadius += (FULL_NODE_MAX - FULL_NODE_MIN) * Math.sqrt(centrality.getBetweenness(idx) / maxBetweenness);
+            }
+            node.setFrame(x - nodeRadius, y - nodeRadius, nodeRadius * 2, nodeRadius * 2);
+            g.fill(node);
+            drawnStops[idx] = true;
+            uniqueStops++;
         }
 
         // dibujo el pie de página
@@ -215,43 +482,63 @@ public class ExportadorImagenGrafo {
         g.setFont(new Font("SansSerif", Font.PLAIN, 14));
         g.drawString(
                 String.format("SITM-MIO - Grafo Completo | Rutas: %d | Paradas únicas: %d | Arcos: %d",
-                        totalRoutes, drawnStops.size(), totalArcs),
+                        totalRoutes, uniqueStops, totalArcs),
                 marginX, height - 25
         );
 
         g.dispose();
-
-        // guardo la imagen como JPG
-        Path file = outputDir.resolve("Grafo_Completo_MIO.jpg");
-        ImageIO.write(image, "jpg", file.toFile());
-
-        System.out.println("Grafo completo generado");
-        System.out.println("\nUbicación: " + file.toAbsolutePath());
-        System.out.println("\n    - Rutas: " + totalRoutes);
-        System.out.println("    - Paradas únicas: " + drawnStops.size());
-        System.out.println("    - Arcos totales: " + totalArcs);
+        return new GrafoCompleto(image, totalRoutes, uniqueStops, totalArcs);
     }
 
-    // genera la imagen de una ruta específica
-    private boolean exportSingleGraph(
-            Ruta route,
-            int lineId,
-            int orientation,
-            List<ParadaRuta> seq,
-            Map<Integer, Parada> stopsById,
-            Path outputDir
-    ) throws IOException {
+    // dibuja la imagen de la secuencia s de la red en un lienzo del pool y la encola para guardarla
+    private boolean exportSingleGraph(ExportacionRutas job, int s) throws IOException {
+        RedCompacta red = job.red;
+        int lineId = red.getSequenceLineId(s);
+        Ruta route = red.getRoute(lineId);
+        int orientation = red.getSequenceOrientation(s);
+        int variant = red.getSequenceVariant(s);
+        int start = red.getSequenceStart(s);
+        int end = red.getSequenceEnd(s);
 
         // necesito al menos 2 paradas para hacer un arco
-        if (seq.size() < 2) return false;
+        int nStops = end - start;
+        if (nStops < 2) return false;
 
         // calculo el área que contiene las paradas de esta ruta
-        BoundingBox bbox = calculateBoundingBox(seq, stopsById);
+        BoundingBox bbox = calculateBoundingBox(red, start, end);
         if (bbox == null) return false;
 
-        // creo la imagen
-        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = image.createGraphics();
+        // reutilizo la imagen de un lienzo libre (el fondo la cubre completa)
+        Lienzo canvas = job.canvases.take();
+        try {
+            EventoDibujoRuta event = new EventoDibujoRuta();
+            event.begin();
+            MetricasProceso.Medicion render = MetricasProceso.get().start(MetricasProceso.DIBUJO);
+            drawRouteGraph(canvas.begin(), red, route, lineId, orientation, variant, start, end, bbox);
+            job.renderNanos.addAndGet(render.stop(1));
+            event.finish(lineId, orientation, variant, nStops);
+        } catch (RuntimeException e) {
+            job.canvases.release(canvas);
+            throw e;
+        }
+
+        // la etapa de codificación la guarda y devuelve el lienzo al pool
+        Path file = job.outputDir.resolve(job.fileNames[s]);
+        try {
+            job.encoder.submit(canvas.image, file, lineId, orientation, variant, () -> job.canvases.release(canvas));
+        } catch (IOException | RuntimeException e) {
+            // no quedó en la cola (falló otra imagen o se interrumpió): el lienzo vuelve al pool aquí
+            job.canvases.release(canvas);
+            throw e;
+        }
+
+        return true;
+    }
+
+    // dibuja la ruta completa (posiciones [start, end) de la red) sobre g
+    private void drawRouteGraph(Graphics2D g, RedCompacta red, Ruta route, int lineId, int orientation,
+                                int variant, int start, int end, BoundingBox bbox) {
+        int nStops = end - start;
 
         // activo calidad alta y pinto el fondo
         setupHighQualityRendering(g);
@@ -262,31 +549,13 @@ public class ExportadorImagenGrafo {
         int usableH = HEIGHT - HEADER_HEIGHT - FOOTER_HEIGHT - MARGIN;
 
         // dibujo todo en orden: título, líneas, círculos, etiquetas, leyenda, pie
-        drawHeader(g, route, lineId, seq.size(), orientation);
-        drawRouteArcs(g, seq, stopsById, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
-        drawStops(g, seq, stopsById, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
-        drawStopLabels(g, seq, stopsById, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
+        drawHeader(g, route, lineId, nStops, orientation, variant);
+        drawRouteArcs(g, red, start, end, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
+        drawStops(g, red, start, end, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
+        drawStopLabels(g, red, start, end, bbox, MARGIN, HEADER_HEIGHT, usableW, usableH);
 
         drawLegend(g, WIDTH - MARGIN - 250, HEADER_HEIGHT + 40);
-        drawFooter(g, seq.size());
-
-        g.dispose();
-
-        // armo el nombre del archivo
-        String name = route != null ? route.getShortName() : ("LINE_" + lineId);
-        name = name.replaceAll("[^a-zA-Z0-9_-]", "_"); // quito caracteres raros
-
-        String f = String.format("%s_%s_%d.jpg",
-                name,
-                getOrientationLabel(orientation).toLowerCase(),
-                lineId
-        );
-
-        // guardo como JPG
-        Path file = outputDir.resolve(f);
-        ImageIO.write(image, "jpg", file.toFile());
-
-        return true;
+        drawFooter(g, nStops);
     }
 
     // activo opciones para que se vea mejor (suavizado, etc)
@@ -305,13 +574,13 @@ public class ExportadorImagenGrafo {
     }
 
     // dibujo el título arriba
-    private void drawHeader(Graphics2D g, Ruta route, int lineId, int stops, int orientation) {
+    private void drawHeader(Graphics2D g, Ruta route, int lineId, int stops, int orientation, int variant) {
         g.setColor(COLOR_TEXT);
 
         g.setFont(new Font("SansSerif", Font.BOLD, 32));
         g.drawString("Ruta " +
                         (route != null ? route.getShortName() : lineId)
-                        + " - " + getOrientationLabel(orientation),
+                        + " - " + getOrientationLabel(orientation) + " (variante " + variant + ")",
                 MARGIN, 45);
 
         g.setFont(new Font("SansSerif", Font.PLAIN, 16));
@@ -341,8 +610,7 @@ public class ExportadorImagenGrafo {
 
     // dibujo las líneas que conectan las paradas
     private void drawRouteArcs(Graphics2D g,
-                               List<ParadaRuta> seq,
-                               Map<Integer, Parada> stopsById,
+                               RedCompacta red, int start, int end,
                                BoundingBox bbox,
                                int offX, int offY, int w, int h) {
 
@@ -350,14 +618,14 @@ public class ExportadorImagenGrafo {
         g.setStroke(new BasicStroke(ROUTE_STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
 
         // dibujo línea de parada i a parada i+1
-        for (int i = 0; i < seq.size() - 1; i++) {
-            Parada a = stopsById.get(seq.get(i).getStopId());
-            Parada b = stopsById.get(seq.get(i + 1).getStopId());
-            if (a == null || b == null) continue;
+        for (int i = 0; i < end - start - 1; i++) {
+            int a = red.getPositionStopIndex(start + i);
+            int b = red.getPositionStopIndex(start + i + 1);
+            if (a < 0 || b < 0) continue;
 
             // convierto lat/lon a píxeles
-            Point2D p1 = project(a.getLon(), a.getLat(), bbox, offX, offY, w, h);
-            Point2D p2 = project(b.getLon(), b.getLat(), bbox, offX, offY, w, h);
+            Point2D p1 = project(red.getLon(a), red.getLat(a), bbox, offX, offY, w, h);
+            Point2D p2 = project(red.getLon(b), red.getLat(b), bbox, offX, offY, w, h);
 
             g.draw(new Line2D.Double(p1, p2));
 
@@ -389,30 +657,30 @@ public class ExportadorImagenGrafo {
 
     // dibujo los círculos (paradas) con colores diferentes
     private void drawStops(Graphics2D g,
-                           List<ParadaRuta> seq,
-                           Map<Integer, Parada> stopsById,
+                           RedCompacta red, int start, int end,
                            BoundingBox bbox,
                            int offX, int offY, int w, int h) {
 
         // identifico primera y última para darles color especial
-        int firstStopId = seq.get(0).getStopId();
-        int lastStopId = seq.get(seq.size() - 1).getStopId();
+        int firstStopId = red.getPositionStopId(start);
+        int lastStopId = red.getPositionStopId(end - 1);
 
-        for (ParadaRuta ls : seq) {
-            Parada s = stopsById.get(ls.getStopId());
-            if (s == null) continue;
+        for (int i = start; i < end; i++) {
+            int stopId = red.getPositionStopId(i);
+            int s = red.getPositionStopIndex(i);
+            if (s < 0) continue;
 
             // convierto lat/lon a píxeles
-            Point2D p = project(s.getLon(), s.getLat(), bbox, offX, offY, w, h);
+            Point2D p = project(red.getLon(s), red.getLat(s), bbox, offX, offY, w, h);
 
             Color c;
             int r;
 
             // primera = verde, última = naranja, otras = rojo
-            if (ls.getStopId() == firstStopId) {
+            if (stopId == firstStopId) {
                 c = COLOR_FIRST_STOP;
                 r = NODE_RADIUS_BIG;
-            } else if (ls.getStopId() == lastStopId) {
+            } else if (stopId == lastStopId) {
                 c = COLOR_LAST_STOP;
                 r = NODE_RADIUS_BIG;
             } else {
@@ -427,44 +695,45 @@ public class ExportadorImagenGrafo {
     }
 
     private void drawStopLabels(Graphics2D g,
-                                List<ParadaRuta> seq,
-                                Map<Integer, Parada> stopsById,
+                                RedCompacta red, int start, int end,
                                 BoundingBox bbox,
                                 int offX, int offY, int w, int h) {
 
         g.setFont(new Font("SansSerif", Font.PLAIN, 13));
 
-        int firstStopId = seq.get(0).getStopId();
-        int lastStopId = seq.get(seq.size() - 1).getStopId();
+        int firstStopId = red.getPositionStopId(start);
+        int lastStopId = red.getPositionStopId(end - 1);
 
-        Parada first = stopsById.get(firstStopId);
-        Parada last = stopsById.get(lastStopId);
+        int first = red.getPositionStopIndex(start);
+        int last = red.getPositionStopIndex(end - 1);
 
-        if (first != null) {
-            drawLabel(g, first.getShortName(), first, bbox, offX, offY, w, h, true);
+        if (first >= 0) {
+            drawLabel(g, red, first, bbox, offX, offY, w, h, true);
         }
 
-        if (last != null && firstStopId != lastStopId) {
-            drawLabel(g, last.getShortName(), last, bbox, offX, offY, w, h, true);
+        if (last >= 0 && firstStopId != lastStopId) {
+            drawLabel(g, red, last, bbox, offX, offY, w, h, true);
         }
 
-        int step = Math.max(1, seq.size() / 6);
-        for (int i = step; i < seq.size() - step; i += step) {
-            int stopId = seq.get(i).getStopId();
-            Parada s = stopsById.get(stopId);
-            if (s != null && stopId != firstStopId && stopId != lastStopId) {
-                drawLabel(g, s.getShortName(), s, bbox, offX, offY, w, h, false);
+        int size = end - start;
+        int step = Math.max(1, size / 6);
+        for (int i = step; i < size - step; i += step) {
+            int stopId = red.getPositionStopId(start + i);
+            int s = red.getPositionStopIndex(start + i);
+            if (s >= 0 && stopId != firstStopId && stopId != lastStopId) {
+                drawLabel(g, red, s, bbox, offX, offY, w, h, false);
             }
         }
     }
 
-    private void drawLabel(Graphics2D g, String text, Parada s,
+    private void drawLabel(Graphics2D g, RedCompacta red, int stopIndex,
                            BoundingBox bbox,
                            int offX, int offY, int w, int h, boolean bold) {
 
-        if (s == null || text == null) return;
+        String text = red.getStopShortName(stopIndex);
+        if (text == null) return;
 
-        Point2D p = project(s.getLon(), s.getLat(), bbox, offX, offY, w, h);
+        Point2D p = project(red.getLon(stopIndex), red.getLat(stopIndex), bbox, offX, offY, w, h);
 
         Font f = bold ?
                 new Font("SansSerif", Font.BOLD, 14) :
@@ -533,21 +802,23 @@ public class ExportadorImagenGrafo {
     }
 
     // calculo el área que contiene todas las paradas (mín/máx de lat y lon)
-    private BoundingBox calculateBoundingBox(List<ParadaRuta> seq, Map<Integer, Parada> stops) {
+    private BoundingBox calculateBoundingBox(RedCompacta red, int start, int end) {
         double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
         double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
 
         // busco los límites
         int validStops = 0;
-        for (ParadaRuta ls : seq) {
-            Parada s = stops.get(ls.getStopId());
-            if (s == null) continue;
+        for (int i = start; i < end; i++) {
+            int s = red.getPositionStopIndex(i);
+            if (s < 0) continue;
 
             validStops++;
-            if (s.getLat() < minLat) minLat = s.getLat();
-            if (s.getLat() > maxLat) maxLat = s.getLat();
-            if (s.getLon() < minLon) minLon = s.getLon();
-            if (s.getLon() > maxLon) maxLon = s.getLon();
+            double lat = red.getLat(s);
+            double lon = red.getLon(s);
+            if (lat < minLat) minLat = lat;
+            if (lat > maxLat) maxLat = lat;
+            if (lon < minLon) minLon = lon;
+            if (lon > maxLon) maxLon = lon;
         }
 
         if (validStops == 0) return null;
@@ -569,21 +840,141 @@ public class ExportadorImagenGrafo {
 
     // convierto lat/lon a píxeles en la imagen
     private Point2D project(double lon, double lat, BoundingBox b, int ox, int oy, int w, int h) {
-        // normalizo al rango 0-1
+        return new Point2D.Double(projectX(lon, b, ox, w), projectY(lat, b, oy, h));
+    }
+
+    // coordenada X en píxeles (normalizo al rango 0-1 y escalo)
+    private double projectX(double lon, BoundingBox b, int ox, int w) {
         double x = (lon - b.minLon) / (b.maxLon - b.minLon);
-        double y = (lat - b.minLat) / (b.maxLat - b.minLat);
+        return ox + x * w;
+    }
 
-        // convierto a píxeles (invierto Y porque en imágenes Y va hacia abajo)
-        return new Point2D.Double(
-                ox + x * w,
-                oy + (1 - y) * h
-        );
+    // coordenada Y en píxeles (invierto Y porque en imágenes Y va hacia abajo)
+    private double projectY(double lat, BoundingBox b, int oy, int h) {
+        double y = (lat - b.minLat) / (b.maxLat - b.minLat);
+        return oy + (1 - y) * h;
     }
 
     private String getOrientationLabel(int o) {
         return (o == 0) ? "IDA" : "REGRESO";
     }
 
+    // Estado de una exportación de rutas, compartido por los hilos de dibujo
+    private class ExportacionRutas {
+        final RedCompacta red;
+        final Path outputDir;
+        final String[] fileNames;
+        final int[] pending;
+        final PoolLienzos canvases;
+        final EtapaCodificacion encoder;
+        final AtomicLong renderNanos;
+        final AtomicInteger next = new AtomicInteger();
+
+        ExportacionRutas(RedCompacta red, Path outputDir, String[] fileNames, int[] pending,
+                         PoolLienzos canvases, EtapaCodificacion encoder, AtomicLong renderNanos) {
+            this.red = red;
+            this.outputDir = outputDir;
+            this.fileNames = fileNames;
+            this.pending = pending;
+            this.canvases = canvases;
+            this.encoder = encoder;
+            this.renderNanos = renderNanos;
+        }
+
+        // dibuja secuencias pendientes hasta que no quede ninguna
+        void run() throws IOException {
+            for (int i = next.getAndIncrement(); i < pending.length; i = next.getAndIncrement()) {
+                exportSingleGraph(this, pending[i]);
+            }
+        }
+    }
+
+    // Lienzos que se crean a medida que hacen falta (hasta un máximo) y se reciclan
+    private static class PoolLienzos {
+        private final int width;
+        private final int height;
+        private final int max;
+        private final BlockingQueue<Lienzo> free;
+        private final List<Lienzo> all = new ArrayList<>();
+
+        PoolLienzos(int width, int height, int max) {
+            this.width = width;
+            this.height = height;
+            this.max = max;
+            this.free = new ArrayBlockingQueue<>(max);
+        }
+
+        // retorna un lienzo libre; si ya se crearon todos, espera a que se libere uno
+        Lienzo take() throws IOException {
+            Lienzo canvas = free.poll();
+            if (canvas != null) return canvas;
+
+            synchronized (this) {
+                if (all.size() < max) {
+                    canvas = new Lienzo(width, height);
+                    all.add(canvas);
+                    return canvas;
+                }
+            }
+
+            try {
+                return free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Generación de imágenes interrumpida", e);
+            }
+        }
+
+        void release(Lienzo canvas) {
+            free.add(canvas);
+        }
+
+        synchronized void dispose() {
+            for (Lienzo canvas : all) {
+                canvas.dispose();
+            }
+        }
+    }
+
+    // Imagen y Graphics2D que se reutilizan entre rutas
+    private static class Lienzo {
+        final BufferedImage image;
+        final Graphics2D g;
+
+        Lienzo(int width, int height) {
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.g = image.createGraphics();
+        }
+
+        // dejo el Graphics2D como recién creado antes de dibujar otra ruta
+        Graphics2D begin() {
+            g.setTransform(new AffineTransform());
+            g.setClip(null);
+            g.setStroke(new BasicStroke());
+            g.setComposite(AlphaComposite.SrcOver);
+            return g;
+        }
+
+        void dispose() {
+            g.dispose();
+        }
+    }
+
+    // imagen del grafo completo con los totales que se muestran al guardarla
+    private static class GrafoCompleto {
+        final BufferedImage image;
+        final int totalRoutes;
+        final int uniqueStops;
+        final int totalArcs;
+
+        GrafoCompleto(BufferedImage image, int totalRoutes, int uniqueStops, int totalArcs) {
+            this.image = image;
+            this.totalRoutes = totalRoutes;
+            this.uniqueStops = uniqueStops;
+            this.totalArcs = totalArcs;
+        }
+    }
+
     // Área geográfica rectangular que contiene las paradas
     private static class BoundingBox {
         final double minLon;
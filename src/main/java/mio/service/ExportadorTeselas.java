@@ -0,0 +1,327 @@
+package mio.service;
+
+import mio.model.RedCompacta;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Genera teselas PNG de 256x256 de la red completa en el esquema z/x/y de los mapas web
+// (proyección Web Mercator), para poder hacer zoom sin tener una imagen gigante en memoria.
+// Cada tesela dibuja solo los arcos y paradas que la tocan, buscados en un índice de grilla.
+// Los niveles que se ven poco se pueden pedir sueltos con getTile (quedan en un caché LRU).
+public class ExportadorTeselas {
+
+    public static final int TILE_SIZE = 256;
+    // zoom más alto que se puede pedir (a ese nivel una tesela cubre unos 10 metros)
+    public static final int MAX_ZOOM = 22;
+
+    // a partir de este zoom dibujo las paradas y los nombres
+    private static final int STOPS_MIN_ZOOM = 13;
+    private static final int LABELS_MIN_ZOOM = 16;
+
+    private static final Color COLOR_ARC = new Color(0, 90, 200, 140);
+    private static final Color COLOR_STOP = new Color(200, 0, 0, 200);
+    private static final Color COLOR_TEXT = new Color(40, 40, 40);
+
+    private final RedCompacta red;
+    private final FormatoImagen format;
+
+    // coordenadas en el mundo Mercator normalizado a [0, 1] (x hacia el este, y hacia el sur)
+    private final IndiceSegmentos arcs;
+    private final IndiceSegmentos stops;
+    private final int[] stopIndexOf; // parada de cada punto del índice de paradas
+
+    // caché de teselas ya codificadas, de la menos a la más recientemente usada
+    private final Map<Long, byte[]> cache;
+
+    public ExportadorTeselas(RedCompacta red, int cacheSize) {
+        this.red = red;
+        this.format = FormatoImagen.png(6);
+
+        // un segmento por arco; si el arco existe en los dos sentidos lo dibujo una vez
+        int nArcs = red.getArcCount();
+        double[] ax1 = new double[nArcs], ay1 = new double[nArcs];
+        double[] ax2 = new double[nArcs], ay2 = new double[nArcs];
+        int n = 0;
+        for (int a = 0; a < red.getStopCount(); a++) {
+            for (int k = red.getArcsStart(a); k < red.getArcsEnd(a); k++) {
+                int b = red.getArcTarget(k);
+                if (b < a && hasArc(red, b, a)) continue;
+                ax1[n] = mercatorX(red.getLon(a));
+                ay1[n] = mercatorY(red.getLat(a));
+                ax2[n] = mercatorX(red.getLon(b));
+                ay2[n] = mercatorY(red.getLat(b));
+                n++;
+            }
+        }
+        this.arcs = new IndiceSegmentos(ax1, ay1, ax2, ay2, n);
+
+        // solo las paradas que están en alguna ruta
+        boolean[] used = new boolean[red.getStopCount()];
+        int nUsed = 0;
+        for (int i = 0; i < red.getPositionCount(); i++) {
+            int idx = red.getPositionStopIndex(i);
+            if (idx >= 0 && !used[idx]) {
+                used[idx] = true;
+                nUsed++;
+            }
+        }
+        double[] sx = new double[nUsed], sy = new double[nUsed];
+        this.stopIndexOf = new int[nUsed];
+        int m = 0;
+        for (int idx = 0; idx < used.length; idx++) {
+            if (!used[idx]) continue;
+            sx[m] = mercatorX(red.getLon(idx));
+            sy[m] = mercatorY(red.getLat(idx));
+            stopIndexOf[m++] = idx;
+        }
+        this.stops = new IndiceSegmentos(sx, sy, sx, sy, nUsed);
+
+        int maxEntries = Math.max(1, cacheSize);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // genera en disco todas las teselas no vacías de los niveles [minZoom, maxZoom] como
+    // outputDir/z/x/y.png, repartidas entre varios hilos
+    public void exportPyramid(Path outputDir, int minZoom, int maxZoom, int workers) throws IOException {
+        if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+            throw new IllegalArgumentException("Rango de zoom inválido: " + minZoom + "-" + maxZoom);
+        }
+
+        System.out.println("╔════════════════════════════════════════════╗");
+        System.out.println("║ Generando teselas del mapa de la red...    ║");
+        System.out.println("╚════════════════════════════════════════════╝");
+
+        // rango de teselas que cubre la red en cada nivel; las teselas de todos los niveles se numeran
+        // seguidas (nivel, después x, después y) y cada hilo toma el próximo número, sin armar una
+        // lista de teselas (en los niveles altos son millones)
+        int levels = maxZoom - minZoom + 1;
+        int[][] ranges = new int[levels][];
+        long[] levelStarts = new long[levels + 1];
+        for (int l = 0; l < levels; l++) {
+            ranges[l] = tileRange(minZoom + l);
+            long columns = ranges[l][2] - ranges[l][0] + 1;
+            long rows = ranges[l][3] - ranges[l][1] + 1;
+            levelStarts[l + 1] = levelStarts[l] + Math.max(0, columns) * Math.max(0, rows);
+        }
+        long total = levelStarts[levels];
+
+        long t0 = System.nanoTime();
+        AtomicLong next = new AtomicLong();
+        AtomicLong written = new AtomicLong();
+        int nWorkers = (int) Math.max(1, Math.min(workers, total));
+
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers, r -> {
+            Thread t = new Thread(r, "render-teselas");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int w = 0; w < nWorkers; w++) {
+                results.add(executor.submit(() -> {
+                    // cada hilo reutiliza su propia imagen
+                    BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                    int l = 0;
+                    for (long i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                        // los números crecen, así que el nivel solo avanza
+                        while (levelStarts[l + 1] <= i) l++;
+                        int[] range = ranges[l];
+                        long rows = range[3] - range[1] + 1;
+                        long local = i - levelStarts[l];
+                        int z = minZoom + l;
+                        int x = range[0] + (int) (local / rows);
+                        int y = range[1] + (int) (local % rows);
+                        if (!renderTile(image, z, x, y)) continue; // tesela vacía
+
+                        Path dir = outputDir.resolve(Integer.toString(z)).resolve(Integer.toString(x));
+                        Files.createDirectories(dir);
+                        format.write(image, dir.resolve(y + "." + format.getExtension()));
+                        written.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException("Error generando teselas", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generación de teselas interrumpida", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.out.println("Teselas generadas: " + written.get() + " de " + total
+                + " (zoom " + minZoom + "-" + maxZoom + ")");
+        System.out.println("Tiempo total: " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        System.out.println("Ubicación: " + outputDir.toAbsolutePath());
+    }
+
+    // tesela z/x/y codificada en PNG (para servirla a pedido); usa el caché LRU
+    public byte[] getTile(int z, int x, int y) throws IOException {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || x >= (1 << z) || y < 0 || y >= (1 << z)) {
+            throw new IllegalArgumentException("Tesela inválida: " + z + "/" + x + "/" + y);
+        }
+
+        long key = tileKey(z, x, y);
+        synchronized (cache) {
+            byte[] cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+
+        // dibujo fuera del candado: si dos hilos piden la misma tesela a la vez, se dibuja dos veces
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        renderTile(image, z, x, y);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        format.write(image, out);
+        byte[] png = out.toByteArray();
+
+        synchronized (cache) {
+            cache.put(key, png);
+        }
+        return png;
+    }
+
+    // dibuja la tesela sobre image (se borra completa); retorna false si no tiene nada
+    boolean renderTile(BufferedImage image, int z, int x, int y) {
+        double scale = (double) TILE_SIZE * (1 << z); // píxeles del mundo en este zoom
+        double originX = (double) x * TILE_SIZE;
+        double originY = (double) y * TILE_SIZE;
+
+        float stroke = zoomStroke(z);
+        double radius = z >= STOPS_MIN_ZOOM ? stroke + 1.5 : 0;
+
+        // busco con un borde para no cortar trazos y círculos que salen de la tesela vecina
+        double pad = (Math.max(stroke, radius) + 1) / scale;
+        double minX = originX / scale - pad, maxX = (originX + TILE_SIZE) / scale + pad;
+        double minY = originY / scale - pad, maxY = (originY + TILE_SIZE) / scale + pad;
+
+        int[] arcIds = arcs.query(minX, minY, maxX, maxY);
+        int[] stopIds = z >= STOPS_MIN_ZOOM ? stops.query(minX, minY, maxX, maxY) : new int[0];
+
+        Graphics2D g = image.createGraphics();
+        try {
+            // fondo transparente para poder poner las teselas encima de un mapa base
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.setComposite(AlphaComposite.SrcOver);
+            if (arcIds.length == 0 && stopIds.length == 0) return false;
+
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            // arcos
+            g.setColor(COLOR_ARC);
+            g.setStroke(new BasicStroke(stroke, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            Line2D.Double segment = new Line2D.Double();
+            for (int i : arcIds) {
+                segment.setLine(
+                        arcs.getX1(i) * scale - originX, arcs.getY1(i) * scale - originY,
+                        arcs.getX2(i) * scale - originX, arcs.getY2(i) * scale - originY
+                );
+                g.draw(segment);
+            }
+
+            // paradas
+            g.setColor(COLOR_STOP);
+            Ellipse2D.Double node = new Ellipse2D.Double();
+            for (int i : stopIds) {
+                double px = stops.getX1(i) * scale - originX;
+                double py = stops.getY1(i) * scale - originY;
+                node.setFrame(px - radius, py - radius, radius * 2, radius * 2);
+                g.fill(node);
+            }
+
+            // nombres cortos de las paradas en los niveles más cercanos
+            if (z >= LABELS_MIN_ZOOM) {
+                g.setColor(COLOR_TEXT);
+                g.setFont(new Font("SansSerif", Font.PLAIN, 10));
+                for (int i : stopIds) {
+                    double px = stops.getX1(i) * scale - originX;
+                    double py = stops.getY1(i) * scale - originY;
+                    g.drawString(red.getStopShortName(stopIndexOf[i]), (float) (px + radius + 2), (float) (py - radius));
+                }
+            }
+            return true;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // rango de teselas [xMin, yMin, xMax, yMax] que cubre todas las paradas en el zoom z
+    int[] tileRange(int z) {
+        int n = 1 << z;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < stopIndexOf.length; i++) {
+            minX = Math.min(minX, stops.getX1(i));
+            maxX = Math.max(maxX, stops.getX1(i));
+            minY = Math.min(minY, stops.getY1(i));
+            maxY = Math.max(maxY, stops.getY1(i));
+        }
+        if (stopIndexOf.length == 0) return new int[] { 0, 0, -1, -1 };
+
+        return new int[] {
+                clampTile((int) Math.floor(minX * n), n), clampTile((int) Math.floor(minY * n), n),
+                clampTile((int) Math.floor(maxX * n), n), clampTile((int) Math.floor(maxY * n), n)
+        };
+    }
+
+    // grosor de línea según el zoom (más grueso al acercarse)
+    private static float zoomStroke(int z) {
+        return Math.max(1f, Math.min(4f, 1f + (z - 12) * 0.5f));
+    }
+
+    private static boolean hasArc(RedCompacta red, int from, int to) {
+        for (int k = red.getArcsStart(from); k < red.getArcsEnd(from); k++) {
+            if (red.getArcTarget(k) == to) return true;
+        }
+        return false;
+    }
+
+    // Web Mercator normalizado: x en [0, 1] de oeste a este
+    static double mercatorX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+    // y en [0, 1] de norte a sur
+    static double mercatorY(double lat) {
+        double rad = Math.toRadians(lat);
+        return (1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0;
+    }
+
+    private static int clampTile(int t, int n) {
+        return Math.max(0, Math.min(n - 1, t));
+    }
+
+    // z, x, y empaquetados en un long (z en los 8 bits altos, x e y con 28 bits cada uno)
+    private static long tileKey(int z, int x, int y) {
+        return ((long) z << 56) | ((long) x << 28) | y;
+    }
+}
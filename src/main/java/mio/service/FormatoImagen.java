@@ -0,0 +1,127 @@
+package mio.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+// Formato de salida de las imágenes: JPG (con calidad) o PNG (con nivel de compresión)
+public class FormatoImagen {
+
+    private final String extension;
+    private final float compressionQuality; // < 0: parámetros por defecto de ImageIO
+
+    private FormatoImagen(String extension, float compressionQuality) {
+        this.extension = extension;
+        this.compressionQuality = compressionQuality;
+    }
+
+    // JPG con los parámetros por defecto de ImageIO (lo que genera ImageIO.write)
+    public static FormatoImagen defaultJpeg() {
+        return new FormatoImagen("jpg", -1f);
+    }
+
+    // JPG con calidad entre 0 (más compresión) y 1 (mejor calidad)
+    public static FormatoImagen jpeg(float quality) {
+        if (quality < 0f || quality > 1f) {
+            throw new IllegalArgumentException("Calidad JPG fuera de [0, 1]: " + quality);
+        }
+        return new FormatoImagen("jpg", quality);
+    }
+
+    // PNG con nivel de compresión deflate entre 0 (sin compresión) y 9 (máxima)
+    public static FormatoImagen png(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Nivel de compresión PNG fuera de [0, 9]: " + compressionLevel);
+        }
+        // el escritor PNG del JDK usa nivel = 9 * (1 - calidad)
+        return new FormatoImagen("png", 1f - compressionLevel / 9f);
+    }
+
+    // lee -Dmio.imagen.formato=jpg|png, -Dmio.imagen.calidad=0..1 y -Dmio.imagen.compresion=0..9
+    public static FormatoImagen fromSystemProperties() {
+        String format = System.getProperty("mio.imagen.formato", "jpg");
+        if (format.equalsIgnoreCase("png")) {
+            return png(Integer.getInteger("mio.imagen.compresion", 6));
+        }
+        String quality = System.getProperty("mio.imagen.calidad");
+        return quality != null ? jpeg(Float.parseFloat(quality)) : defaultJpeg();
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // texto que identifica el formato y sus parámetros (sirve para saber si una salida está al día)
+    public String describe() {
+        return compressionQuality < 0 ? extension : extension + ":" + compressionQuality;
+    }
+
+    // guarda la imagen en el archivo y retorna cuántos bytes escribió
+    public long write(RenderedImage image, Path file) throws IOException {
+        // con buffer: FileImageOutputStream escribe directo al RandomAccessFile y es mucho más lento
+        SalidaContada counted = new SalidaContada(Files.newOutputStream(file));
+        try (OutputStream out = new BufferedOutputStream(counted, 1 << 16)) {
+            write(image, out);
+        }
+        return counted.count;
+    }
+
+    public void write(RenderedImage image, OutputStream out) throws IOException {
+        // cache en memoria: ImageIO.createImageOutputStream podría usar un archivo temporal
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            write(image, ios);
+        }
+    }
+
+    private void write(RenderedImage image, ImageOutputStream ios) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(extension);
+        if (!writers.hasNext()) {
+            throw new IOException("No hay escritor de imágenes para " + extension);
+        }
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = null;
+            if (compressionQuality >= 0) {
+                param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(compressionQuality);
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // salida que cuenta los bytes que pasan (va debajo del buffer, así que recibe bloques grandes)
+    private static final class SalidaContada extends FilterOutputStream {
+        long count;
+
+        SalidaContada(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Genera una red SITM sintética con las mismas columnas de lines-241.csv, stops-241.csv y
+// linestops-241.csv, escalada respecto a la real (105 rutas, 2119 paradas, ~7400 linestops).
+// Las paradas se agrupan en barrios alrededor del área real de Cali, las rutas recorren
+// corredores compartidos (varias rutas por el mismo tramo), tienen ida y regreso por paradas
+// del frente y entre 1 y 3 variantes. Con la misma semilla siempre salen los mismos archivos.
+public class GeneradorRedSintetica {
+
+    // tamaño de la red real
+    private static final int BASE_LINES = 105;
+    private static final int BASE_STOPS = 2119;
+
+    // área de las paradas reales
+    private static final double MIN_LAT = 3.29077;
+    private static final double MAX_LAT = 3.49886333;
+    private static final double MIN_LON = -76.58889111;
+    private static final double MAX_LON = -76.46328111;
+
+    private static final int FIRST_STOP_ID = 500000;
+    private static final int FIRST_LINE_ID = 100;
+    private static final long FIRST_LINESTOP_ID = 1_000_000L;
+
+    private static final String DATE_ACTIVATION = "2018-05-15 00:00:00.000";
+    private static final String DATE_CREATION = "2018-05-14 22:55:16.000";
+    private static final String DATE_REGISTER = "2018-05-14 22:55:32.000";
+    private static final String[] LINE_PREFIXES = { "T", "P", "A", "E", "R" };
+
+    // grilla para buscar paradas cercanas a un punto
+    private static final int GRID = 256;
+
+    private final double scale;
+    private final long seed;
+    private final int planVersion;
+
+    // paradas generadas (índice i = parada FIRST_STOP_ID + i)
+    private double[] lats;
+    private double[] lons;
+    private int[] cellOffsets;
+    private int[] cellStops;
+
+    public GeneradorRedSintetica(double scale, long seed, int planVersion) {
+        if (!(scale > 0)) throw new IllegalArgumentException("Escala inválida: " + scale);
+        this.scale = scale;
+        this.seed = seed;
+        this.planVersion = planVersion;
+    }
+
+    public Path getLinesFile(Path dir) {
+        return dir.resolve("lines-" + planVersion + ".csv");
+    }
+
+    public Path getStopsFile(Path dir) {
+        return dir.resolve("stops-" + planVersion + ".csv");
+    }
+
+    public Path getLineStopsFile(Path dir) {
+        return dir.resolve("linestops-" + planVersion + ".csv");
+    }
+
+    // escribe los tres CSV en dir; retorna el número de linestops generados
+    public long generate(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        int nStops = Math.max(10, (int) Math.round(BASE_STOPS * scale));
+        int nLines = Math.max(1, (int) Math.round(BASE_LINES * scale));
+
+        // barrios: centro, dispersión y peso (unos pocos barrios concentran muchas paradas)
+        int nClusters = Math.max(8, (int) Math.round(60 * Math.sqrt(scale)));
+        double[] clusterLat = new double[nClusters];
+        double[] clusterLon = new double[nClusters];
+        double[] clusterSigma = new double[nClusters];
+        double[] clusterWeight = new double[nClusters];
+        double total = 0;
+        for (int c = 0; c < nClusters; c++) {
+            clusterLat[c] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+            clusterLon[c] = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON);
+            clusterSigma[c] = 0.003 + random.nextDouble() * 0.009;
+            total += -Math.log(1 - random.nextDouble()); // peso exponencial
+            clusterWeight[c] = total;
+        }
+
+        generateStops(random, nStops, clusterLat, clusterLon, clusterSigma, clusterWeight);
+        buildGrid();
+        writeStops(getStopsFile(dir));
+        writeLines(getLinesFile(dir), random, nLines, nClusters);
+        return writeLineStops(getLineStopsFile(dir), random, nLines, clusterLat, clusterLon);
+    }
+
+    private void generateStops(SplittableRandom random, int nStops, double[] clusterLat, double[] clusterLon,
+                               double[] clusterSigma, double[] clusterWeight) {
+        lats = new double[nStops];
+        lons = new double[nStops];
+        double totalWeight = clusterWeight[clusterWeight.length - 1];
+        for (int i = 0; i < nStops; i++) {
+            int c = Arrays.binarySearch(clusterWeight, random.nextDouble() * totalWeight);
+            if (c < 0) c = -c - 1;
+            c = Math.min(c, clusterWeight.length - 1);
+
+            lats[i] = round8(clamp(clusterLat[c] + gaussian(random) * clusterSigma[c], MIN_LAT, MAX_LAT));
+            lons[i] = round8(clamp(clusterLon[c] + gaussian(random) * clusterSigma[c], MIN_LON, MAX_LON));
+        }
+    }
+
+    // índice de paradas por celda (CSR)
+    private void buildGrid() {
+        cellOffsets = new int[GRID * GRID + 1];
+        for (int i = 0; i < lats.length; i++) {
+            cellOffsets[cellOf(lats[i], lons[i]) + 1]++;
+        }
+        for (int c = 0; c < GRID * GRID; c++) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        cellStops = new int[lats.length];
+        int[] fill = Arrays.copyOf(cellOffsets, GRID * GRID);
+        for (int i = 0; i < lats.length; i++) {
+            cellStops[fill[cellOf(lats[i], lons[i])]++] = i;
+        }
+    }
+
+    // STOPID,PLANVERSIONID,SHORTNAME,LONGNAME,GPS_X,GPS_Y,DECIMALLONGITUDE,DECIMALLATITUDE,PLANVERSIONID,ACTIVATIONDATE,CREATIONDATE
+    private void writeStops(Path file) throws IOException {
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("\"STOPID\",\"PLANVERSIONID\",\"SHORTNAME\",\"LONGNAME\",\"GPS_X\",\"GPS_Y\",")
+                    .write("\"DECIMALLONGITUDE\",\"DECIMALLATITUDE\",\"PLANVERSIONID\",\"ACTIVATIONDATE\",\"CREATIONDATE\"")
+                    .newLine();
+            for (int i = 0; i < lats.length; i++) {
+                // nombre tipo "Kr 45 con Cl 12" según la posición en la grilla
+                int kr = (int) ((lons[i] - MIN_LON) / (MAX_LON - MIN_LON) * 150) + 1;
+                int cl = (int) ((lats[i] - MIN_LAT) / (MAX_LAT - MIN_LAT) * 150) + 1;
+
+                out.write(FIRST_STOP_ID + i).write(',').write(planVersion).write(',')
+                        .write('K').write(kr).write('C').write(cl).write('_').write(i).write(',')
+                        .write("Kr ").write(kr).write(" con Cl ").write(cl).write(',')
+                        .write(Math.round(lons[i] * 1e7)).write(',').write(Math.round(lats[i] * 1e7)).write(',')
+                        .write(lons[i]).write(',').write(lats[i]).write(',')
+                        .write(planVersion).write(',').write(DATE_ACTIVATION).write(',').write(DATE_CREATION)
+                        .newLine();
+            }
+        }
+    }
+
+    // LINEID,PLANVERSIONID,SHORTNAME,DESCRIPTION,PLANVERSIONID,ACTIVATIONDATE,CREATIONDATE
+    private void writeLines(Path file, SplittableRandom random, int nLines, int nClusters) throws IOException {
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("\"LINEID\",\"PLANVERSIONID\",\"SHORTNAME\",\"DESCRIPTION\",\"PLANVERSIONID\",")
+                    .write("\"ACTIVATIONDATE\",\"CREATIONDATE\"").newLine();
+            for (int l = 0; l < nLines; l++) {
+                String prefix = LINE_PREFIXES[l % LINE_PREFIXES.length];
+                out.write(FIRST_LINE_ID + l).write(',').write(planVersion).write(',')
+                        .write(prefix).write(l / LINE_PREFIXES.length + 1).write(',')
+                        .write("Barrio ").write(random.nextInt(nClusters) + 1)
+                        .write(" - Barrio ").write(random.nextInt(nClusters) + 1).write(',')
+                        .write(planVersion).write(',').write(DATE_ACTIVATION).write(',').write(DATE_CREATION)
+                        .newLine();
+            }
+        }
+    }
+
+    // LINESTOPID,STOPSEQUENCE,ORIENTATION,LINEID,STOPID,PLANVERSIONID,LINEVARIANT,REGISTERDATE,LINEVARIANTTYPE,PLANVERSIONID,ACTIVATIONDATE,CREATIONDATE
+    private long writeLineStops(Path file, SplittableRandom random, int nLines,
+                                double[] clusterLat, double[] clusterLon) throws IOException {
+        // corredores: tramos entre dos barrios que comparten varias rutas
+        int nCorridors = Math.max(4, nLines / 3);
+        int[][] corridors = new int[nCorridors][];
+        for (int k = 0; k < nCorridors; k++) {
+            int a = random.nextInt(clusterLat.length);
+            int b = random.nextInt(clusterLat.length);
+            corridors[k] = walk(random, clusterLat[a], clusterLon[a], clusterLat[b], clusterLon[b],
+                    6 + random.nextInt(13));
+        }
+
+        long linestopId = FIRST_LINESTOP_ID;
+        long written = 0;
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            out.write("\"LINESTOPID\",\"STOPSEQUENCE\",\"ORIENTATION\",\"LINEID\",\"STOPID\",\"PLANVERSIONID\",")
+                    .write("\"LINEVARIANT\",\"REGISTERDATE\",\"LINEVARIANTTYPE\",\"PLANVERSIONID\",")
+                    .write("\"ACTIVATIONDATE\",\"CREATIONDATE\"").newLine();
+
+            for (int l = 0; l < nLines; l++) {
+                int[] path = linePath(random, corridors);
+
+                // variantes: la completa y recortes o desvíos de ella, con ids chicos como en los datos reales
+                int nVariants = 1 + (random.nextDouble() < 0.6 ? 1 : 0) + (random.nextDouble() < 0.4 ? 1 : 0);
+                int variantId = 1 + random.nextInt(4);
+                boolean circular = random.nextDouble() < 0.1; // solo ida
+
+                for (int v = 0; v < nVariants; v++) {
+                    int[] variant = v == 0 ? path : variantOf(random, path);
+                    for (int orientation = 0; orientation < (circular ? 1 : 2); orientation++) {
+                        int[] stops = orientation == 0 ? variant : returnPath(random, variant);
+                        for (int seq = 0; seq < stops.length; seq++) {
+                            out.write(linestopId++).write(',').write(seq + 1).write(',').write(orientation).write(',')
+                                    .write(FIRST_LINE_ID + l).write(',').write(FIRST_STOP_ID + stops[seq]).write(',')
+                                    .write(planVersion).write(',').write(variantId).write(',')
+                                    .write(DATE_REGISTER).write(",1,").write(planVersion).write(',')
+                                    .write(DATE_ACTIVATION).write(',').write(DATE_CREATION)
+                                    .newLine();
+                            written++;
+                        }
+                    }
+                    variantId += 1 + random.nextInt(4);
+                }
+            }
+        }
+        return written;
+    }
+
+    // recorrido base de una ruta: alimentador + 1 o 2 corredores + alimentador
+    private int[] linePath(SplittableRandom random, int[][] corridors) {
+        // los primeros corredores se eligen más seguido: esos tramos quedan muy compartidos
+        int[] first = corridors[skewedIndex(random, corridors.length)];
+        int[] second = random.nextDouble() < 0.3 ? corridors[skewedIndex(random, corridors.length)] : null;
+        if (random.nextBoolean()) first = reversed(first);
+
+        int[] head = feeder(random, first[0], random.nextInt(6));
+        int[] middle = first;
+        if (second != null) {
+            // conecto el final del primer corredor con el inicio del segundo
+            int[] link = walk(random, lats[first[first.length - 1]], lons[first[first.length - 1]],
+                    lats[second[0]], lons[second[0]], 2 + random.nextInt(5));
+            middle = concat(concat(first, link), second);
+        }
+        int[] tail = feeder(random, middle[middle.length - 1], random.nextInt(6));
+        return dedupConsecutive(concat(concat(reversed(head), middle), tail));
+    }
+
+    // variante: recorte de la ruta (vuelta corta) o desvío en un tramo del medio
+    private int[] variantOf(SplittableRandom random, int[] path) {
+        int n = path.length;
+        if (n < 6 || random.nextBoolean()) {
+            int from = random.nextInt(Math.max(1, n / 4));
+            int to = n - random.nextInt(Math.max(1, n / 4));
+            return Arrays.copyOfRange(path, from, Math.max(from + 2, to));
+        }
+
+        int from = 1 + random.nextInt(n / 2);
+        int to = Math.min(n - 1, from + 2 + random.nextInt(4));
+        int[] detour = walk(random, lats[path[from - 1]], lons[path[from - 1]], lats[path[to]], lons[path[to]],
+                to - from);
+        return dedupConsecutive(concat(concat(Arrays.copyOfRange(path, 0, from), detour),
+                Arrays.copyOfRange(path, to, n)));
+    }
+
+    // regreso: el mismo recorrido al revés, muchas veces por la parada del frente (otra parada de la celda)
+    private int[] returnPath(SplittableRandom random, int[] path) {
+        int[] back = reversed(path);
+        for (int i = 0; i < back.length; i++) {
+            if (random.nextDouble() < 0.5) {
+                int cell = cellOf(lats[back[i]], lons[back[i]]);
+                int count = cellOffsets[cell + 1] - cellOffsets[cell];
+                back[i] = cellStops[cellOffsets[cell] + random.nextInt(count)];
+            }
+        }
+        return dedupConsecutive(back);
+    }
+
+    // paradas cercanas a un punto de partida, alejándose de a poco
+    private int[] feeder(SplittableRandom random, int startStop, int n) {
+        double lat = lats[startStop];
+        double lon = lons[startStop];
+        double angle = random.nextDouble() * 2 * Math.PI;
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            angle += gaussian(random) * 0.4;
+            lat += Math.sin(angle) * 0.004;
+            lon += Math.cos(angle) * 0.004;
+            stops[i] = nearStop(random, lat, lon);
+        }
+        return stops;
+    }
+
+    // n paradas sobre la línea entre dos puntos, con un poco de zigzag
+    private int[] walk(SplittableRandom random, double lat0, double lon0, double lat1, double lon1, int n) {
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            double t = n == 1 ? 0.5 : (double) i / (n - 1);
+            stops[i] = nearStop(random,
+                    lat0 + (lat1 - lat0) * t + gaussian(random) * 0.001,
+                    lon0 + (lon1 - lon0) * t + gaussian(random) * 0.001);
+        }
+        return dedupConsecutive(stops);
+    }
+
+    // alguna parada de la celda del punto, o de la celda con paradas más cercana
+    private int nearStop(SplittableRandom random, double lat, double lon) {
+        lat = clamp(lat, MIN_LAT, MAX_LAT);
+        lon = clamp(lon, MIN_LON, MAX_LON);
+        int row = cellRow(lat);
+        int col = cellCol(lon);
+        for (int radius = 0; radius < GRID; radius++) {
+            int found = -1;
+            int seen = 0;
+            for (int r = Math.max(0, row - radius); r <= Math.min(GRID - 1, row + radius); r++) {
+                for (int c = Math.max(0, col - radius); c <= Math.min(GRID - 1, col + radius); c++) {
+                    if (Math.max(Math.abs(r - row), Math.abs(c - col)) != radius) continue; // solo el anillo
+                    int cell = r * GRID + c;
+                    for (int k = cellOffsets[cell]; k < cellOffsets[cell + 1]; k++) {
+                        // elección uniforme entre las paradas del anillo (reservoir sampling)
+                        if (random.nextInt(++seen) == 0) found = cellStops[k];
+                    }
+                }
+            }
+            if (found >= 0) return found;
+        }
+        return random.nextInt(lats.length);
+    }
+
+    private int cellOf(double lat, double lon) {
+        return cellRow(lat) * GRID + cellCol(lon);
+    }
+
+    private static int cellRow(double lat) {
+        return Math.min(GRID - 1, (int) ((lat - MIN_LAT) / (MAX_LAT - MIN_LAT) * GRID));
+    }
+
+    private static int cellCol(double lon) {
+        return Math.min(GRID - 1, (int) ((lon - MIN_LON) / (MAX_LON - MIN_LON) * GRID));
+    }
+
+    // índice en [0, n) con más probabilidad para los primeros
+    private static int skewedIndex(SplittableRandom random, int n) {
+        double u = random.nextDouble();
+        return Math.min(n - 1, (int) (n * u * u));
+    }
+
+    private static int[] dedupConsecutive(int[] stops) {
+        int m = 0;
+        for (int stop : stops) {
+            if (m == 0 || stops[m - 1] != stop) stops[m++] = stop;
+        }
+        return m == stops.length ? stops : Arrays.copyOf(stops, m);
+    }
+
+    private static int[] reversed(int[] a) {
+        int[] r = new int[a.length];
+        for (int i = 0; i < a.length; i++) r[i] = a[a.length - 1 - i];
+        return r;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    // normal estándar (Box-Muller)
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    private static double round8(double v) {
+        return Math.round(v * 1e8) / 1e8;
+    }
+}
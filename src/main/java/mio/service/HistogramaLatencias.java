@@ -0,0 +1,74 @@
+package mio.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histograma de latencias en microsegundos con cubetas log-lineales: cada potencia de 2 se parte
+// en 8 cubetas, así que un percentil sale con un error de a lo más 12.5%. Se puede registrar
+// desde varios hilos a la vez sin candados.
+public class HistogramaLatencias {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        long m = max.get();
+        while (micros > m && !max.compareAndSet(m, micros)) {
+            m = max.get();
+        }
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    // límite superior de la cubeta donde cae el percentil q (entre 0 y 1), sin pasarse del máximo
+    public long percentileMicros(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    // los valores menores a 8 tienen una cubeta cada uno; los demás, 8 por potencia de 2
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB_BUCKETS + sub) * width) + width - 1;
+    }
+}
@@ -0,0 +1,479 @@
+package mio.service;
+
+import mio.Util.UtilidadesGeo;
+import mio.model.RedCompacta;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Índice espacial de las paradas de la red: árbol k-d empaquetado en arreglos primitivos.
+// Cada parada se guarda como vector unitario en 3D (x, y, z sobre la esfera), así la distancia
+// en línea recta es monótona con la distancia haversine y las búsquedas por cercanía son exactas.
+// Las hojas guardan hasta LEAF_SIZE paradas. Se arma una vez y se puede consultar desde varios hilos.
+public class IndiceEspacialParadas {
+
+    private static final int LEAF_SIZE = 8;
+
+    // puntos por tarea en las consultas en lote
+    private static final int BATCH_CHUNK = 4096;
+
+    // paradas en el orden del árbol
+    private final int[] stopIndices;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final double[] lats;
+    private final double[] lons;
+
+    // nodos: rango de puntos [nodeStart, nodeEnd), hijos (-1 en las hojas) y caja 3D del subárbol
+    private int nodeCount;
+    private int[] nodeStart;
+    private int[] nodeEnd;
+    private int[] nodeLeft;
+    private int[] nodeRight;
+    private double[] boxMin; // 3 por nodo
+    private double[] boxMax;
+
+    public IndiceEspacialParadas(RedCompacta red) {
+        int n = red.getStopCount();
+
+        // coordenadas 3D por índice de parada
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            double lat = Math.toRadians(red.getLat(i));
+            double lon = Math.toRadians(red.getLon(i));
+            x[i] = Math.cos(lat) * Math.cos(lon);
+            y[i] = Math.cos(lat) * Math.sin(lon);
+            z[i] = Math.sin(lat);
+            order[i] = i;
+        }
+
+        int maxNodes = Math.max(1, 4 * (n / LEAF_SIZE + 1));
+        nodeStart = new int[maxNodes];
+        nodeEnd = new int[maxNodes];
+        nodeLeft = new int[maxNodes];
+        nodeRight = new int[maxNodes];
+        boxMin = new double[3 * maxNodes];
+        boxMax = new double[3 * maxNodes];
+        double[][] coords = { x, y, z };
+        if (n > 0) build(order, coords, 0, n);
+
+        // copio las coordenadas en el orden del árbol para recorrer las hojas de corrido
+        stopIndices = order;
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        lats = new double[n];
+        lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            int s = order[i];
+            xs[i] = x[s];
+            ys[i] = y[s];
+            zs[i] = z[s];
+            lats[i] = red.getLat(s);
+            lons[i] = red.getLon(s);
+        }
+    }
+
+    public int size() {
+        return stopIndices.length;
+    }
+
+    // índice de la parada más cercana, o -1 si no hay paradas
+    public int nearest(double lat, double lon) {
+        Busqueda search = new Busqueda(1);
+        search.run(lat, lon);
+        return search.count > 0 ? stopIndices[search.ids[0]] : -1;
+    }
+
+    // las k paradas más cercanas, de la más cercana a la más lejana (ninguna si k <= 0)
+    public int[] nearest(double lat, double lon, int k) {
+        if (k <= 0) return new int[0];
+        int[] stops = new int[Math.min(k, size())];
+        int n = nearest(lat, lon, k, stops, null);
+        return n == stops.length ? stops : Arrays.copyOf(stops, n);
+    }
+
+    // igual que nearest(lat, lon, k) pero escribe en arreglos del llamador (sin crear objetos
+    // por resultado); outMeters puede ser null. Retorna cuántas paradas encontró.
+    public int nearest(double lat, double lon, int k, int[] outStops, double[] outMeters) {
+        if (k <= 0) return 0;
+        Busqueda search = new Busqueda(k);
+        search.run(lat, lon);
+        return search.drainSorted(outStops, outMeters);
+    }
+
+    // paradas a menos de 'meters' metros (haversine), de la más cercana a la más lejana
+    public int[] withinRadius(double lat, double lon, double meters) {
+        if (size() == 0 || meters < 0) return new int[0];
+        double qx = unitX(lat, lon), qy = unitY(lat, lon), qz = unitZ(lat);
+        double limit = UtilidadesGeo.chordForMeters(meters);
+        double limit2 = limit * limit;
+
+        // distancia (float) y posición empaquetadas en un long para ordenar sin objetos
+        long[] found = new long[16];
+        int n = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (boxDistance2(node, qx, qy, qz) > limit2) continue;
+            if (nodeLeft[node] < 0) {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                    double d2 = distance2(i, qx, qy, qz);
+                    if (d2 > limit2) continue;
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = ((long) Float.floatToIntBits((float) d2) << 32) | i;
+                }
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = nodeLeft[node];
+                stack[top++] = nodeRight[node];
+            }
+        }
+
+        Arrays.sort(found, 0, n);
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            stops[i] = stopIndices[(int) found[i]];
+        }
+        return stops;
+    }
+
+    // paradas dentro del rectángulo lat/lon (bordes incluidos), ordenadas por índice de parada
+    public int[] withinBox(double minLat, double minLon, double maxLat, double maxLon) {
+        if (size() == 0 || minLat > maxLat || minLon > maxLon) return new int[0];
+
+        // caja 3D que contiene todo el rectángulo sobre la esfera, para descartar nodos
+        double[] qMin = new double[3];
+        double[] qMax = new double[3];
+        sphereBox(minLat, minLon, maxLat, maxLon, qMin, qMax);
+
+        int[] found = new int[16];
+        int n = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!boxesIntersect(node, qMin, qMax)) continue;
+            if (nodeLeft[node] < 0) {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                    if (lats[i] < minLat || lats[i] > maxLat || lons[i] < minLon || lons[i] > maxLon) continue;
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = stopIndices[i];
+                }
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = nodeLeft[node];
+                stack[top++] = nodeRight[node];
+            }
+        }
+        Arrays.sort(found, 0, n);
+        return Arrays.copyOf(found, n);
+    }
+
+    // parada más cercana a cada punto, repartiendo los puntos entre los hilos del pool común
+    public int[] nearestBatch(double[] queryLats, double[] queryLons) {
+        int[] result = new int[queryLats.length];
+        nearestBatch(queryLats, queryLons, result, null, ForkJoinPool.commonPool());
+        return result;
+    }
+
+    // igual que nearestBatch, escribiendo en outStops (-1 si no hay paradas) y, si no es null,
+    // la distancia en metros en outMeters
+    public void nearestBatch(double[] queryLats, double[] queryLons, int[] outStops, double[] outMeters,
+                             ForkJoinPool pool) {
+        if (queryLats.length != queryLons.length || outStops.length < queryLats.length
+                || (outMeters != null && outMeters.length < queryLats.length)) {
+            throw new IllegalArgumentException("Los arreglos de consulta y resultado no tienen el mismo largo");
+        }
+        pool.invoke(new LoteTask(queryLats, queryLons, outStops, outMeters, 0, queryLats.length));
+    }
+
+    // ---- construcción ----
+
+    // arma el nodo para order[lo, hi) y retorna su número
+    private int build(int[] order, double[][] coords, int lo, int hi) {
+        int node = nodeCount++;
+        nodeStart[node] = lo;
+        nodeEnd[node] = hi;
+
+        // caja del subárbol
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            double[] c = coords[a];
+            for (int i = lo; i < hi; i++) {
+                double v = c[order[i]];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            boxMin[3 * node + a] = min;
+            boxMax[3 * node + a] = max;
+        }
+
+        if (hi - lo <= LEAF_SIZE) {
+            nodeLeft[node] = -1;
+            nodeRight[node] = -1;
+            return node;
+        }
+
+        // parto por la mediana del eje más largo de la caja
+        int axis = 0;
+        double extent = -1;
+        for (int a = 0; a < 3; a++) {
+            double e = boxMax[3 * node + a] - boxMin[3 * node + a];
+            if (e > extent) {
+                extent = e;
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(order, coords[axis], lo, hi - 1, mid);
+
+        nodeLeft[node] = build(order, coords, lo, mid);
+        nodeRight[node] = build(order, coords, mid, hi);
+        return node;
+    }
+
+    // quickselect: deja en order[k] el elemento k-ésimo según key, menores a la izquierda
+    private static void select(int[] order, double[] key, int lo, int hi, int k) {
+        while (hi > lo) {
+            double pivot = key[order[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[order[i]] < pivot) i++;
+                while (key[order[j]] > pivot) j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // ---- geometría ----
+
+    private double distance2(int i, double qx, double qy, double qz) {
+        double dx = xs[i] - qx, dy = ys[i] - qy, dz = zs[i] - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // distancia al cuadrado del punto a la caja del nodo (0 si está adentro)
+    private double boxDistance2(int node, double qx, double qy, double qz) {
+        double d = 0;
+        d += axisGap(qx, boxMin[3 * node], boxMax[3 * node]);
+        d += axisGap(qy, boxMin[3 * node + 1], boxMax[3 * node + 1]);
+        d += axisGap(qz, boxMin[3 * node + 2], boxMax[3 * node + 2]);
+        return d;
+    }
+
+    private static double axisGap(double q, double min, double max) {
+        double g = q < min ? min - q : (q > max ? q - max : 0);
+        return g * g;
+    }
+
+    private boolean boxesIntersect(int node, double[] qMin, double[] qMax) {
+        for (int a = 0; a < 3; a++) {
+            if (boxMax[3 * node + a] < qMin[a] || boxMin[3 * node + a] > qMax[a]) return false;
+        }
+        return true;
+    }
+
+    // caja 3D de la región lat/lon: z depende solo de la latitud; x e y son cos(lat) por
+    // cos(lon) o sin(lon), así que salen de multiplicar los rangos de cada factor
+    private static void sphereBox(double minLat, double minLon, double maxLat, double maxLon,
+                                  double[] qMin, double[] qMax) {
+        double latLo = Math.toRadians(minLat), latHi = Math.toRadians(maxLat);
+        double cosLatMin = Math.min(Math.cos(latLo), Math.cos(latHi));
+        double cosLatMax = (latLo <= 0 && latHi >= 0) ? 1 : Math.max(Math.cos(latLo), Math.cos(latHi));
+
+        double lonLo = Math.toRadians(minLon), lonHi = Math.toRadians(maxLon);
+        double[] cosLon = trigRange(lonLo, lonHi, 0);
+        double[] sinLon = trigRange(lonLo, lonHi, Math.PI / 2);
+
+        productRange(cosLatMin, cosLatMax, cosLon[0], cosLon[1], qMin, qMax, 0);
+        productRange(cosLatMin, cosLatMax, sinLon[0], sinLon[1], qMin, qMax, 1);
+        qMin[2] = Math.sin(latLo);
+        qMax[2] = Math.sin(latHi);
+    }
+
+    // rango de cos(t - phase) con t en [lo, hi]: los extremos o los múltiplos de pi que caigan adentro
+    private static double[] trigRange(double lo, double hi, double phase) {
+        double a = Math.cos(lo - phase), b = Math.cos(hi - phase);
+        double min = Math.min(a, b), max = Math.max(a, b);
+        for (long m = (long) Math.ceil((lo - phase) / Math.PI); m * Math.PI <= hi - phase; m++) {
+            if (m % 2 == 0) max = 1; else min = -1;
+        }
+        return new double[] { min, max };
+    }
+
+    private static void productRange(double aMin, double aMax, double bMin, double bMax,
+                                     double[] qMin, double[] qMax, int axis) {
+        double p1 = aMin * bMin, p2 = aMin * bMax, p3 = aMax * bMin, p4 = aMax * bMax;
+        // margen por redondeo: la prueba exacta se hace después con lat/lon
+        qMin[axis] = Math.min(Math.min(p1, p2), Math.min(p3, p4)) - 1e-12;
+        qMax[axis] = Math.max(Math.max(p1, p2), Math.max(p3, p4)) + 1e-12;
+    }
+
+    private static double unitX(double lat, double lon) {
+        return Math.cos(Math.toRadians(lat)) * Math.cos(Math.toRadians(lon));
+    }
+
+    private static double unitY(double lat, double lon) {
+        return Math.cos(Math.toRadians(lat)) * Math.sin(Math.toRadians(lon));
+    }
+
+    private static double unitZ(double lat) {
+        return Math.sin(Math.toRadians(lat));
+    }
+
+    // ---- búsqueda de los k más cercanos ----
+
+    // estado de una búsqueda: montículo de máximos con los k mejores hasta ahora (por distancia²).
+    // Se puede reutilizar para varias consultas seguidas en el mismo hilo.
+    private class Busqueda {
+        final int k;
+        final double[] dist;
+        final int[] ids;
+        int count;
+        int[] stack = new int[64];
+
+        Busqueda(int k) {
+            this.k = Math.min(k, Math.max(1, size()));
+            this.dist = new double[this.k];
+            this.ids = new int[this.k];
+        }
+
+        void run(double lat, double lon) {
+            count = 0;
+            if (size() == 0) return;
+            double qx = unitX(lat, lon), qy = unitY(lat, lon), qz = unitZ(lat);
+
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                if (count == k && boxDistance2(node, qx, qy, qz) >= dist[0]) continue;
+
+                if (nodeLeft[node] < 0) {
+                    for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                        offer(distance2(i, qx, qy, qz), i);
+                    }
+                    continue;
+                }
+
+                // primero el hijo más cercano (queda arriba en la pila)
+                int left = nodeLeft[node], right = nodeRight[node];
+                boolean leftFirst = boxDistance2(left, qx, qy, qz) <= boxDistance2(right, qx, qy, qz);
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = leftFirst ? right : left;
+                stack[top++] = leftFirst ? left : right;
+            }
+        }
+
+        private void offer(double d2, int id) {
+            if (count < k) {
+                // agrego al final y subo
+                int i = count++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (dist[parent] >= d2) break;
+                    dist[i] = dist[parent];
+                    ids[i] = ids[parent];
+                    i = parent;
+                }
+                dist[i] = d2;
+                ids[i] = id;
+            } else if (d2 < dist[0]) {
+                // reemplazo el peor y bajo
+                siftDown(d2, id, count);
+            }
+        }
+
+        private void siftDown(double d2, int id, int n) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) break;
+                if (child + 1 < n && dist[child + 1] > dist[child]) child++;
+                if (dist[child] <= d2) break;
+                dist[i] = dist[child];
+                ids[i] = ids[child];
+                i = child;
+            }
+            dist[i] = d2;
+            ids[i] = id;
+        }
+
+        // vacía el montículo del más lejano al más cercano, llenando los resultados desde el final
+        int drainSorted(int[] outStops, double[] outMeters) {
+            int n = count;
+            for (int last = n - 1; last >= 0; last--) {
+                double d2 = dist[0];
+                int id = ids[0];
+                if (last > 0) siftDown(dist[last], ids[last], last);
+                outStops[last] = stopIndices[id];
+                if (outMeters != null) outMeters[last] = UtilidadesGeo.metersForChord(Math.sqrt(d2));
+            }
+            count = 0;
+            return n;
+        }
+    }
+
+    // parte el lote en tramos de BATCH_CHUNK puntos; cada tramo reutiliza una sola búsqueda
+    private class LoteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] queryLats;
+        private final double[] queryLons;
+        private final int[] outStops;
+        private final double[] outMeters;
+        private final int lo;
+        private final int hi;
+
+        LoteTask(double[] queryLats, double[] queryLons, int[] outStops, double[] outMeters, int lo, int hi) {
+            this.queryLats = queryLats;
+            this.queryLons = queryLons;
+            this.outStops = outStops;
+            this.outMeters = outMeters;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > BATCH_CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new LoteTask(queryLats, queryLons, outStops, outMeters, lo, mid),
+                        new LoteTask(queryLats, queryLons, outStops, outMeters, mid, hi));
+                return;
+            }
+
+            Busqueda search = new Busqueda(1);
+            for (int q = lo; q < hi; q++) {
+                search.run(queryLats[q], queryLons[q]);
+                if (search.count == 0) {
+                    outStops[q] = -1;
+                    if (outMeters != null) outMeters[q] = Double.NaN;
+                    continue;
+                }
+                outStops[q] = stopIndices[search.ids[0]];
+                if (outMeters != null) outMeters[q] = UtilidadesGeo.metersForChord(Math.sqrt(search.dist[0]));
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package mio.service;
+
+import java.util.Arrays;
+
+// Índice espacial de segmentos en una grilla uniforme: cada celda guarda los segmentos cuyo
+// rectángulo la toca (formato CSR). Un punto se guarda como segmento de largo cero.
+// Se arma una sola vez y después solo se consulta, así que sirve para varios hilos a la vez.
+class IndiceSegmentos {
+
+    private final double[] x1;
+    private final double[] y1;
+    private final double[] x2;
+    private final double[] y2;
+
+    // grilla
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int cols;
+    private final int rows;
+    private final int[] cellOffsets; // los segmentos de la celda c están en cellItems[cellOffsets[c] .. cellOffsets[c + 1])
+    private final int[] cellItems;
+
+    // recibe las coordenadas de n segmentos (los arreglos pasan a ser del índice)
+    IndiceSegmentos(double[] x1, double[] y1, double[] x2, double[] y2, int n) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            loX = Math.min(loX, Math.min(x1[i], x2[i]));
+            hiX = Math.max(hiX, Math.max(x1[i], x2[i]));
+            loY = Math.min(loY, Math.min(y1[i], y2[i]));
+            hiY = Math.max(hiY, Math.max(y1[i], y2[i]));
+        }
+        if (n == 0) {
+            loX = loY = 0;
+            hiX = hiY = 1;
+        }
+
+        // más o menos un segmento por celda
+        int side = Math.max(1, (int) Math.ceil(Math.sqrt(n)));
+        this.minX = loX;
+        this.minY = loY;
+        this.cols = side;
+        this.rows = side;
+        this.cellWidth = Math.max(hiX - loX, 1e-12) / cols;
+        this.cellHeight = Math.max(hiY - loY, 1e-12) / rows;
+
+        // primero cuento cuántos segmentos caen en cada celda y después los ubico
+        int[] offsets = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            int c0 = col(Math.min(x1[i], x2[i])), c1 = col(Math.max(x1[i], x2[i]));
+            int r0 = row(Math.min(y1[i], y2[i])), r1 = row(Math.max(y1[i], y2[i]));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    offsets[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+
+        int[] items = new int[offsets[cols * rows]];
+        int[] fill = Arrays.copyOf(offsets, cols * rows);
+        for (int i = 0; i < n; i++) {
+            int c0 = col(Math.min(x1[i], x2[i])), c1 = col(Math.max(x1[i], x2[i]));
+            int r0 = row(Math.min(y1[i], y2[i])), r1 = row(Math.max(y1[i], y2[i]));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    items[fill[r * cols + c]++] = i;
+                }
+            }
+        }
+        this.cellOffsets = offsets;
+        this.cellItems = items;
+    }
+
+    double getX1(int i) {
+        return x1[i];
+    }
+
+    double getY1(int i) {
+        return y1[i];
+    }
+
+    double getX2(int i) {
+        return x2[i];
+    }
+
+    double getY2(int i) {
+        return y2[i];
+    }
+
+    // segmentos que cortan el rectángulo, ordenados y sin repetidos
+    int[] query(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        if (qMaxX < minX || qMaxY < minY
+                || qMinX > minX + cols * cellWidth || qMinY > minY + rows * cellHeight) {
+            return new int[0];
+        }
+
+        int c0 = col(qMinX), c1 = col(qMaxX);
+        int r0 = row(qMinY), r1 = row(qMaxY);
+
+        int[] found = new int[16];
+        int n = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellOffsets[cell]; k < cellOffsets[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (!intersects(i, qMinX, qMinY, qMaxX, qMaxY)) continue;
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = i;
+                }
+            }
+        }
+
+        // un segmento largo puede estar en varias celdas
+        Arrays.sort(found, 0, n);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            if (m == 0 || found[k] != found[m - 1]) found[m++] = found[k];
+        }
+        return Arrays.copyOf(found, m);
+    }
+
+    // prueba exacta segmento-rectángulo (recorte de Liang-Barsky)
+    private boolean intersects(int i, double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        double ax = x1[i], ay = y1[i];
+        double dx = x2[i] - ax, dy = y2[i] - ay;
+
+        double[] t = { 0, 1 };
+        return clip(-dx, ax - qMinX, t)
+                && clip(dx, qMaxX - ax, t)
+                && clip(-dy, ay - qMinY, t)
+                && clip(dy, qMaxY - ay, t);
+    }
+
+    // recorta el intervalo [t[0], t[1]] con el borde p * t <= q; false si queda vacío
+    private static boolean clip(double p, double q, double[] t) {
+        if (p == 0) return q >= 0; // paralelo al borde: adentro o afuera completo
+        double r = q / p;
+        if (p < 0) {
+            if (r > t[1]) return false;
+            if (r > t[0]) t[0] = r;
+        } else {
+            if (r < t[0]) return false;
+            if (r < t[1]) t[1] = r;
+        }
+        return true;
+    }
+
+    private int col(double x) {
+        int c = (int) ((x - minX) / cellWidth);
+        return Math.max(0, Math.min(cols - 1, c));
+    }
+
+    private int row(double y) {
+        int r = (int) ((y - minY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+}
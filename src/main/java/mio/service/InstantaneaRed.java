@@ -0,0 +1,406 @@
+package mio.service;
+
+import mio.model.AlmacenParadas;
+import mio.model.ComponentesRed;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Guarda y abre una instantánea binaria de la red compacta de una versión del plan (PLANVERSIONID).
+// El archivo tiene paradas con coordenadas (los nombres como diccionario y códigos), rutas, secuencias
+// ya ordenadas y la adyacencia CSR, todo como arreglos con su tamaño adelante; al abrirlo se mapea
+// en memoria y se copia en bloque.
+// Cada red que se carga (de la instantánea o de los CSV) pasa por el análisis de conectividad: si hay
+// paradas sumidero o fuente se avisa por la salida de error y, en modo estricto, la versión se rechaza.
+public class InstantaneaRed {
+
+    private static final int MAGIC = 0x4D494F52; // "MIOR"
+    private static final int FORMAT_VERSION = 3; // 2: secuencias por variante, 3: diccionario de nombres
+
+    // la versión del plan va al final del nombre: lines-241.csv, linestops-241.csv, ...
+    private static final Pattern PLAN_VERSION = Pattern.compile("-(\\d+)\\.[^.]+$");
+
+    private final CargadorConcurrente csvLoader = new CargadorConcurrente();
+    private final AnalizadorComponentes connectivity = new AnalizadorComponentes();
+    private final boolean strictConnectivity;
+
+    public InstantaneaRed() {
+        this(false);
+    }
+
+    // strictConnectivity: rechazar (RedRechazadaException) las versiones con paradas sumidero o fuente
+    public InstantaneaRed(boolean strictConnectivity) {
+        this.strictConnectivity = strictConnectivity;
+    }
+
+    // red cargada junto con el análisis de conectividad que se le hizo al cargarla
+    public static final class Carga {
+        private final RedCompacta network;
+        private final ComponentesRed connectivity;
+
+        Carga(RedCompacta network, ComponentesRed connectivity) {
+            this.network = network;
+            this.connectivity = connectivity;
+        }
+
+        public RedCompacta getNetwork() {
+            return network;
+        }
+
+        public ComponentesRed getConnectivity() {
+            return connectivity;
+        }
+    }
+
+    // retorna la red de la instantánea si está al día; si no, carga los CSV y guarda una instantánea nueva
+    public RedCompacta loadOrBuild(Path linesCsvPath, Path stopsCsvPath, Path lineStopsCsvPath, Path snapshotDir)
+            throws IOException {
+        return load(linesCsvPath, stopsCsvPath, lineStopsCsvPath, snapshotDir).getNetwork();
+    }
+
+    // igual que loadOrBuild, pero también retorna el resultado de la compuerta de conectividad
+    public Carga load(Path linesCsvPath, Path stopsCsvPath, Path lineStopsCsvPath, Path snapshotDir)
+            throws IOException {
+
+        MetricasProceso.Medicion load = MetricasProceso.get().startAcrossThreads(MetricasProceso.CARGA);
+        int planVersion = planVersionOf(lineStopsCsvPath);
+        Path snapshot = snapshotPath(snapshotDir, planVersion);
+
+        RedCompacta network = null;
+        if (isFresh(snapshot, linesCsvPath, stopsCsvPath, lineStopsCsvPath)) {
+            try {
+                network = read(snapshot, planVersion);
+            } catch (IOException e) {
+                // instantánea dañada o de otro formato: vuelvo a los CSV
+                System.err.println("Instantánea inválida (" + e.getMessage() + "), se cargan los CSV");
+            }
+        }
+
+        boolean fromCsv = network == null;
+        if (fromCsv) {
+            network = csvLoader.loadAll(linesCsvPath, stopsCsvPath, lineStopsCsvPath).getNetwork();
+        }
+        // antes de guardar: una versión rechazada no deja instantánea
+        ComponentesRed components = checkConnectivity(network, planVersion);
+        if (fromCsv) write(network, planVersion, snapshot);
+        load.stop(network.getPositionCount());
+        return new Carga(network, components);
+    }
+
+    // compuerta de cada carga: avisa si hay callejones sin salida y, en modo estricto, rechaza la versión
+    public ComponentesRed checkConnectivity(RedCompacta network, int planVersion) throws RedRechazadaException {
+        ComponentesRed components = connectivity.analyze(network);
+        if (components.hasDeadEnds()) {
+            RedRechazadaException rejection = new RedRechazadaException(planVersion, components);
+            if (strictConnectivity) throw rejection;
+            System.err.println(rejection.getMessage());
+        }
+        return components;
+    }
+
+    // PLANVERSIONID a partir del sufijo del nombre del archivo
+    public static int planVersionOf(Path csvPath) {
+        Matcher m = PLAN_VERSION.matcher(csvPath.getFileName().toString());
+        if (!m.find()) {
+            throw new IllegalArgumentException("El archivo no indica la versión del plan: " + csvPath);
+        }
+        return Integer.parseInt(m.group(1));
+    }
+
+    public static Path snapshotPath(Path snapshotDir, int planVersion) {
+        return snapshotDir.resolve("red-" + planVersion + ".bin");
+    }
+
+    // la instantánea sirve si existe y es más nueva que todos los archivos fuente
+    public boolean isFresh(Path snapshot, Path... sources) throws IOException {
+        if (Files.notExists(snapshot)) return false;
+
+        FileTime snapshotTime = Files.getLastModifiedTime(snapshot);
+        for (Path source : sources) {
+            if (Files.getLastModifiedTime(source).compareTo(snapshotTime) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(RedCompacta red, int planVersion, Path snapshot) throws IOException {
+        int nStops = red.getStopCount();
+        int nRoutes = red.getRouteCount();
+        int nLines = red.getLineCount();
+        int nSeq = red.getSequenceCount();
+        int nPos = red.getPositionCount();
+        int nArcs = red.getArcCount();
+
+        // paso todo a arreglos planos antes de calcular el tamaño; los nombres van como diccionario
+        AlmacenParadas stops = red.getStops();
+        int[] stopIds = new int[nStops];
+        int[] shortCodes = new int[nStops];
+        int[] longCodes = new int[nStops];
+        double[] lats = new double[nStops];
+        double[] lons = new double[nStops];
+        for (int i = 0; i < nStops; i++) {
+            stopIds[i] = stops.getStopId(i);
+            shortCodes[i] = stops.getShortNameCode(i);
+            longCodes[i] = stops.getLongNameCode(i);
+            lats[i] = stops.getLat(i);
+            lons[i] = stops.getLon(i);
+        }
+        String[] names = new String[stops.getNameCount()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = stops.getName(c);
+        }
+
+        int[] routeLineIds = new int[nRoutes];
+        String[] routeShortNames = new String[nRoutes];
+        String[] routeDescriptions = new String[nRoutes];
+        for (int i = 0; i < nRoutes; i++) {
+            Ruta route = red.getRouteAt(i);
+            routeLineIds[i] = route.getLineId();
+            routeShortNames[i] = route.getShortName();
+            routeDescriptions[i] = route.getDescription();
+        }
+
+        int[] lineIds = new int[nLines];
+        int[] lineSeqOffsets = new int[nLines + 1];
+        for (int l = 0; l < nLines; l++) {
+            lineIds[l] = red.getLineId(l);
+            lineSeqOffsets[l] = red.getLineFirstSequence(l);
+        }
+        lineSeqOffsets[nLines] = nSeq;
+
+        int[] seqLineIds = new int[nSeq];
+        int[] seqOrientations = new int[nSeq];
+        int[] seqVariants = new int[nSeq];
+        int[] seqOffsets = new int[nSeq + 1];
+        for (int s = 0; s < nSeq; s++) {
+            seqLineIds[s] = red.getSequenceLineId(s);
+            seqOrientations[s] = red.getSequenceOrientation(s);
+            seqVariants[s] = red.getSequenceVariant(s);
+            seqOffsets[s] = red.getSequenceStart(s);
+        }
+        seqOffsets[nSeq] = nPos;
+
+        int[] seqStopIds = new int[nPos];
+        int[] seqStopIndices = new int[nPos];
+        for (int p = 0; p < nPos; p++) {
+            seqStopIds[p] = red.getPositionStopId(p);
+            seqStopIndices[p] = red.getPositionStopIndex(p);
+        }
+
+        int[] adjOffsets = new int[nStops + 1];
+        int[] adjTargets = new int[nArcs];
+        for (int i = 0; i < nStops; i++) {
+            adjOffsets[i] = red.getArcsStart(i);
+        }
+        adjOffsets[nStops] = nArcs;
+        for (int a = 0; a < nArcs; a++) {
+            adjTargets[a] = red.getArcTarget(a);
+        }
+
+        byte[][] encodedNames = encode(names);
+        byte[][] encodedRouteShort = encode(routeShortNames);
+        byte[][] encodedRouteDesc = encode(routeDescriptions);
+
+        long size = 3 * 4L
+                + intsSize(stopIds) + stringsSize(encodedNames) + intsSize(shortCodes) + intsSize(longCodes)
+                + doublesSize(lats) + doublesSize(lons)
+                + intsSize(routeLineIds) + stringsSize(encodedRouteShort) + stringsSize(encodedRouteDesc)
+                + intsSize(lineIds) + intsSize(lineSeqOffsets)
+                + intsSize(seqLineIds) + intsSize(seqOrientations) + intsSize(seqVariants) + intsSize(seqOffsets)
+                + intsSize(seqStopIds) + intsSize(seqStopIndices)
+                + intsSize(adjOffsets) + intsSize(adjTargets);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("La red es demasiado grande para una instantánea: " + size + " bytes");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(planVersion);
+        putInts(buf, stopIds);
+        putStrings(buf, encodedNames);
+        putInts(buf, shortCodes);
+        putInts(buf, longCodes);
+        putDoubles(buf, lats);
+        putDoubles(buf, lons);
+        putInts(buf, routeLineIds);
+        putStrings(buf, encodedRouteShort);
+        putStrings(buf, encodedRouteDesc);
+        putInts(buf, lineIds);
+        putInts(buf, lineSeqOffsets);
+        putInts(buf, seqLineIds);
+        putInts(buf, seqOrientations);
+        putInts(buf, seqVariants);
+        putInts(buf, seqOffsets);
+        putInts(buf, seqStopIds);
+        putInts(buf, seqStopIndices);
+        putInts(buf, adjOffsets);
+        putInts(buf, adjTargets);
+        buf.flip();
+
+        // escribo en un temporal y lo muevo, para no dejar una instantánea a medias
+        Path dir = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public RedCompacta read(Path snapshot, int expectedPlanVersion) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buf.remaining() < 12 || buf.getInt() != MAGIC) {
+                throw new IOException("No es una instantánea de red: " + snapshot);
+            }
+            int format = buf.getInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Formato de instantánea " + format + ", se esperaba " + FORMAT_VERSION);
+            }
+            int planVersion = buf.getInt();
+            if (planVersion != expectedPlanVersion) {
+                throw new IOException("La instantánea es del plan " + planVersion + ", no del " + expectedPlanVersion);
+            }
+
+            try {
+                int[] stopIds = getInts(buf);
+                String[] names = getStrings(buf);
+                int[] shortCodes = getInts(buf);
+                int[] longCodes = getInts(buf);
+                double[] lats = getDoubles(buf);
+                double[] lons = getDoubles(buf);
+                for (int i = 0; i < stopIds.length; i++) {
+                    if (shortCodes[i] >= names.length || longCodes[i] >= names.length) {
+                        throw new IOException("Código de nombre fuera del diccionario: " + snapshot);
+                    }
+                }
+                AlmacenParadas stops = new AlmacenParadas(stopIds, lats, lons, shortCodes, longCodes, names);
+
+                int[] routeLineIds = getInts(buf);
+                String[] routeShortNames = getStrings(buf);
+                String[] routeDescriptions = getStrings(buf);
+                Ruta[] routes = new Ruta[routeLineIds.length];
+                for (int i = 0; i < routes.length; i++) {
+                    routes[i] = new Ruta(routeLineIds[i], routeShortNames[i], routeDescriptions[i]);
+                }
+
+                int[] lineIds = getInts(buf);
+                int[] lineSeqOffsets = getInts(buf);
+                int[] seqLineIds = getInts(buf);
+                int[] seqOrientations = getInts(buf);
+                int[] seqVariants = getInts(buf);
+                int[] seqOffsets = getInts(buf);
+                int[] seqStopIds = getInts(buf);
+                int[] seqStopIndices = getInts(buf);
+                int[] adjOffsets = getInts(buf);
+                int[] adjTargets = getInts(buf);
+
+                return new RedCompacta(
+                        stops,
+                        routeLineIds, routes,
+                        lineIds, lineSeqOffsets,
+                        seqLineIds, seqOrientations, seqVariants, seqOffsets,
+                        seqStopIds, seqStopIndices,
+                        adjOffsets, adjTargets
+                );
+            } catch (RuntimeException e) {
+                // BufferUnderflowException, tamaños negativos, etc.
+                throw new IOException("Instantánea incompleta: " + snapshot, e);
+            }
+        }
+    }
+
+    // ---- formato: cada arreglo lleva su tamaño (int) adelante ----
+
+    private static long intsSize(int[] values) {
+        return 4L + 4L * values.length;
+    }
+
+    private static long doublesSize(double[] values) {
+        return 4L + 8L * values.length;
+    }
+
+    private static long stringsSize(byte[][] values) {
+        long size = 4;
+        for (byte[] v : values) {
+            size += 4 + (v != null ? v.length : 0);
+        }
+        return size;
+    }
+
+    private static void putInts(ByteBuffer buf, int[] values) {
+        buf.putInt(values.length);
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    private static void putDoubles(ByteBuffer buf, double[] values) {
+        buf.putInt(values.length);
+        buf.asDoubleBuffer().put(values);
+        buf.position(buf.position() + 8 * values.length);
+    }
+
+    private static void putStrings(ByteBuffer buf, byte[][] values) {
+        buf.putInt(values.length);
+        for (byte[] v : values) {
+            if (v == null) {
+                buf.putInt(-1); // null
+            } else {
+                buf.putInt(v.length);
+                buf.put(v);
+            }
+        }
+    }
+
+    private static int[] getInts(ByteBuffer buf) {
+        int[] values = new int[buf.getInt()];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * values.length);
+        return values;
+    }
+
+    private static double[] getDoubles(ByteBuffer buf) {
+        double[] values = new double[buf.getInt()];
+        buf.asDoubleBuffer().get(values);
+        buf.position(buf.position() + 8 * values.length);
+        return values;
+    }
+
+    private static String[] getStrings(ByteBuffer buf) {
+        String[] values = new String[buf.getInt()];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < values.length; i++) {
+            int len = buf.getInt();
+            if (len < 0) continue;
+            if (scratch.length < len) scratch = new byte[len];
+            buf.get(scratch, 0, len);
+            values[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static byte[][] encode(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i] != null ? values[i].getBytes(StandardCharsets.UTF_8) : null;
+        }
+        return encoded;
+    }
+}
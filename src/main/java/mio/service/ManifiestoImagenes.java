@@ -0,0 +1,70 @@
+package mio.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Manifiesto de una carpeta de imágenes: archivo -> hash del contenido con que se generó.
+// Se guarda como "manifiesto.txt" (una línea "hash archivo" por imagen) junto a las imágenes.
+class ManifiestoImagenes {
+
+    static final String FILE_NAME = "manifiesto.txt";
+
+    private final Map<String, Long> hashByFile = new TreeMap<>();
+
+    // lee el manifiesto de la carpeta; si no existe o está dañado retorna uno vacío
+    static ManifiestoImagenes load(Path dir) {
+        ManifiestoImagenes manifest = new ManifiestoImagenes();
+        Path file = dir.resolve(FILE_NAME);
+        if (Files.notExists(file)) return manifest;
+
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int sep = line.indexOf(' ');
+                if (sep <= 0) continue;
+                manifest.hashByFile.put(line.substring(sep + 1), Long.parseUnsignedLong(line.substring(0, sep), 16));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // sin manifiesto válido se regenera todo
+            manifest.hashByFile.clear();
+        }
+        return manifest;
+    }
+
+    void put(String fileName, long hash) {
+        hashByFile.put(fileName, hash);
+    }
+
+    boolean contains(String fileName) {
+        return hashByFile.containsKey(fileName);
+    }
+
+    boolean matches(String fileName, long hash) {
+        Long previous = hashByFile.get(fileName);
+        return previous != null && previous == hash;
+    }
+
+    Set<String> files() {
+        return hashByFile.keySet();
+    }
+
+    // escribo en un temporal y lo muevo, para que un corte no deje el manifiesto a medias
+    void save(Path dir) throws IOException {
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : hashByFile.entrySet()) {
+                bw.write(String.format("%016x %s", entry.getValue(), entry.getKey()));
+                bw.newLine();
+            }
+        }
+        Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,103 @@
+package mio.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Acumulados de una fase: ejecuciones, tiempo, items, bytes asignados e histograma de latencias
+public class MetricasFase implements MetricasFaseMBean {
+
+    private final String name;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final HistogramaLatencias latencies = new HistogramaLatencias();
+    private final boolean allocationSupported;
+    private volatile boolean allocatedAcrossThreads;
+
+    MetricasFase(String name, boolean allocationSupported) {
+        this.name = name;
+        this.allocationSupported = allocationSupported;
+    }
+
+    void record(long elapsedNanos, long itemCount, long allocated, boolean acrossThreads) {
+        if (acrossThreads) allocatedAcrossThreads = true;
+        runs.increment();
+        nanos.add(elapsedNanos);
+        items.add(itemCount);
+        allocatedBytes.add(allocated);
+        latencies.record(elapsedNanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return nanos.sum() / 1e6;
+    }
+
+    @Override
+    public long getItems() {
+        return items.sum();
+    }
+
+    @Override
+    public double getItemsPerSecond() {
+        long n = nanos.sum();
+        return n > 0 ? items.sum() * 1e9 / n : 0;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocationSupported ? allocatedBytes.sum() : -1;
+    }
+
+    @Override
+    public String getAllocatedThreads() {
+        return allocatedAcrossThreads ? "all" : "measuring";
+    }
+
+    public HistogramaLatencias getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latencies.percentileMicros(0.50);
+    }
+
+    @Override
+    public long getLatencyP90Micros() {
+        return latencies.percentileMicros(0.90);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latencies.percentileMicros(0.99);
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latencies.getMaxMicros();
+    }
+
+    @Override
+    public void reset() {
+        runs.reset();
+        nanos.reset();
+        items.reset();
+        allocatedBytes.reset();
+        latencies.reset();
+    }
+}
@@ -0,0 +1,36 @@
+package mio.service;
+
+// Lo que se ve por JMX de una fase del proceso (mio:type=Fase,name=...)
+public interface MetricasFaseMBean {
+
+    String getName();
+
+    // veces que se ejecutó la fase (un archivo, un bloque, una imagen...)
+    long getRuns();
+
+    // tiempo sumando todas las ejecuciones (si corren en varios hilos, suma los hilos)
+    double getTotalMillis();
+
+    // filas, arcos o imágenes procesados
+    long getItems();
+
+    // items por segundo de trabajo de la fase
+    double getItemsPerSecond();
+
+    // bytes asignados en el heap por los hilos mientras hacían la fase (-1 si la JVM no lo mide)
+    long getAllocatedBytes();
+
+    // de qué hilos son los bytes asignados: "measuring" (solo el hilo que mide cada ejecución) o
+    // "all" (todos los hilos, en las fases que reparten el trabajo en un pool)
+    String getAllocatedThreads();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP90Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,269 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+// Métricas por fase del proceso (carga, parseo, agrupación, ordenamiento, conectividad, arcos, corredores,
+// centralidad, dibujo, codificación).
+// Hay un registro por JVM: las clases que hacen el trabajo miden con start(fase) ... stop(items)
+// en el mismo hilo, cada fase queda publicada por JMX y al final se escribe un reporte JSON.
+public final class MetricasProceso {
+
+    public static final String CARGA = "carga";
+    public static final String PARSEO = "parseo";
+    public static final String AGRUPACION = "agrupacion";
+    public static final String ORDENAMIENTO = "ordenamiento";
+    public static final String ADYACENCIA = "adyacencia";
+    public static final String CONECTIVIDAD = "conectividad";
+    public static final String ARCOS = "arcos";
+    public static final String DIBUJO = "dibujo";
+    public static final String DIBUJO_COMPLETO = "dibujoCompleto";
+    public static final String CODIFICACION = "codificacion";
+    public static final String CORREDORES = "corredores";
+    public static final String CENTRALIDAD = "centralidad";
+
+    private static final MetricasProceso INSTANCE = new MetricasProceso();
+
+    // la versión de com.sun.management mide bytes asignados por hilo; si no está, no se reportan
+    private final com.sun.management.ThreadMXBean allocationBean;
+    private final Map<String, MetricasFase> phases = new LinkedHashMap<>();
+    // hilos de threadFactory que terminaron, y lo que asignaron en total
+    private final Set<Long> finishedThreads = ConcurrentHashMap.newKeySet();
+    private final LongAdder finishedThreadsAllocated = new LongAdder();
+
+    private MetricasProceso() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean bean = null;
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            bean = (com.sun.management.ThreadMXBean) threads;
+            if (!bean.isThreadAllocatedMemorySupported()) {
+                bean = null;
+            } else if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        this.allocationBean = bean;
+
+        // las fases del proceso por lotes aparecen aunque esta ejecución no pase por alguna
+        for (String name : new String[] {CARGA, PARSEO, AGRUPACION, ORDENAMIENTO, ADYACENCIA, CONECTIVIDAD,
+                ARCOS, CORREDORES, CENTRALIDAD, DIBUJO, DIBUJO_COMPLETO, CODIFICACION}) {
+            phase(name);
+        }
+    }
+
+    public static MetricasProceso get() {
+        return INSTANCE;
+    }
+
+    // la fase con ese nombre; la primera vez se crea y se registra en JMX
+    public MetricasFase phase(String name) {
+        synchronized (phases) {
+            MetricasFase phase = phases.get(name);
+            if (phase == null) {
+                phase = new MetricasFase(name, allocationBean != null);
+                phases.put(name, phase);
+                register(phase);
+            }
+            return phase;
+        }
+    }
+
+    public List<MetricasFase> phases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases.values());
+        }
+    }
+
+    // empieza a medir una ejecución de la fase en el hilo actual
+    public Medicion start(String phase) {
+        return new Medicion(phase(phase), allocatedBytes(), null, System.nanoTime());
+    }
+
+    // igual que start, para una fase que reparte su trabajo en otros hilos (fork/join, tareas
+    // asíncronas): los bytes asignados son los de todos los hilos, no solo los del que mide. También
+    // cuenta lo que asignen al mismo tiempo otros hilos ajenos a la fase. Un hilo que termina antes
+    // de stop() ya no aparece en ThreadMXBean: solo se cuenta si lo creó threadFactory
+    public Medicion startAcrossThreads(String phase) {
+        return new Medicion(phase(phase), finishedThreadsAllocated.sum(), allThreadsAllocated(), System.nanoTime());
+    }
+
+    // fábrica de hilos daemon para los pools de corta vida que usan las fases: cada hilo, al terminar,
+    // deja anotado lo que asignó para las mediciones de startAcrossThreads
+    public ThreadFactory threadFactory(String name) {
+        return task -> {
+            Thread t = new Thread(() -> {
+                long start = allocatedBytes();
+                try {
+                    task.run();
+                } finally {
+                    finishedThreads.add(Thread.currentThread().getId());
+                    finishedThreadsAllocated.add(allocatedBytes() - start);
+                }
+            }, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private long allocatedBytes() {
+        return allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    // {ids de los hilos vivos ordenados, bytes asignados por cada uno}
+    private long[][] allThreadsAllocated() {
+        if (allocationBean == null) return new long[][] {new long[0], new long[0]};
+        long[] ids = allocationBean.getAllThreadIds();
+        Arrays.sort(ids);
+        return new long[][] {ids, allocationBean.getThreadAllocatedBytes(ids)};
+    }
+
+    // bytes asignados por todos los hilos desde start; un hilo nuevo cuenta todo lo que asignó, y
+    // los hilos de threadFactory que ya terminaron cuentan por lo que anotaron
+    private long allocatedSince(long[][] start, long startFinished) {
+        long[][] now = allThreadsAllocated();
+        long sum = finishedThreadsAllocated.sum() - startFinished;
+        for (int i = 0; i < now[0].length; i++) {
+            if (now[1][i] < 0) continue; // el hilo terminó mientras se leía
+            if (finishedThreads.contains(now[0][i])) continue; // ya está en finishedThreadsAllocated
+            int k = Arrays.binarySearch(start[0], now[0][i]);
+            long before = k >= 0 ? Math.max(0, start[1][k]) : 0;
+            sum += now[1][i] - before;
+        }
+        // los ids no se reutilizan: los hilos que ya no están no hace falta recordarlos
+        finishedThreads.removeIf(id -> Arrays.binarySearch(now[0], id) < 0);
+        return sum;
+    }
+
+    private void register(MetricasFase phase) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("mio:type=Fase,name=" + ObjectName.quote(phase.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(phase, name);
+            }
+        } catch (JMException | SecurityException e) {
+            // sin JMX las métricas igual quedan en el reporte
+            System.err.println("No se pudo registrar la fase " + phase.getName() + " en JMX: " + e.getMessage());
+        }
+    }
+
+    // Escribe el reporte de la ejecución: una entrada por fase y datos de la JVM para dimensionar
+    // la máquina (procesadores, heap, recolector y tiempo de CPU del proceso)
+    public void writeReport(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        try (EscritorBytes out = EscritorBytes.open(file)) {
+            Runtime runtime = Runtime.getRuntime();
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+            out.write("{").newLine();
+            out.write("  \"finishedAt\": ");
+            SumideroJsonLines.writeString(out, Instant.now().toString());
+            out.write(",").newLine();
+            out.write("  \"uptimeMillis\": ").write(ManagementFactory.getRuntimeMXBean().getUptime()).write(",").newLine();
+            out.write("  \"processCpuMillis\": ").write(processCpuNanos() / 1_000_000).write(",").newLine();
+            out.write("  \"jvm\": {\"version\": ");
+            SumideroJsonLines.writeString(out, System.getProperty("java.version"));
+            out.write(", \"processors\": ").write(runtime.availableProcessors())
+                    .write(", \"maxHeapBytes\": ").write(runtime.maxMemory())
+                    .write(", \"heapUsedBytes\": ").write(heap.getUsed())
+                    .write(", \"heapCommittedBytes\": ").write(heap.getCommitted())
+                    .write(", \"gcCount\": ").write(gcCount())
+                    .write(", \"gcMillis\": ").write(gcMillis()).write("},").newLine();
+
+            out.write("  \"phases\": [");
+            List<MetricasFase> all = phases();
+            for (int i = 0; i < all.size(); i++) {
+                MetricasFase p = all.get(i);
+                out.write(i > 0 ? "," : "").newLine();
+                out.write("    {\"name\": ");
+                SumideroJsonLines.writeString(out, p.getName());
+                out.write(", \"runs\": ").write(p.getRuns())
+                        .write(", \"totalMillis\": ").write(Math.round(p.getTotalMillis() * 1000) / 1000.0)
+                        .write(", \"items\": ").write(p.getItems())
+                        .write(", \"itemsPerSecond\": ").write(Math.round(p.getItemsPerSecond() * 10) / 10.0)
+                        .write(", \"allocatedBytes\": ").write(p.getAllocatedBytes())
+                        .write(", \"allocatedThreads\": ");
+                SumideroJsonLines.writeString(out, p.getAllocatedThreads());
+                out.write(", \"latencyMicros\": {\"p50\": ").write(p.getLatencyP50Micros())
+                        .write(", \"p90\": ").write(p.getLatencyP90Micros())
+                        .write(", \"p99\": ").write(p.getLatencyP99Micros())
+                        .write(", \"max\": ").write(p.getLatencyMaxMicros()).write("}}");
+            }
+            out.newLine().write("  ]").newLine();
+            out.write("}").newLine();
+        }
+    }
+
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionCount());
+        }
+        return n;
+    }
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return ms;
+    }
+
+    // Una ejecución de una fase en curso. Con start(), stop() tiene que llamarse en el mismo hilo
+    // para que los bytes asignados sean los de ese hilo
+    public final class Medicion {
+        private final MetricasFase phase;
+        private final long startAllocated;      // del hilo que mide, o de los hilos terminados (startAllThreads)
+        private final long[][] startAllThreads; // null: solo el hilo que mide
+        private final long startNanos;
+
+        private Medicion(MetricasFase phase, long startAllocated, long[][] startAllThreads, long startNanos) {
+            this.phase = phase;
+            this.startAllocated = startAllocated;
+            this.startAllThreads = startAllThreads;
+            this.startNanos = startNanos;
+        }
+
+        // termina la medición; retorna los nanosegundos que duró
+        public long stop(long items) {
+            long elapsed = System.nanoTime() - startNanos;
+            if (startAllThreads != null) {
+                phase.record(elapsed, items, allocatedSince(startAllThreads, startAllocated), true);
+            } else {
+                phase.record(elapsed, items, allocatedBytes() - startAllocated, false);
+            }
+            return elapsed;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package mio.service;
+
+import mio.model.RedCompacta;
+import mio.model.Viaje;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Motor de rutas por rondas estilo RAPTOR sobre las secuencias de la red (ruta + orientación + variante).
+// En vez de horarios usa distancias: la ronda k guarda la menor distancia a cada parada usando
+// k rutas (k - 1 transbordos), recorriendo solo las secuencias que pasan por paradas que
+// mejoraron en la ronda anterior. Las secuencias se recorren en el orden de la red, que ya está
+// agrupado por ruta, así el recorrido es sobre arreglos contiguos. El resultado es el conjunto
+// Pareto de viajes: por cada número de tramos, el más corto si es mejor que los de menos tramos.
+// Cada tramo es una secuencia, así que cambiar de orientación o variante en la misma ruta gasta una ronda
+// aunque en el Viaje no cuenta como transbordo.
+public class MotorRaptor {
+
+    // a partir de cuántas secuencias por ronda vale la pena repartirlas entre hilos
+    private static final int PARALLEL_MIN_ROUTES = 256;
+    private static final int ROUTES_PER_TASK = 64;
+
+    private final RedCompacta red;
+    private final PosicionesRed positions;
+    private final int maxRounds;
+
+    // maxTransfers: cambios de secuencia permitidos (rondas = maxTransfers + 1)
+    public MotorRaptor(RedCompacta red, int maxTransfers) {
+        if (maxTransfers < 0) throw new IllegalArgumentException("Transbordos negativos: " + maxTransfers);
+        this.red = red;
+        this.positions = new PosicionesRed(red);
+        this.maxRounds = maxTransfers + 1;
+    }
+
+    public RedCompacta getNetwork() {
+        return red;
+    }
+
+    // estado de búsqueda para un hilo; con pool != null las rondas grandes se recorren en paralelo
+    public Sesion newSession(ForkJoinPool pool) {
+        return new Sesion(pool);
+    }
+
+    public Sesion newSession() {
+        return new Sesion(null);
+    }
+
+    // Búsquedas de un solo hilo (que puede repartir cada ronda en el pool). Los arreglos se
+    // reutilizan entre consultas: una marca de consulta dice si un valor es de la consulta actual.
+    public class Sesion {
+        private final ForkJoinPool pool;
+
+        // etiquetas por ronda: distancia, posición donde se subió y posición donde se llegó
+        private final double[][] label;
+        private final int[][] boardPos;
+        private final int[][] arrivePos;
+        private final int[][] labelStamp;
+        private final double[] best; // mejor distancia en cualquier ronda
+        private final int[] bestStamp;
+
+        // paradas que mejoraron en la ronda anterior
+        private int[] marked;
+        private int markedCount;
+        private final int[] markedStamp; // ronda + consulta en que se marcó
+
+        // secuencias a recorrer en esta ronda y primera posición marcada de cada una
+        private final int[] routes;
+        private int routeCount;
+        private final int[] firstPos;
+        private final int[] routeStamp;
+
+        private int query;
+        private int stampBase;
+
+        private Sesion(ForkJoinPool pool) {
+            this.pool = pool;
+            int nStops = red.getStopCount();
+            label = new double[maxRounds + 1][nStops];
+            boardPos = new int[maxRounds + 1][nStops];
+            arrivePos = new int[maxRounds + 1][nStops];
+            labelStamp = new int[maxRounds + 1][nStops];
+            best = new double[nStops];
+            bestStamp = new int[nStops];
+            marked = new int[Math.max(16, nStops)];
+            markedStamp = new int[nStops];
+            routes = new int[red.getSequenceCount()];
+            firstPos = new int[red.getSequenceCount()];
+            routeStamp = new int[red.getSequenceCount()];
+        }
+
+        // conjunto Pareto (tramos, distancia) entre dos paradas por stopId, de menos a más tramos
+        public List<Viaje> search(int fromStopId, int toStopId) {
+            int from = red.indexOfStop(fromStopId);
+            int to = red.indexOfStop(toStopId);
+            if (from < 0 || to < 0) {
+                throw new IllegalArgumentException("Parada desconocida: " + (from < 0 ? fromStopId : toStopId));
+            }
+            return searchByIndex(from, to);
+        }
+
+        public List<Viaje> searchByIndex(int from, int to) {
+            if (from == to) return sameStop(from);
+            startQuery();
+            setLabel(0, from, 0, -1, -1);
+            markedCount = 0;
+            mark(0, from);
+
+            List<Viaje> pareto = new ArrayList<>();
+            double bestAtTarget = Double.POSITIVE_INFINITY;
+
+            for (int k = 1; k <= maxRounds && markedCount > 0; k++) {
+                collectRoutes(k - 1);
+                markedCount = 0;
+
+                if (pool != null && routeCount >= PARALLEL_MIN_ROUTES) {
+                    scanParallel(k, to);
+                } else {
+                    for (int i = 0; i < routeCount; i++) {
+                        scanRoute(k, routes[i], to, null);
+                    }
+                }
+
+                // viaje de k tramos si mejora a los de menos tramos
+                if (hasLabel(k, to) && label[k][to] < bestAtTarget) {
+                    bestAtTarget = label[k][to];
+                    pareto.add(buildJourney(k, to));
+                }
+            }
+            return pareto;
+        }
+
+        // origen = destino: un viaje de cero tramos, como el de PlanificadorViajes (con la ruta de la
+        // primera posición de la parada); ninguno si ninguna secuencia pasa por la parada
+        private List<Viaje> sameStop(int stop) {
+            List<Viaje> pareto = new ArrayList<>(1);
+            int first = positions.stopPosOffsets[stop];
+            if (first < positions.stopPosOffsets[stop + 1]) {
+                int line = positions.positionLine[positions.stopPositions[first]];
+                pareto.add(new Viaje(new int[]{red.getStopId(stop)}, new int[]{line}, 0, 0, 0));
+            }
+            return pareto;
+        }
+
+        // ---- rondas ----
+
+        private void startQuery() {
+            // cada consulta usa maxRounds + 1 marcas seguidas (una por ronda) para markedStamp
+            stampBase += maxRounds + 2;
+            query++;
+            if (stampBase > Integer.MAX_VALUE - 2 * (maxRounds + 2) || query == Integer.MAX_VALUE) {
+                for (int[] stamps : labelStamp) Arrays.fill(stamps, 0);
+                Arrays.fill(bestStamp, 0);
+                Arrays.fill(markedStamp, 0);
+                Arrays.fill(routeStamp, 0);
+                stampBase = maxRounds + 2;
+                query = 1;
+            }
+        }
+
+        // secuencias que pasan por las paradas marcadas, con la primera posición marcada de cada una
+        private void collectRoutes(int round) {
+            routeCount = 0;
+            int stamp = stampBase + round;
+            for (int m = 0; m < markedCount; m++) {
+                int stop = marked[m];
+                for (int k = positions.stopPosOffsets[stop]; k < positions.stopPosOffsets[stop + 1]; k++) {
+                    int p = positions.stopPositions[k];
+                    int s = positions.positionSeq[p];
+                    if (routeStamp[s] != stamp) {
+                        routeStamp[s] = stamp;
+                        firstPos[s] = p;
+                        routes[routeCount++] = s;
+                    } else if (p < firstPos[s]) {
+                        firstPos[s] = p;
+                    }
+                }
+            }
+            // en orden de secuencia para recorrer la red de corrido
+            Arrays.sort(routes, 0, routeCount);
+        }
+
+        // recorre la secuencia s desde su primera posición marcada. Se lleva la distancia de subida
+        // más baja hasta ahora; en cada parada primero se intenta bajar y después subir.
+        // Con out != null (recorrido en paralelo) las mejoras se anotan ahí en vez de escribirse.
+        private void scanRoute(int k, int s, int target, Mejoras out) {
+            int end = red.getSequenceEnd(s);
+            boolean onBoard = false;
+            double carried = 0;
+            int boardedAt = -1;
+
+            for (int p = firstPos[s]; p < end; p++) {
+                int stop = red.getPositionStopIndex(p);
+                if (stop < 0) {
+                    onBoard = false; // parada sin coordenadas: no se puede seguir
+                    continue;
+                }
+
+                if (onBoard && carried < bestOf(stop) && carried < bestOf(target)) {
+                    if (out != null) {
+                        out.add(stop, carried, boardedAt, p);
+                    } else {
+                        setLabel(k, stop, carried, boardedAt, p);
+                        mark(k, stop);
+                    }
+                }
+
+                double boarding = labelBefore(k, stop);
+                if (boarding < Double.POSITIVE_INFINITY && (!onBoard || boarding < carried)) {
+                    onBoard = true;
+                    carried = boarding;
+                    boardedAt = p;
+                }
+
+                if (onBoard) {
+                    double ride = positions.rideMeters[p];
+                    if (ride < 0) {
+                        onBoard = false;
+                    } else {
+                        carried += ride;
+                    }
+                }
+            }
+        }
+
+        // reparte las secuencias de la ronda en tareas; cada una anota sus mejoras y después
+        // se aplican en este hilo quedándose con la menor por parada
+        private void scanParallel(int k, int target) {
+            int nTasks = (routeCount + ROUTES_PER_TASK - 1) / ROUTES_PER_TASK;
+            Mejoras[] results = new Mejoras[nTasks];
+            pool.invoke(new RondaTask(k, target, results, 0, nTasks));
+
+            for (Mejoras result : results) {
+                for (int i = 0; i < result.count; i++) {
+                    int stop = result.stops[i];
+                    double d = result.dist[i];
+                    if (d < bestOf(stop) && d < bestOf(target)) {
+                        setLabel(k, stop, d, result.board[i], result.arrive[i]);
+                        mark(k, stop);
+                    }
+                }
+            }
+        }
+
+        private void setLabel(int k, int stop, double d, int board, int arrive) {
+            labelStamp[k][stop] = query;
+            label[k][stop] = d;
+            boardPos[k][stop] = board;
+            arrivePos[k][stop] = arrive;
+            bestStamp[stop] = query;
+            best[stop] = d;
+        }
+
+        private boolean hasLabel(int k, int stop) {
+            return labelStamp[k][stop] == query;
+        }
+
+        // menor distancia a la parada con menos de k rutas: la de la última ronda que la tiene,
+        // porque una parada solo recibe etiqueta nueva si mejora
+        private double labelBefore(int k, int stop) {
+            for (int r = k - 1; r >= 0; r--) {
+                if (hasLabel(r, stop)) return label[r][stop];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        private double bestOf(int stop) {
+            return bestStamp[stop] == query ? best[stop] : Double.POSITIVE_INFINITY;
+        }
+
+        private void mark(int k, int stop) {
+            int stamp = stampBase + k;
+            if (markedStamp[stop] == stamp) return;
+            markedStamp[stop] = stamp;
+            if (markedCount == marked.length) marked = Arrays.copyOf(marked, markedCount * 2);
+            marked[markedCount++] = stop;
+        }
+
+        // reconstruye el viaje de la ronda k: cada etiqueta dice en qué posición se subió y en
+        // cuál se bajó; la parada de subida tiene etiqueta en alguna ronda anterior (la última)
+        private Viaje buildJourney(int k, int target) {
+            int[] legBoard = new int[k];
+            int[] legArrive = new int[k];
+            int stop = target;
+            int legs = 0;
+            for (int r = k; r > 0; r--) {
+                if (!hasLabel(r, stop)) continue; // llegó en una ronda anterior
+                legBoard[legs] = boardPos[r][stop];
+                legArrive[legs] = arrivePos[r][stop];
+                legs++;
+                stop = red.getPositionStopIndex(boardPos[r][stop]);
+            }
+
+            int nStops = 1;
+            for (int l = 0; l < legs; l++) nStops += legArrive[l] - legBoard[l];
+            int[] stopIds = new int[nStops];
+            int[] lineIds = new int[nStops];
+            double meters = 0;
+            int n = 0;
+            for (int l = legs - 1; l >= 0; l--) {
+                int line = positions.positionLine[legBoard[l]];
+                if (n == 0) {
+                    stopIds[n] = red.getPositionStopId(legBoard[l]);
+                    lineIds[n++] = line;
+                }
+                for (int p = legBoard[l]; p < legArrive[l]; p++) {
+                    meters += positions.rideMeters[p];
+                    stopIds[n] = red.getPositionStopId(p + 1);
+                    lineIds[n++] = line;
+                }
+            }
+            // transbordo = cambio de ruta (seguir en otra orientación o variante de la misma ruta no cuenta)
+            int transfers = 0;
+            for (int l = 0; l + 1 < legs; l++) {
+                if (positions.positionLine[legBoard[l]] != positions.positionLine[legBoard[l + 1]]) transfers++;
+            }
+            return new Viaje(stopIds, lineIds, meters, transfers, meters);
+        }
+
+        // mejoras encontradas por una tarea paralela
+        private class Mejoras {
+            int count;
+            int[] stops = new int[64];
+            double[] dist = new double[64];
+            int[] board = new int[64];
+            int[] arrive = new int[64];
+
+            void add(int stop, double d, int b, int a) {
+                if (count == stops.length) {
+                    int n = count * 2;
+                    stops = Arrays.copyOf(stops, n);
+                    dist = Arrays.copyOf(dist, n);
+                    board = Arrays.copyOf(board, n);
+                    arrive = Arrays.copyOf(arrive, n);
+                }
+                stops[count] = stop;
+                dist[count] = d;
+                board[count] = b;
+                arrive[count] = a;
+                count++;
+            }
+        }
+
+        // recorre las secuencias de las tareas [lo, hi); durante la ronda solo se leen las
+        // etiquetas de rondas anteriores y 'best', que no cambian hasta aplicar las mejoras
+        private class RondaTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int k;
+            private final int target;
+            private final Mejoras[] results;
+            private final int lo;
+            private final int hi;
+
+            RondaTask(int k, int target, Mejoras[] results, int lo, int hi) {
+                this.k = k;
+                this.target = target;
+                this.results = results;
+                this.lo = lo;
+                this.hi = hi;
+            }
+
+            @Override
+            protected void compute() {
+                if (hi - lo > 1) {
+                    int mid = (lo + hi) >>> 1;
+                    invokeAll(new RondaTask(k, target, results, lo, mid), new RondaTask(k, target, results, mid, hi));
+                    return;
+                }
+                Mejoras out = new Mejoras();
+                int end = Math.min(routeCount, (lo + 1) * ROUTES_PER_TASK);
+                for (int i = lo * ROUTES_PER_TASK; i < end; i++) {
+                    scanRoute(k, routes[i], target, out);
+                }
+                results[lo] = out;
+            }
+        }
+    }
+}
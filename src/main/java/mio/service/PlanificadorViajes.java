@@ -0,0 +1,311 @@
+package mio.service;
+
+import mio.Util.UtilidadesGeo;
+import mio.model.RedCompacta;
+import mio.model.Viaje;
+
+import java.util.Arrays;
+
+// Planificador de viajes parada a parada sobre la red compacta (A*, o Dijkstra sin heurística).
+// Los nodos son las posiciones de las secuencias (una parada dentro de una ruta, orientación y variante):
+// avanzar a la siguiente posición cuesta la distancia haversine entre las dos paradas, y pasar a
+// otra secuencia en la misma parada cuesta la penalización de transbordo si cambia la ruta.
+// Este objeto es inmutable y se comparte; cada hilo pide su propia Sesion con newSession(),
+// que guarda todo el estado de las búsquedas en arreglos que se reutilizan entre consultas.
+public class PlanificadorViajes {
+
+    private final RedCompacta red;
+    private final double transferPenaltyMeters;
+
+    // ruta, largo del tramo a la siguiente y posiciones de cada parada
+    private final int[] positionLine;
+    private final double[] rideMeters;
+    private final int[] stopPosOffsets;
+    private final int[] stopPositions;
+
+    // vector unitario de cada parada, para la heurística (cuerda <= distancia sobre la superficie)
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] unitZ;
+
+    public PlanificadorViajes(RedCompacta red, double transferPenaltyMeters) {
+        if (transferPenaltyMeters < 0) {
+            throw new IllegalArgumentException("Penalización de transbordo negativa: " + transferPenaltyMeters);
+        }
+        this.red = red;
+        this.transferPenaltyMeters = transferPenaltyMeters;
+
+        PosicionesRed positions = new PosicionesRed(red);
+        positionLine = positions.positionLine;
+        rideMeters = positions.rideMeters;
+        stopPosOffsets = positions.stopPosOffsets;
+        stopPositions = positions.stopPositions;
+
+        unitX = positions.lengths.unitX;
+        unitY = positions.lengths.unitY;
+        unitZ = positions.lengths.unitZ;
+    }
+
+    public RedCompacta getNetwork() {
+        return red;
+    }
+
+    public double getTransferPenaltyMeters() {
+        return transferPenaltyMeters;
+    }
+
+    // estado de búsqueda para un hilo
+    public Sesion newSession() {
+        return new Sesion();
+    }
+
+    // Búsquedas de un solo hilo. Los arreglos por posición no se limpian entre consultas:
+    // una marca de consulta dice si el valor guardado es de la consulta actual.
+    public class Sesion {
+        private final double[] dist;     // costo desde el origen
+        private final double[] priority; // costo + heurística
+        private final int[] prev;        // posición anterior en el camino (-1 en el origen)
+        private final int[] seen;        // consulta en que se tocó la posición
+        private final int[] heapIndex;   // lugar en el montículo (-1 si ya salió)
+        private final int[] heap;
+        private int heapSize;
+        private int query;
+        private boolean useHeuristic = true;
+
+        // último resultado, de la parada destino hacia el origen
+        private int[] pathPositions = new int[64];
+        private int pathLength;
+        private double pathCost = Double.NaN;
+        private double pathMeters;
+        private int pathTransfers;
+        private int settled;
+
+        private Sesion() {
+            int nPos = red.getPositionCount();
+            dist = new double[nPos];
+            priority = new double[nPos];
+            prev = new int[nPos];
+            seen = new int[nPos];
+            heapIndex = new int[nPos];
+            heap = new int[nPos];
+        }
+
+        // false: Dijkstra (sin heurística); true: A* (por defecto)
+        public void setUseHeuristic(boolean useHeuristic) {
+            this.useHeuristic = useHeuristic;
+        }
+
+        // busca el viaje de menor costo entre dos paradas (por stopId); false si no hay camino
+        public boolean search(int fromStopId, int toStopId) {
+            int from = red.indexOfStop(fromStopId);
+            int to = red.indexOfStop(toStopId);
+            if (from < 0 || to < 0) {
+                throw new IllegalArgumentException("Parada desconocida: " + (from < 0 ? fromStopId : toStopId));
+            }
+            return searchByIndex(from, to);
+        }
+
+        // igual que search pero con índices densos de parada
+        public boolean searchByIndex(int from, int to) {
+            startQuery();
+
+            // empiezo en todas las posiciones de la parada de origen
+            for (int k = stopPosOffsets[from]; k < stopPosOffsets[from + 1]; k++) {
+                relax(stopPositions[k], 0, -1, to);
+            }
+
+            while (heapSize > 0) {
+                int p = pop();
+                settled++;
+                int stop = red.getPositionStopIndex(p);
+                if (stop == to) {
+                    buildPath(p);
+                    return true;
+                }
+                double d = dist[p];
+
+                // sigo en la misma secuencia
+                if (rideMeters[p] >= 0) {
+                    relax(p + 1, d + rideMeters[p], p, to);
+                }
+
+                // cambio de secuencia en la misma parada
+                int line = positionLine[p];
+                for (int k = stopPosOffsets[stop]; k < stopPosOffsets[stop + 1]; k++) {
+                    int q = stopPositions[k];
+                    if (q == p) continue;
+                    relax(q, d + (positionLine[q] != line ? transferPenaltyMeters : 0), p, to);
+                }
+            }
+
+            pathLength = 0;
+            pathCost = Double.NaN;
+            return false;
+        }
+
+        // resultado de la última búsqueda exitosa como objeto (esto sí crea arreglos)
+        public Viaje toJourney() {
+            if (pathLength == 0) return null;
+            int[] stopIds = new int[getPathLength()];
+            int[] lineIds = new int[stopIds.length];
+            for (int i = 0; i < stopIds.length; i++) {
+                stopIds[i] = getPathStopId(i);
+                lineIds[i] = getPathLineId(i);
+            }
+            return new Viaje(stopIds, lineIds, pathMeters, pathTransfers, pathCost);
+        }
+
+        // planea y retorna el viaje, o null si no hay camino
+        public Viaje plan(int fromStopId, int toStopId) {
+            return search(fromStopId, toStopId) ? toJourney() : null;
+        }
+
+        // ---- último resultado sin crear objetos ----
+
+        // paradas del camino (las de transbordo en la misma parada cuentan una vez)
+        public int getPathLength() {
+            return pathLength;
+        }
+
+        public int getPathStopId(int i) {
+            return red.getPositionStopId(pathPositions[pathLength - 1 - i]);
+        }
+
+        public int getPathLineId(int i) {
+            return positionLine[pathPositions[pathLength - 1 - i]];
+        }
+
+        public double getPathCost() {
+            return pathCost;
+        }
+
+        public double getPathMeters() {
+            return pathMeters;
+        }
+
+        public int getPathTransfers() {
+            return pathTransfers;
+        }
+
+        // posiciones que se sacaron del montículo en la última búsqueda
+        public int getSettledCount() {
+            return settled;
+        }
+
+        // ---- internos ----
+
+        private void startQuery() {
+            if (++query == Integer.MAX_VALUE) {
+                // se dio la vuelta el contador: limpio las marcas una vez
+                Arrays.fill(seen, 0);
+                query = 1;
+            }
+            heapSize = 0;
+            settled = 0;
+        }
+
+        private void relax(int q, double d, int from, int target) {
+            if (seen[q] != query) {
+                seen[q] = query;
+                dist[q] = d;
+                prev[q] = from;
+                priority[q] = d + heuristic(red.getPositionStopIndex(q), target);
+                push(q);
+                return;
+            }
+            if (heapIndex[q] < 0 || d >= dist[q]) return; // ya cerrada o no mejora
+
+            priority[q] -= dist[q] - d;
+            dist[q] = d;
+            prev[q] = from;
+            siftUp(heapIndex[q]);
+        }
+
+        private double heuristic(int stop, int target) {
+            if (!useHeuristic) return 0;
+            double dx = unitX[stop] - unitX[target];
+            double dy = unitY[stop] - unitY[target];
+            double dz = unitZ[stop] - unitZ[target];
+            return Math.sqrt(dx * dx + dy * dy + dz * dz) * UtilidadesGeo.EARTH_RADIUS_METERS;
+        }
+
+        // guardo el camino de atrás hacia adelante. En un transbordo hay dos posiciones de la misma
+        // parada: me quedo con la de llegada, así cada parada sale una vez con la ruta en que se llegó
+        private void buildPath(int last) {
+            pathCost = dist[last];
+            pathMeters = 0;
+            pathTransfers = 0;
+            pathLength = 0;
+
+            for (int p = last; p >= 0; p = prev[p]) {
+                int before = prev[p];
+                if (before >= 0 && red.getPositionStopIndex(before) == red.getPositionStopIndex(p)) {
+                    if (positionLine[before] != positionLine[p]) pathTransfers++;
+                    continue;
+                }
+                if (before >= 0) pathMeters += rideMeters[before];
+                addPathPosition(p);
+            }
+        }
+
+        private void addPathPosition(int p) {
+            if (pathLength == pathPositions.length) {
+                pathPositions = Arrays.copyOf(pathPositions, pathLength * 2);
+            }
+            pathPositions[pathLength++] = p;
+        }
+
+        // ---- montículo de mínimos indexado (por priority) ----
+
+        private void push(int q) {
+            heap[heapSize] = q;
+            heapIndex[q] = heapSize;
+            heapSize++;
+            siftUp(heapSize - 1);
+        }
+
+        private int pop() {
+            int top = heap[0];
+            heapIndex[top] = -1;
+            heapSize--;
+            if (heapSize > 0) {
+                int last = heap[heapSize];
+                heap[0] = last;
+                heapIndex[last] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int i) {
+            int q = heap[i];
+            double key = priority[q];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                int pq = heap[parent];
+                if (priority[pq] <= key) break;
+                heap[i] = pq;
+                heapIndex[pq] = i;
+                i = parent;
+            }
+            heap[i] = q;
+            heapIndex[q] = i;
+        }
+
+        private void siftDown(int i) {
+            int q = heap[i];
+            double key = priority[q];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && priority[heap[child + 1]] < priority[heap[child]]) child++;
+                if (priority[heap[child]] >= key) break;
+                heap[i] = heap[child];
+                heapIndex[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = q;
+            heapIndex[q] = i;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package mio.service;
+
+import mio.model.RedCompacta;
+
+import java.util.Arrays;
+
+// Datos por posición que comparten los motores de rutas: secuencia y ruta de cada posición,
+// largo del tramo hasta la siguiente y las posiciones de cada parada (CSR).
+class PosicionesRed {
+
+    final RedCompacta red;
+
+    final TablaLongitudesArcos lengths;
+
+    // por posición: secuencia, ruta y largo del tramo hasta la siguiente posición (-1 si no hay,
+    // es el arreglo de la tabla de largos)
+    final int[] positionSeq;
+    final int[] positionLine;
+    final double[] rideMeters;
+
+    // las posiciones de la parada i están en stopPositions[stopPosOffsets[i] .. stopPosOffsets[i + 1])
+    final int[] stopPosOffsets;
+    final int[] stopPositions;
+
+    PosicionesRed(RedCompacta red) {
+        this.red = red;
+
+        int nPos = red.getPositionCount();
+        int nStops = red.getStopCount();
+        positionSeq = new int[nPos];
+        positionLine = new int[nPos];
+        lengths = new TablaLongitudesArcos(red);
+        rideMeters = lengths.meters;
+
+        for (int s = 0; s < red.getSequenceCount(); s++) {
+            int end = red.getSequenceEnd(s);
+            for (int p = red.getSequenceStart(s); p < end; p++) {
+                positionSeq[p] = s;
+                positionLine[p] = red.getSequenceLineId(s);
+            }
+        }
+
+        // posiciones agrupadas por parada (conteo + acumulado)
+        stopPosOffsets = new int[nStops + 1];
+        for (int p = 0; p < nPos; p++) {
+            int stop = red.getPositionStopIndex(p);
+            if (stop >= 0) stopPosOffsets[stop + 1]++;
+        }
+        for (int i = 0; i < nStops; i++) {
+            stopPosOffsets[i + 1] += stopPosOffsets[i];
+        }
+        stopPositions = new int[stopPosOffsets[nStops]];
+        int[] fill = Arrays.copyOf(stopPosOffsets, nStops);
+        for (int p = 0; p < nPos; p++) {
+            int stop = red.getPositionStopIndex(p);
+            if (stop >= 0) stopPositions[fill[stop]++] = p;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package mio.service;
+
+import mio.model.ComponentesRed;
+
+import java.io.IOException;
+
+// Versión del plan rechazada por la compuerta de conectividad (modo estricto): los archivos se leyeron
+// bien, pero la red tiene paradas sumidero o fuente
+public class RedRechazadaException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int planVersion;
+    private final transient ComponentesRed components;
+
+    public RedRechazadaException(int planVersion, ComponentesRed components) {
+        super("Versión " + planVersion + " con paradas sin salida o sin entrada: " + components);
+        this.planVersion = planVersion;
+        this.components = components;
+    }
+
+    public int getPlanVersion() {
+        return planVersion;
+    }
+
+    public ComponentesRed getComponents() {
+        return components;
+    }
+}
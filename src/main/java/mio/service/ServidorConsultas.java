@@ -0,0 +1,430 @@
+package mio.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mio.Util.EscritorBytes;
+import mio.Util.UtilidadesGeo;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Servidor HTTP local de consultas sobre la red (com.sun.net.httpserver del JDK).
+// La red se carga una sola vez; cada pedido lee la instantánea vigente, que no cambia, así que
+// los pedidos no se bloquean entre sí. Las respuestas JSON/CSV se escriben a medida que se generan.
+//
+//   GET /paradas/{stopId}                     parada
+//   GET /paradas/{stopId}/rutas               rutas (con orientación y variante) que pasan por la parada
+//   GET /paradas/cercanas?lat=&lon=[&k=5]     paradas más cercanas (o &radio= en metros)
+//   GET /rutas/{lineId}/arcos[?formato=csv]   lista de arcos de la ruta (JSON Lines o CSV)
+//   GET /rutas/{lineId}/imagen[?orientacion=&variante=]  grafo de la ruta en PNG
+//   GET /teselas/{z}/{x}/{y}.png              tesela del mapa de la red
+public class ServidorConsultas implements Closeable {
+
+    private static final int MAX_NEAREST = 100;
+    private static final int TILE_CACHE_SIZE = 512;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExportadorImagenGrafo imageExporter = new ExportadorImagenGrafo();
+    private final FormatoImagen pngFormat = FormatoImagen.png(6);
+    private final ConstructorGrafo graphBuilder = new ConstructorGrafo();
+
+    // dibujar una ruta ocupa una imagen de 1600x1600: limito cuántas se dibujan a la vez
+    private final Semaphore renderPermits;
+
+    private volatile Instantanea snapshot;
+
+    // Solo escucha en la interfaz local (loopback). port 0: el sistema escoge un puerto libre (ver getPort)
+    public ServidorConsultas(RedCompacta red, int port) throws IOException {
+        this(red, InetAddress.getLoopbackAddress(), port);
+    }
+
+    // escucha en la dirección dada; una dirección comodín (0.0.0.0 o ::) acepta pedidos de cualquier interfaz
+    public ServidorConsultas(RedCompacta red, InetAddress address, int port) throws IOException {
+        this.snapshot = new Instantanea(red);
+        this.renderPermits = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // cambia la red que se consulta; los pedidos en curso terminan con la anterior
+    public void setNetwork(RedCompacta red) {
+        snapshot = new Instantanea(red);
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    // Un hilo virtual por pedido si el JDK los tiene (21+); si no, hilos normales que se reutilizan
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "consulta-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---- pedidos ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, 405, "Solo se admite GET");
+                return;
+            }
+
+            Instantanea data = snapshot;
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            // parts[0] es "" porque la ruta empieza con '/'
+            if (parts.length == 3 && parts[1].equals("paradas") && parts[2].equals("cercanas")) {
+                nearestStops(exchange, data, query);
+            } else if (parts.length == 3 && parts[1].equals("paradas")) {
+                stop(exchange, data, Integer.parseInt(parts[2]));
+            } else if (parts.length == 4 && parts[1].equals("paradas") && parts[3].equals("rutas")) {
+                stopRoutes(exchange, data, Integer.parseInt(parts[2]));
+            } else if (parts.length == 4 && parts[1].equals("rutas") && parts[3].equals("arcos")) {
+                routeArcs(exchange, data, Integer.parseInt(parts[2]), query.getOrDefault("formato", "jsonl"));
+            } else if (parts.length == 4 && parts[1].equals("rutas") && parts[3].equals("imagen")) {
+                String orientation = query.get("orientacion");
+                String variant = query.get("variante");
+                routeImage(exchange, data, Integer.parseInt(parts[2]),
+                        orientation != null ? Integer.parseInt(orientation) : -1,
+                        variant != null ? Integer.parseInt(variant) : -1);
+            } else if (parts.length == 5 && parts[1].equals("teselas") && parts[4].endsWith(".png")) {
+                String y = parts[4].substring(0, parts[4].length() - 4);
+                tile(exchange, data, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Integer.parseInt(y));
+            } else {
+                sendError(exchange, 404, "No existe " + exchange.getRequestURI().getPath());
+            }
+        } catch (IllegalArgumentException e) {
+            // incluye NumberFormatException de ids y parámetros mal escritos
+            sendError(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            // lo más común es que el cliente cerró la conexión a mitad de la respuesta
+            System.err.println("Error respondiendo " + exchange.getRequestURI() + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            // error del servidor (al dibujar, al escribir la respuesta...): el cliente recibe un 500 en
+            // vez de una conexión cortada, y el pedido queda en el log con la traza
+            System.err.println("Error interno respondiendo " + exchange.getRequestURI() + ": " + e);
+            e.printStackTrace();
+            sendError(exchange, 500, "Error interno del servidor");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stop(HttpExchange exchange, Instantanea data, int stopId) throws IOException {
+        RedCompacta red = data.red;
+        int stop = red.indexOfStop(stopId);
+        if (stop < 0) {
+            sendError(exchange, 404, "No existe la parada " + stopId);
+            return;
+        }
+        try (EscritorBytes out = beginJson(exchange)) {
+            writeStopFields(out, red, stop);
+            out.write('}').newLine();
+        }
+    }
+
+    private void stopRoutes(HttpExchange exchange, Instantanea data, int stopId) throws IOException {
+        RedCompacta red = data.red;
+        int stop = red.indexOfStop(stopId);
+        if (stop < 0) {
+            sendError(exchange, 404, "No existe la parada " + stopId);
+            return;
+        }
+        try (EscritorBytes out = beginJson(exchange)) {
+            out.write('[');
+            // las secuencias de la parada vienen ordenadas por ruta, orientación y variante: agrupo por ruta
+            int end = data.stopSeqOffsets[stop + 1];
+            for (int i = data.stopSeqOffsets[stop]; i < end; ) {
+                int lineId = red.getSequenceLineId(data.stopSequences[i]);
+                Ruta route = red.getRoute(lineId);
+                if (i > data.stopSeqOffsets[stop]) out.write(',');
+                out.write("{\"lineId\":").write(lineId).write(",\"shortName\":");
+                SumideroJsonLines.writeString(out, route != null ? route.getShortName() : null);
+                out.write(",\"description\":");
+                SumideroJsonLines.writeString(out, route != null ? route.getDescription() : null);
+                out.write(",\"sequences\":[");
+                for (int first = i; i < end && red.getSequenceLineId(data.stopSequences[i]) == lineId; i++) {
+                    int seq = data.stopSequences[i];
+                    if (i > first) out.write(',');
+                    out.write("{\"orientation\":").write(red.getSequenceOrientation(seq))
+                            .write(",\"variant\":").write(red.getSequenceVariant(seq)).write('}');
+                }
+                out.write("]}");
+            }
+            out.write(']').newLine();
+        }
+    }
+
+    private void nearestStops(HttpExchange exchange, Instantanea data, Map<String, String> query) throws IOException {
+        double lat = Double.parseDouble(required(query, "lat"));
+        double lon = Double.parseDouble(required(query, "lon"));
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new IllegalArgumentException("Coordenadas fuera de rango: " + lat + ", " + lon);
+        }
+
+        int[] stops;
+        double[] meters;
+        String radius = query.get("radio");
+        if (radius != null) {
+            stops = data.index.withinRadius(lat, lon, Double.parseDouble(radius));
+            meters = new double[stops.length];
+            for (int i = 0; i < stops.length; i++) {
+                meters[i] = data.distanceMeters(stops[i], lat, lon);
+            }
+        } else {
+            int k = Math.min(MAX_NEAREST, Integer.parseInt(query.getOrDefault("k", "5")));
+            if (k < 1) throw new IllegalArgumentException("k debe ser al menos 1");
+            stops = new int[k];
+            meters = new double[k];
+            int n = data.index.nearest(lat, lon, k, stops, meters);
+            stops = Arrays.copyOf(stops, n);
+        }
+
+        try (EscritorBytes out = beginJson(exchange)) {
+            out.write('[');
+            for (int i = 0; i < stops.length; i++) {
+                if (i > 0) out.write(',');
+                writeStopFields(out, data.red, stops[i]);
+                out.write(",\"meters\":").write(Math.round(meters[i] * 10) / 10.0).write('}');
+            }
+            out.write(']').newLine();
+        }
+    }
+
+    private void routeArcs(HttpExchange exchange, Instantanea data, int lineId, String format) throws IOException {
+        if (ConstructorGrafo.indexOfLine(data.red, lineId) < 0) {
+            sendError(exchange, 404, "La ruta " + lineId + " no tiene paradas");
+            return;
+        }
+        boolean csv = format.equalsIgnoreCase("csv");
+        if (!csv && !format.equalsIgnoreCase("jsonl")) {
+            throw new IllegalArgumentException("Formato desconocido: " + format + " (jsonl o csv)");
+        }
+
+        exchange.getResponseHeaders().set("Content-Type",
+                csv ? "text/csv; charset=utf-8" : "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        EscritorBytes out = writer(exchange.getResponseBody());
+        try (SumideroArcos sink = csv ? new SumideroCsv(out) : new SumideroJsonLines(out)) {
+            graphBuilder.exportRouteArcs(data.red, lineId, sink);
+        }
+    }
+
+    // primera secuencia de la ruta con esa orientación y variante (-1: cualquiera)
+    private void routeImage(HttpExchange exchange, Instantanea data, int lineId, int orientation, int variant)
+            throws IOException {
+        RedCompacta red = data.red;
+        int l = ConstructorGrafo.indexOfLine(red, lineId);
+        int seq = -1;
+        if (l >= 0) {
+            for (int s = red.getLineFirstSequence(l); s < red.getLineEndSequence(l) && seq < 0; s++) {
+                if ((orientation < 0 || red.getSequenceOrientation(s) == orientation)
+                        && (variant < 0 || red.getSequenceVariant(s) == variant)) {
+                    seq = s;
+                }
+            }
+        }
+        if (seq < 0) {
+            sendError(exchange, 404, "La ruta " + lineId + " no tiene esa secuencia");
+            return;
+        }
+
+        byte[] png = data.routeImages.get(seq);
+        if (png == null) {
+            png = renderRoute(red, seq);
+            if (png == null) {
+                sendError(exchange, 404, "La ruta " + lineId + " no tiene paradas con coordenadas");
+                return;
+            }
+            data.routeImages.putIfAbsent(seq, png);
+        }
+        sendBytes(exchange, "image/png", png);
+    }
+
+    private void tile(HttpExchange exchange, Instantanea data, int z, int x, int y) throws IOException {
+        sendBytes(exchange, "image/png", data.tiles.getTile(z, x, y));
+    }
+
+    private byte[] renderRoute(RedCompacta red, int seq) throws IOException {
+        try {
+            renderPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Dibujo interrumpido", e);
+        }
+        try {
+            BufferedImage image = imageExporter.renderRouteGraph(red, seq);
+            if (image == null) return null;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * 1024);
+            pngFormat.write(image, bytes);
+            return bytes.toByteArray();
+        } finally {
+            renderPermits.release();
+        }
+    }
+
+    // ---- respuestas ----
+
+    // respuesta JSON de largo desconocido (se envía por partes)
+    private static EscritorBytes beginJson(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        return writer(exchange.getResponseBody());
+    }
+
+    // el búfer de 1 MiB de EscritorBytes es demasiado para una respuesta: cada pedido usa uno chico
+    private static EscritorBytes writer(OutputStream out) {
+        return new EscritorBytes(Channels.newChannel(out), false, StandardCharsets.UTF_8, RESPONSE_BUFFER_SIZE);
+    }
+
+    private static void sendBytes(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // ya se mandaron los encabezados: solo queda cortar la respuesta
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (EscritorBytes out = writer(bytes)) {
+            out.write("{\"error\":");
+            SumideroJsonLines.writeString(out, message);
+            out.write('}').newLine();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        byte[] body = bytes.toByteArray();
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // campos de la parada en un objeto JSON, sin la llave de cierre
+    private static void writeStopFields(EscritorBytes out, RedCompacta red, int stop) throws IOException {
+        out.write("{\"stopId\":").write(red.getStopId(stop)).write(",\"shortName\":");
+        SumideroJsonLines.writeString(out, red.getStopShortName(stop));
+        out.write(",\"longName\":");
+        SumideroJsonLines.writeString(out, red.getStopLongName(stop));
+        out.write(",\"lat\":").write(red.getLat(stop))
+                .write(",\"lon\":").write(red.getLon(stop));
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) throw new IllegalArgumentException("Falta el parámetro " + name);
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // Todo lo que responden los pedidos sobre una red: la red, el índice espacial, las secuencias
+    // que pasan por cada parada y los cachés de imágenes. Se arma completa antes de publicarla.
+    private static final class Instantanea {
+        final RedCompacta red;
+        final IndiceEspacialParadas index;
+        final ExportadorTeselas tiles;
+
+        // las secuencias de la parada i (sin repetir, en orden) están en
+        // stopSequences[stopSeqOffsets[i] .. stopSeqOffsets[i + 1])
+        final int[] stopSeqOffsets;
+        final int[] stopSequences;
+
+        // PNG ya codificados por secuencia
+        final Map<Integer, byte[]> routeImages = new ConcurrentHashMap<>();
+
+        Instantanea(RedCompacta red) {
+            this.red = red;
+            this.index = new IndiceEspacialParadas(red);
+            this.tiles = new ExportadorTeselas(red, TILE_CACHE_SIZE);
+
+            // pares (parada, secuencia) empaquetados en long para ordenarlos y quitar repetidos
+            long[] keys = new long[red.getPositionCount()];
+            int n = 0;
+            for (int s = 0; s < red.getSequenceCount(); s++) {
+                for (int p = red.getSequenceStart(s); p < red.getSequenceEnd(s); p++) {
+                    int stop = red.getPositionStopIndex(p);
+                    if (stop >= 0) keys[n++] = ((long) stop << 32) | s;
+                }
+            }
+            Arrays.sort(keys, 0, n);
+
+            int nStops = red.getStopCount();
+            stopSeqOffsets = new int[nStops + 1];
+            int[] sequences = new int[n];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && keys[i] == keys[i - 1]) continue;
+                stopSeqOffsets[(int) (keys[i] >>> 32) + 1]++;
+                sequences[m++] = (int) keys[i];
+            }
+            for (int i = 0; i < nStops; i++) {
+                stopSeqOffsets[i + 1] += stopSeqOffsets[i];
+            }
+            stopSequences = Arrays.copyOf(sequences, m);
+        }
+
+        double distanceMeters(int stop, double lat, double lon) {
+            return UtilidadesGeo.haversineMeters(red.getLat(stop), red.getLon(stop), lat, lon);
+        }
+    }
+}
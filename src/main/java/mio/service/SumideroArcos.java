@@ -0,0 +1,30 @@
+package mio.service;
+
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Destino de la lista de arcos. ConstructorGrafo recorre la red una sola vez y le pasa a cada
+// sumidero las rutas, sus secuencias y los arcos en orden; cada sumidero decide cómo escribirlos.
+// Los arcos llegan como posiciones de la red (from -> from + 1) para no crear objetos por arco.
+public interface SumideroArcos extends Closeable {
+
+    // antes de la primera ruta
+    void begin(RedCompacta red) throws IOException;
+
+    // route puede ser null si la ruta no está en el archivo de líneas
+    void beginRoute(int lineId, Ruta route) throws IOException;
+
+    // una secuencia por ruta, orientación y variante (LINEVARIANT)
+    void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) throws IOException;
+
+    // arco número 'number' (desde 1) de la secuencia actual, de la posición from a la posición to
+    void arc(int lineId, int orientation, int number, int from, int to) throws IOException;
+
+    void endRoute(int lineId) throws IOException;
+
+    // después de la última ruta
+    void end(int totalRoutes, int totalArcs) throws IOException;
+}
@@ -0,0 +1,107 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Lista de arcos en CSV, una fila por arco con los ids, nombres y coordenadas de las dos paradas.
+// Si una parada no está en el archivo de paradas, su nombre y coordenadas quedan vacíos.
+public class SumideroCsv implements SumideroArcos {
+
+    private final EscritorBytes out;
+    private RedCompacta red;
+    private String routeName;
+    private int variant;
+
+    public SumideroCsv(EscritorBytes out) {
+        this.out = out;
+    }
+
+    public static SumideroCsv file(Path file) throws IOException {
+        return new SumideroCsv(EscritorBytes.open(file));
+    }
+
+    @Override
+    public void begin(RedCompacta red) throws IOException {
+        this.red = red;
+        out.write("LINEID,SHORTNAME,ORIENTATION,VARIANT,ARC,FROM_STOPID,TO_STOPID,FROM_SHORTNAME,TO_SHORTNAME,")
+                .write("FROM_LAT,FROM_LON,TO_LAT,TO_LON").newLine();
+    }
+
+    @Override
+    public void beginRoute(int lineId, Ruta route) throws IOException {
+        routeName = route != null ? route.getShortName() : "";
+    }
+
+    @Override
+    public void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) {
+        this.variant = variant;
+    }
+
+    @Override
+    public void arc(int lineId, int orientation, int number, int from, int to) throws IOException {
+        int fromIdx = red.getPositionStopIndex(from);
+        int toIdx = red.getPositionStopIndex(to);
+
+        out.write(lineId).write(',');
+        writeField(routeName);
+        out.write(',').write(orientation).write(',').write(variant).write(',').write(number)
+                .write(',').write(red.getPositionStopId(from))
+                .write(',').write(red.getPositionStopId(to)).write(',');
+        writeField(fromIdx >= 0 ? red.getStopShortName(fromIdx) : "");
+        out.write(',');
+        writeField(toIdx >= 0 ? red.getStopShortName(toIdx) : "");
+        out.write(',');
+        writeCoordinates(fromIdx);
+        out.write(',');
+        writeCoordinates(toIdx);
+        out.newLine();
+    }
+
+    @Override
+    public void endRoute(int lineId) {
+    }
+
+    @Override
+    public void end(int totalRoutes, int totalArcs) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeCoordinates(int stopIdx) throws IOException {
+        if (stopIdx >= 0) {
+            out.write(red.getLat(stopIdx)).write(',').write(red.getLon(stopIdx));
+        } else {
+            out.write(',');
+        }
+    }
+
+    // entre comillas solo si hace falta (comas, comillas o saltos de línea)
+    private void writeField(String text) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(text);
+            return;
+        }
+
+        // duplico las comillas de adentro
+        out.write('"');
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != '"') continue;
+            out.write(text, run, i + 1).write('"');
+            run = i + 1;
+        }
+        out.write(text, run, text.length()).write('"');
+    }
+}
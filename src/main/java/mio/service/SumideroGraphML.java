@@ -0,0 +1,117 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Red en GraphML (dirigida): un nodo por parada y una arista por arco de cada ruta, orientación y variante,
+// así que dos rutas que pasan por el mismo tramo dan aristas paralelas. Los arcos hacia paradas
+// que no están en el archivo de paradas se omiten porque no tienen nodo.
+public class SumideroGraphML implements SumideroArcos {
+
+    private final EscritorBytes out;
+    private RedCompacta red;
+    private String routeName;
+    private int variant;
+    private int edgeId;
+
+    public SumideroGraphML(EscritorBytes out) {
+        this.out = out;
+    }
+
+    public static SumideroGraphML file(Path file) throws IOException {
+        return new SumideroGraphML(EscritorBytes.open(file));
+    }
+
+    @Override
+    public void begin(RedCompacta red) throws IOException {
+        this.red = red;
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>").newLine();
+        out.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">").newLine();
+        out.write("  <key id=\"shortName\" for=\"node\" attr.name=\"shortName\" attr.type=\"string\"/>").newLine();
+        out.write("  <key id=\"longName\" for=\"node\" attr.name=\"longName\" attr.type=\"string\"/>").newLine();
+        out.write("  <key id=\"lat\" for=\"node\" attr.name=\"lat\" attr.type=\"double\"/>").newLine();
+        out.write("  <key id=\"lon\" for=\"node\" attr.name=\"lon\" attr.type=\"double\"/>").newLine();
+        out.write("  <key id=\"lineId\" for=\"edge\" attr.name=\"lineId\" attr.type=\"int\"/>").newLine();
+        out.write("  <key id=\"route\" for=\"edge\" attr.name=\"route\" attr.type=\"string\"/>").newLine();
+        out.write("  <key id=\"orientation\" for=\"edge\" attr.name=\"orientation\" attr.type=\"int\"/>").newLine();
+        out.write("  <key id=\"variant\" for=\"edge\" attr.name=\"variant\" attr.type=\"int\"/>").newLine();
+        out.write("  <key id=\"arc\" for=\"edge\" attr.name=\"arc\" attr.type=\"int\"/>").newLine();
+        out.write("  <graph id=\"SITM-MIO\" edgedefault=\"directed\">").newLine();
+
+        // los nodos van primero: todas las paradas de la red
+        for (int i = 0; i < red.getStopCount(); i++) {
+            out.write("    <node id=\"s").write(red.getStopId(i)).write("\">");
+            out.write("<data key=\"shortName\">");
+            writeEscaped(red.getStopShortName(i));
+            out.write("</data><data key=\"longName\">");
+            writeEscaped(red.getStopLongName(i));
+            out.write("</data><data key=\"lat\">").write(red.getLat(i))
+                    .write("</data><data key=\"lon\">").write(red.getLon(i))
+                    .write("</data></node>").newLine();
+        }
+    }
+
+    @Override
+    public void beginRoute(int lineId, Ruta route) {
+        routeName = route != null ? route.getShortName() : "";
+    }
+
+    @Override
+    public void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) {
+        this.variant = variant;
+    }
+
+    @Override
+    public void arc(int lineId, int orientation, int number, int from, int to) throws IOException {
+        if (red.getPositionStopIndex(from) < 0 || red.getPositionStopIndex(to) < 0) return;
+
+        out.write("    <edge id=\"e").write(edgeId++)
+                .write("\" source=\"s").write(red.getPositionStopId(from))
+                .write("\" target=\"s").write(red.getPositionStopId(to)).write("\">")
+                .write("<data key=\"lineId\">").write(lineId)
+                .write("</data><data key=\"route\">");
+        writeEscaped(routeName);
+        out.write("</data><data key=\"orientation\">").write(orientation)
+                .write("</data><data key=\"variant\">").write(variant)
+                .write("</data><data key=\"arc\">").write(number)
+                .write("</data></edge>").newLine();
+    }
+
+    @Override
+    public void endRoute(int lineId) {
+    }
+
+    @Override
+    public void end(int totalRoutes, int totalArcs) throws IOException {
+        out.write("  </graph>").newLine();
+        out.write("</graphml>").newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        // copio por tramos lo que no hay que escapar
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '&': entity = "&amp;"; break;
+                case '"': entity = "&quot;"; break;
+                default: continue;
+            }
+            out.write(text, run, i).write(entity);
+            run = i + 1;
+        }
+        out.write(text, run, text.length());
+    }
+}
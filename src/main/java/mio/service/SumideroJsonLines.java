@@ -0,0 +1,109 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Lista de arcos en JSON Lines: un objeto por línea con la ruta, la orientación y las dos paradas.
+// Los datos de una parada que no está en el archivo de paradas salen como null.
+public class SumideroJsonLines implements SumideroArcos {
+
+    private final EscritorBytes out;
+    private RedCompacta red;
+    private String routeName;
+    private int variant;
+
+    public SumideroJsonLines(EscritorBytes out) {
+        this.out = out;
+    }
+
+    public static SumideroJsonLines file(Path file) throws IOException {
+        return new SumideroJsonLines(EscritorBytes.open(file));
+    }
+
+    @Override
+    public void begin(RedCompacta red) {
+        this.red = red;
+    }
+
+    @Override
+    public void beginRoute(int lineId, Ruta route) {
+        routeName = route != null ? route.getShortName() : null;
+    }
+
+    @Override
+    public void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) {
+        this.variant = variant;
+    }
+
+    @Override
+    public void arc(int lineId, int orientation, int number, int from, int to) throws IOException {
+        int fromIdx = red.getPositionStopIndex(from);
+        int toIdx = red.getPositionStopIndex(to);
+
+        out.write("{\"lineId\":").write(lineId).write(",\"route\":");
+        writeString(routeName);
+        out.write(",\"orientation\":").write(orientation)
+                .write(",\"variant\":").write(variant)
+                .write(",\"arc\":").write(number)
+                .write(",\"fromStopId\":").write(red.getPositionStopId(from))
+                .write(",\"toStopId\":").write(red.getPositionStopId(to));
+        writeStop("from", fromIdx);
+        writeStop("to", toIdx);
+        out.write('}').newLine();
+    }
+
+    @Override
+    public void endRoute(int lineId) {
+    }
+
+    @Override
+    public void end(int totalRoutes, int totalArcs) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeStop(String prefix, int stopIdx) throws IOException {
+        out.write(",\"").write(prefix).write("Name\":");
+        writeString(stopIdx >= 0 ? red.getStopShortName(stopIdx) : null);
+        out.write(",\"").write(prefix).write("Lat\":");
+        if (stopIdx >= 0) out.write(red.getLat(stopIdx)); else out.write("null");
+        out.write(",\"").write(prefix).write("Lon\":");
+        if (stopIdx >= 0) out.write(red.getLon(stopIdx)); else out.write("null");
+    }
+
+    private void writeString(String text) throws IOException {
+        writeString(out, text);
+    }
+
+    // texto como string JSON (con comillas y escapes), o null; lo usa también el servidor de consultas
+    static void writeString(EscritorBytes out, String text) throws IOException {
+        if (text == null) {
+            out.write("null");
+            return;
+        }
+        // copio por tramos lo que no hay que escapar
+        out.write('"');
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+
+            out.write(text, run, i);
+            if (c < 0x20) {
+                // caracteres de control con escape unicode de 4 dígitos
+                out.write("\\u00").write(Character.forDigit(c >> 4, 16)).write(Character.forDigit(c & 0xF, 16));
+            } else {
+                out.write('\\').write(c);
+            }
+            run = i + 1;
+        }
+        out.write(text, run, text.length()).write('"');
+    }
+}
@@ -0,0 +1,110 @@
+package mio.service;
+
+import mio.Util.EscritorBytes;
+import mio.model.RedCompacta;
+import mio.model.Ruta;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+// Reporte de texto de los arcos por ruta (el mismo que se mostraba en consola con printf)
+public class SumideroReporteTexto implements SumideroArcos {
+
+    private final EscritorBytes out;
+    private RedCompacta red;
+
+    public SumideroReporteTexto(EscritorBytes out) {
+        this.out = out;
+    }
+
+    // reporte en consola: vacío System.out antes, para no mezclar el orden de las líneas
+    public static SumideroReporteTexto console() {
+        System.out.flush();
+        return new SumideroReporteTexto(EscritorBytes.wrap(System.out, consoleCharset()));
+    }
+
+    public static SumideroReporteTexto file(Path file) throws IOException {
+        return new SumideroReporteTexto(EscritorBytes.open(file));
+    }
+
+    @Override
+    public void begin(RedCompacta red) throws IOException {
+        this.red = red;
+
+        // imprimo el título
+        out.write("=================================================================").newLine();
+        out.write("GRAFOS DE RUTAS DEL SITM-MIO - LISTA DE ARCOS POR RUTA").newLine();
+        out.write("=================================================================").newLine();
+        out.newLine();
+    }
+
+    @Override
+    public void beginRoute(int lineId, Ruta route) throws IOException {
+        String routeName = (route != null ? route.getShortName() : ("LINEID " + lineId));
+        String routeDesc = (route != null ? route.getDescription() : "");
+
+        // muestro info de la ruta
+        out.write("=================================================================").newLine();
+        out.write("RUTA: ").write(routeName).write(" (ID: ").write(lineId).write(")").newLine();
+        if (!routeDesc.isEmpty()) {
+            out.write("Descripcion: ").write(routeDesc).newLine();
+        }
+        out.write("=================================================================").newLine();
+    }
+
+    @Override
+    public void beginSequence(int lineId, int orientation, int variant, int nStops, int nArcs) throws IOException {
+        out.newLine();
+        out.write("--- ").write(ConstructorGrafo.orientationLabel(orientation))
+                .write(" (VARIANTE ").write(variant).write(") ---").newLine();
+        out.write("Paradas: ").write(nStops).write(" | Arcos: ").write(nArcs).newLine();
+        out.write("Secuencia de arcos:").newLine();
+    }
+
+    @Override
+    public void arc(int lineId, int orientation, int number, int from, int to) throws IOException {
+        int fromIdx = red.getPositionStopIndex(from);
+        int toIdx = red.getPositionStopIndex(to);
+
+        // formato: número, IDs, nombres
+        out.write("  ").writePadded(number, 3).write(". [")
+                .write(red.getPositionStopId(from)).write(" -> ").write(red.getPositionStopId(to)).write("] ")
+                .write(fromIdx >= 0 ? red.getStopShortName(fromIdx) : "N/A")
+                .write(" -> ")
+                .write(toIdx >= 0 ? red.getStopShortName(toIdx) : "N/A")
+                .newLine();
+    }
+
+    @Override
+    public void endRoute(int lineId) throws IOException {
+        out.newLine();
+    }
+
+    @Override
+    public void end(int totalRoutes, int totalArcs) throws IOException {
+        out.write("╔═════════════════════════════════╗").newLine();
+        out.write("║            RESUMEN              ║").newLine();
+        out.write("╚═════════════════════════════════╝").newLine();
+        out.write("- Total de rutas procesadas: ").write(totalRoutes).newLine();
+        out.write("- Total de arcos generados: ").write(totalArcs).newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // en Java 17 PrintStream no expone su charset: uso el mismo que eligió la JVM para stdout
+    private static Charset consoleCharset() {
+        String name = System.getProperty("sun.stdout.encoding");
+        if (name != null) {
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                // sigo con el charset por defecto
+            }
+        }
+        return Charset.defaultCharset();
+    }
+}
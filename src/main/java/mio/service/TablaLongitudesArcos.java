@@ -0,0 +1,144 @@
+package mio.service;
+
+import mio.Util.UtilidadesGeo;
+import mio.model.RedCompacta;
+
+import java.util.Arrays;
+
+// Largo en metros de cada arco de la red, calculado una vez por red. Los arcos son los tramos entre
+// posiciones consecutivas de una secuencia, así que la tabla va alineada con las posiciones: el arco
+// que sale de la posición p mide meters[p] (-1 en la última posición de cada secuencia o si alguna de
+// las dos paradas no está en el archivo de paradas).
+//
+// El cálculo va por lotes: primero un vector unitario por parada (la trigonometría de lat/lon se hace
+// una vez por parada, no por arco), después se copian los extremos de todos los arcos a arreglos
+// contiguos y se calcula la cuerda con un ciclo solo aritmético que el JIT puede vectorizar. Al final
+// la cuerda se pasa a distancia sobre la superficie (igual a la haversine).
+public class TablaLongitudesArcos {
+
+    private final RedCompacta red;
+
+    // vector unitario de cada parada (también lo usa la heurística del planificador)
+    final double[] unitX;
+    final double[] unitY;
+    final double[] unitZ;
+
+    final double[] meters;
+    private final double[] cumulative; // metros desde el inicio de la secuencia hasta la posición
+    private final double[] sequenceMeters;
+
+    public TablaLongitudesArcos(RedCompacta red) {
+        this.red = red;
+        int nStops = red.getStopCount();
+        int nPos = red.getPositionCount();
+        int nSeq = red.getSequenceCount();
+
+        unitX = new double[nStops];
+        unitY = new double[nStops];
+        unitZ = new double[nStops];
+        for (int i = 0; i < nStops; i++) {
+            double lat = Math.toRadians(red.getLat(i));
+            double lon = Math.toRadians(red.getLon(i));
+            unitX[i] = Math.cos(lat) * Math.cos(lon);
+            unitY[i] = Math.cos(lat) * Math.sin(lon);
+            unitZ[i] = Math.sin(lat);
+        }
+
+        // posiciones que tienen arco, y diferencias de los extremos en arreglos contiguos
+        int[] arcPositions = new int[nPos];
+        double[] dx = new double[nPos];
+        double[] dy = new double[nPos];
+        double[] dz = new double[nPos];
+        int n = 0;
+        for (int s = 0; s < nSeq; s++) {
+            int end = red.getSequenceEnd(s);
+            for (int p = red.getSequenceStart(s); p < end - 1; p++) {
+                int a = red.getPositionStopIndex(p);
+                int b = red.getPositionStopIndex(p + 1);
+                if (a < 0 || b < 0) continue;
+                arcPositions[n] = p;
+                dx[n] = unitX[b] - unitX[a];
+                dy[n] = unitY[b] - unitY[a];
+                dz[n] = unitZ[b] - unitZ[a];
+                n++;
+            }
+        }
+
+        double[] lengths = chordsToMeters(dx, dy, dz, n);
+
+        meters = new double[nPos];
+        Arrays.fill(meters, -1);
+        for (int k = 0; k < n; k++) {
+            meters[arcPositions[k]] = lengths[k];
+        }
+
+        // acumulados por secuencia; un tramo sin largo (parada desconocida) suma 0
+        cumulative = new double[nPos];
+        sequenceMeters = new double[nSeq];
+        for (int s = 0; s < nSeq; s++) {
+            int start = red.getSequenceStart(s);
+            int end = red.getSequenceEnd(s);
+            double sum = 0;
+            for (int p = start; p < end; p++) {
+                cumulative[p] = sum;
+                if (p + 1 < end && meters[p] >= 0) sum += meters[p];
+            }
+            sequenceMeters[s] = sum;
+        }
+    }
+
+    // largo de n cuerdas dadas por sus diferencias en la esfera unitaria. El primer ciclo es solo
+    // aritmética sobre arreglos contiguos (vectorizable); asin queda en un ciclo aparte
+    static double[] chordsToMeters(double[] dx, double[] dy, double[] dz, int n) {
+        double[] result = new double[n];
+        for (int k = 0; k < n; k++) {
+            result[k] = dx[k] * dx[k] + dy[k] * dy[k] + dz[k] * dz[k];
+        }
+        for (int k = 0; k < n; k++) {
+            result[k] = UtilidadesGeo.metersForChord(Math.sqrt(result[k]));
+        }
+        return result;
+    }
+
+    public RedCompacta getNetwork() {
+        return red;
+    }
+
+    // largo del arco que sale de la posición p, o -1 si no hay arco
+    public double getMeters(int position) {
+        return meters[position];
+    }
+
+    // metros recorridos desde el inicio de la secuencia hasta la posición
+    public double getCumulativeMeters(int position) {
+        return cumulative[position];
+    }
+
+    // metros entre dos posiciones de la misma secuencia (from <= to)
+    public double getMetersBetween(int fromPosition, int toPosition) {
+        return cumulative[toPosition] - cumulative[fromPosition];
+    }
+
+    // largo total de la secuencia (ruta + orientación + variante)
+    public double getSequenceMeters(int seq) {
+        return sequenceMeters[seq];
+    }
+
+    // suma de los largos de las secuencias de la ruta l (ida y regreso de todas sus variantes)
+    public double getLineMeters(int line) {
+        double sum = 0;
+        for (int s = red.getLineFirstSequence(line); s < red.getLineEndSequence(line); s++) {
+            sum += sequenceMeters[s];
+        }
+        return sum;
+    }
+
+    // la secuencia más larga de la ruta l con esa orientación, o 0 si no tiene
+    public double getLineMeters(int line, int orientation) {
+        double max = 0;
+        for (int s = red.getLineFirstSequence(line); s < red.getLineEndSequence(line); s++) {
+            if (red.getSequenceOrientation(s) == orientation) max = Math.max(max, sequenceMeters[s]);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,166 @@
+package mio.service;
+
+import mio.model.RedCompacta;
+import mio.model.Viaje;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// PlanificadorViajes (Dijkstra y A*) y MotorRaptor sobre los datos -241: los dos algoritmos del
+// planificador y RAPTOR (con penalización 0) deben dar el mismo costo, y RAPTOR lo mismo en paralelo
+public class PlanificadoresTest {
+
+    private static final Path DATA = Path.of("src/data/proyecto-mio/MIO");
+    private static final int PAIRS = 300;
+    // RAPTOR encuentra el viaje más corto solo si lo dejan hacer los transbordos que necesita
+    private static final int MAX_TRANSFERS = 80;
+
+    private static RedCompacta red;
+    private static int[] usedStops; // paradas que aparecen en alguna secuencia
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void loadNetwork() throws IOException {
+        red = new CargadorConcurrente().loadAll(
+                DATA.resolve("lines-241.csv"),
+                DATA.resolve("stops-241.csv"),
+                DATA.resolve("linestops-241.csv")).getNetwork();
+
+        boolean[] used = new boolean[red.getStopCount()];
+        for (int p = 0; p < red.getPositionCount(); p++) {
+            int stop = red.getPositionStopIndex(p);
+            if (stop >= 0) used[stop] = true;
+        }
+        int n = 0;
+        usedStops = new int[used.length];
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) usedStops[n++] = i;
+        }
+        usedStops = Arrays.copyOf(usedStops, n);
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void aStarGivesTheSameCostAsDijkstra() {
+        PlanificadorViajes planner = new PlanificadorViajes(red, 500);
+        PlanificadorViajes.Sesion dijkstra = planner.newSession();
+        dijkstra.setUseHeuristic(false);
+        PlanificadorViajes.Sesion aStar = planner.newSession();
+        aStar.setUseHeuristic(true);
+
+        Random random = new Random(42);
+        for (int q = 0; q < PAIRS; q++) {
+            int from = randomStop(random);
+            int to = randomStop(random);
+            boolean found = dijkstra.searchByIndex(from, to);
+            assertEquals(pair(from, to), found, aStar.searchByIndex(from, to));
+            if (found) {
+                assertEquals(pair(from, to), dijkstra.getPathCost(), aStar.getPathCost(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void raptorShortestJourneyMatchesPlannerWithoutTransferPenalty() {
+        PlanificadorViajes.Sesion planner = new PlanificadorViajes(red, 0).newSession();
+        MotorRaptor.Sesion raptor = new MotorRaptor(red, MAX_TRANSFERS).newSession();
+
+        Random random = new Random(7);
+        for (int q = 0; q < PAIRS; q++) {
+            int from = randomStop(random);
+            int to = randomStop(random);
+            List<Viaje> pareto = raptor.searchByIndex(from, to);
+            boolean found = planner.searchByIndex(from, to);
+            assertEquals(pair(from, to), found, !pareto.isEmpty());
+            if (!found) continue;
+
+            // de menos a más tramos, cada viaje más corto que el anterior; el último es el más corto
+            for (int i = 1; i < pareto.size(); i++) {
+                assertTrue(pair(from, to), pareto.get(i).getDistanceMeters() < pareto.get(i - 1).getDistanceMeters());
+            }
+            assertEquals(pair(from, to), planner.getPathMeters(),
+                    pareto.get(pareto.size() - 1).getDistanceMeters(), 1e-6);
+        }
+    }
+
+    @Test
+    public void raptorParallelScanMatchesSequential() {
+        MotorRaptor engine = new MotorRaptor(red, MAX_TRANSFERS);
+        MotorRaptor.Sesion sequential = engine.newSession();
+        MotorRaptor.Sesion parallel = engine.newSession(pool);
+
+        Random random = new Random(11);
+        for (int q = 0; q < PAIRS; q++) {
+            int from = randomStop(random);
+            int to = randomStop(random);
+            List<Viaje> expected = sequential.searchByIndex(from, to);
+            List<Viaje> actual = parallel.searchByIndex(from, to);
+            assertEquals(pair(from, to), expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(pair(from, to), expected.get(i).getDistanceMeters(),
+                        actual.get(i).getDistanceMeters(), 1e-6);
+                assertEquals(pair(from, to), expected.get(i).getTransfers(), actual.get(i).getTransfers());
+                assertArrayEquals(pair(from, to), expected.get(i).getStopIds(), actual.get(i).getStopIds());
+            }
+        }
+    }
+
+    @Test
+    public void sameOriginAndDestinationIsAZeroRideJourney() {
+        PlanificadorViajes.Sesion planner = new PlanificadorViajes(red, 0).newSession();
+        MotorRaptor.Sesion raptor = new MotorRaptor(red, MAX_TRANSFERS).newSession();
+
+        for (int stop : usedStops) {
+            List<Viaje> pareto = raptor.searchByIndex(stop, stop);
+            assertEquals(1, pareto.size());
+            Viaje journey = pareto.get(0);
+            assertArrayEquals(new int[] { red.getStopId(stop) }, journey.getStopIds());
+            assertEquals(0, journey.getDistanceMeters(), 0);
+            assertEquals(0, journey.getTransfers());
+
+            assertTrue(planner.searchByIndex(stop, stop));
+            assertEquals(1, planner.getPathLength());
+            assertEquals(0, planner.getPathMeters(), 0);
+        }
+
+        // una parada que no está en ninguna secuencia no tiene viaje ni hacia sí misma
+        int isolated = isolatedStop();
+        if (isolated >= 0) {
+            assertTrue(raptor.searchByIndex(isolated, isolated).isEmpty());
+            assertFalse(planner.searchByIndex(isolated, isolated));
+        }
+    }
+
+    private static int randomStop(Random random) {
+        return usedStops[random.nextInt(usedStops.length)];
+    }
+
+    private static int isolatedStop() {
+        for (int i = 0, k = 0; i < red.getStopCount(); i++) {
+            if (k < usedStops.length && usedStops[k] == i) k++;
+            else return i;
+        }
+        return -1;
+    }
+
+    private static String pair(int from, int to) {
+        return red.getStopId(from) + " -> " + red.getStopId(to);
+    }
+}